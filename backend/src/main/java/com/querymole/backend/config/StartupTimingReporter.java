@@ -0,0 +1,56 @@
+package com.querymole.backend.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reports startup time and time to first request, both measured from JVM
+ * start so class loading before Spring starts is included. Time to first
+ * request also covers beans created lazily by that request.
+ */
+@Component
+public class StartupTimingReporter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimingReporter.class);
+
+    private final AtomicBoolean firstRequestSeen = new AtomicBoolean();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportReady(ApplicationReadyEvent event) {
+        logger.info("Ready {} ms after JVM start (context started in {} ms)", sinceJvmStart(),
+                event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : -1);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (firstRequestSeen.get()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (firstRequestSeen.compareAndSet(false, true)) {
+                logger.info("First request ({} {}) served {} ms after JVM start", request.getMethod(),
+                        request.getRequestURI(), sinceJvmStart());
+            }
+        }
+    }
+
+    private static long sinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
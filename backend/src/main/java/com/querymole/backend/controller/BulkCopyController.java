@@ -0,0 +1,57 @@
+package com.querymole.backend.controller;
+
+import com.querymole.backend.dto.CopyRequest;
+import com.querymole.backend.service.BulkCopyService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/copy")
+@CrossOrigin(origins = "*") // Allow all for dev
+public class BulkCopyController {
+
+    private final BulkCopyService bulkCopyService;
+
+    public BulkCopyController(BulkCopyService bulkCopyService) {
+        this.bulkCopyService = bulkCopyService;
+    }
+
+    /**
+     * Starts copying a query result into a table; poll its status for progress
+     * and throughput.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> start(@RequestBody CopyRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkCopyService.start(request));
+    }
+
+    @GetMapping
+    public List<Map<String, Object>> getJobs() {
+        return bulkCopyService.getJobs();
+    }
+
+    @GetMapping("/{id}")
+    public Map<String, Object> getStatus(@PathVariable String id) {
+        return bulkCopyService.getStatus(id);
+    }
+
+    @DeleteMapping("/{id}")
+    public Map<String, Object> cancel(@PathVariable String id) {
+        return bulkCopyService.cancel(id);
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<Map<String, Object>> handleNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+    }
+}
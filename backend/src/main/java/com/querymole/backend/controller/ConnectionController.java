@@ -4,6 +4,7 @@ import com.querymole.backend.dto.ConnectionRequest;
 import com.querymole.backend.dto.DriverInfo;
 import com.querymole.backend.service.DriverLoaderService;
 import com.querymole.backend.service.JdbcExecutorService;
+import com.querymole.backend.service.TargetAdmissionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
@@ -21,10 +22,13 @@ public class ConnectionController {
 
     private final JdbcExecutorService jdbcExecutorService;
     private final DriverLoaderService driverLoaderService;
+    private final TargetAdmissionService targetAdmissionService;
 
-    public ConnectionController(JdbcExecutorService jdbcExecutorService, DriverLoaderService driverLoaderService) {
+    public ConnectionController(JdbcExecutorService jdbcExecutorService, DriverLoaderService driverLoaderService,
+            TargetAdmissionService targetAdmissionService) {
         this.jdbcExecutorService = jdbcExecutorService;
         this.driverLoaderService = driverLoaderService;
+        this.targetAdmissionService = targetAdmissionService;
     }
 
     /**
@@ -81,4 +85,13 @@ public class ConnectionController {
                     "errorType", e.getClass().getSimpleName()));
         }
     }
+
+    /**
+     * Statement slots, queue depth, wait times and circuit breaker state per
+     * target database.
+     */
+    @GetMapping("/admission")
+    public List<Map<String, Object>> getAdmissionStats() {
+        return targetAdmissionService.getStats();
+    }
 }
@@ -0,0 +1,56 @@
+package com.querymole.backend.controller;
+
+import com.querymole.backend.dto.ExtractionRequest;
+import com.querymole.backend.service.ParallelExtractionService;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/extract")
+@CrossOrigin(origins = "*") // Allow all for dev
+public class ExtractionController {
+
+    private final ParallelExtractionService parallelExtractionService;
+
+    public ExtractionController(ParallelExtractionService parallelExtractionService) {
+        this.parallelExtractionService = parallelExtractionService;
+    }
+
+    /**
+     * Extracts a table or query as CSV, reading ranges of the split column
+     * concurrently. The range is planned before the download starts, so
+     * invalid requests fail with 400 instead of an empty file.
+     */
+    @PostMapping
+    public ResponseEntity<StreamingResponseBody> extract(@RequestBody ExtractionRequest request)
+            throws InterruptedException {
+        ParallelExtractionService.Plan plan = parallelExtractionService.plan(request);
+        StreamingResponseBody body = out -> parallelExtractionService.export(plan, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"extract.csv\"")
+                .header("X-Extract-Chunks", String.valueOf(plan.getChunkCount()))
+                .contentType(new MediaType("text", "csv"))
+                .body(body);
+    }
+
+    @ExceptionHandler({ IllegalArgumentException.class, DataAccessException.class })
+    public ResponseEntity<Map<String, Object>> handleBadRequest(RuntimeException e) {
+        return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    /**
+     * The target refused the statements (queue timeout or open circuit)
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, Object>> handleUnavailable(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("success", false, "error", e.getMessage()));
+    }
+}
@@ -0,0 +1,48 @@
+package com.querymole.backend.controller;
+
+import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.FederatedJoinRequest;
+import com.querymole.backend.service.FederatedJoinService;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/federated")
+@CrossOrigin(origins = "*") // Allow all for dev
+public class FederatedJoinController {
+
+    private final FederatedJoinService federatedJoinService;
+
+    public FederatedJoinController(FederatedJoinService federatedJoinService) {
+        this.federatedJoinService = federatedJoinService;
+    }
+
+    /**
+     * Joins two query results, each from its own connection profile (or the
+     * active connection).
+     */
+    @PostMapping("/join")
+    public ExecutionResponse join(@RequestBody FederatedJoinRequest request)
+            throws InterruptedException, IOException {
+        return federatedJoinService.join(request);
+    }
+
+    @ExceptionHandler({ IllegalArgumentException.class, DataAccessException.class })
+    public ResponseEntity<Map<String, Object>> handleBadRequest(RuntimeException e) {
+        return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    /**
+     * A target refused the query (queue timeout or open circuit)
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, Object>> handleUnavailable(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("success", false, "error", e.getMessage()));
+    }
+}
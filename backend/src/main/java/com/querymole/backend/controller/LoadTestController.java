@@ -0,0 +1,59 @@
+package com.querymole.backend.controller;
+
+import com.querymole.backend.dto.LoadTestRequest;
+import com.querymole.backend.service.LoadTestService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/loadtest")
+@CrossOrigin(origins = "*") // Allow all for dev
+public class LoadTestController {
+
+    private final LoadTestService loadTestService;
+
+    public LoadTestController(LoadTestService loadTestService) {
+        this.loadTestService = loadTestService;
+    }
+
+    /**
+     * Starts a load test in the background; poll its status for live results.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> start(@RequestBody LoadTestRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(loadTestService.start(request));
+    }
+
+    @GetMapping
+    public List<Map<String, Object>> getRuns() {
+        return loadTestService.getRuns();
+    }
+
+    /**
+     * Throughput, latency percentiles and errors so far (final once finished).
+     */
+    @GetMapping("/{id}")
+    public Map<String, Object> getStatus(@PathVariable String id) {
+        return loadTestService.getStatus(id);
+    }
+
+    @DeleteMapping("/{id}")
+    public Map<String, Object> cancel(@PathVariable String id) {
+        return loadTestService.cancel(id);
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<Map<String, Object>> handleNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+    }
+}
@@ -0,0 +1,85 @@
+package com.querymole.backend.controller;
+
+import com.querymole.backend.dto.ExecutionRequest;
+import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.PinRequest;
+import com.querymole.backend.dto.PinnedTable;
+import com.querymole.backend.service.PinnedResultService;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Results pinned into the session's local workspace and SQL over them.
+ */
+@RestController
+@RequestMapping("/api/pins")
+@CrossOrigin(origins = "*") // Allow all for dev
+public class PinController {
+
+    private final PinnedResultService pinnedResultService;
+
+    public PinController(PinnedResultService pinnedResultService) {
+        this.pinnedResultService = pinnedResultService;
+    }
+
+    @GetMapping
+    public List<PinnedTable> getTables(HttpSession session) {
+        return pinnedResultService.getTables(session.getId());
+    }
+
+    /**
+     * Runs a query against the active connection and loads its result into a
+     * local table.
+     */
+    @PostMapping
+    public PinnedTable pin(@RequestBody PinRequest request, HttpSession session) throws InterruptedException {
+        return pinnedResultService.pin(session.getId(), request);
+    }
+
+    /**
+     * Runs read-only SQL over the pinned tables; nothing is sent to the
+     * database.
+     */
+    @PostMapping("/query")
+    public ExecutionResponse query(@RequestBody ExecutionRequest request, HttpSession session) {
+        return pinnedResultService.query(session.getId(), request.getSql());
+    }
+
+    @PostMapping("/{name}/indexes")
+    public PinnedTable createIndex(@PathVariable String name, @RequestBody List<String> columns,
+            HttpSession session) {
+        return pinnedResultService.createIndex(session.getId(), name, columns);
+    }
+
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Void> drop(@PathVariable String name, HttpSession session) {
+        pinnedResultService.drop(session.getId(), name);
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<Map<String, Object>> handleNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    @ExceptionHandler({ IllegalArgumentException.class, DataAccessException.class })
+    public ResponseEntity<Map<String, Object>> handleBadRequest(RuntimeException e) {
+        return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    /**
+     * The target refused the query, or no workspace could be created
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, Object>> handleUnavailable(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("success", false, "error", e.getMessage()));
+    }
+}
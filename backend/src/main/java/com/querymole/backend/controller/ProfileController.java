@@ -0,0 +1,88 @@
+package com.querymole.backend.controller;
+
+import com.querymole.backend.dto.ExecutionRequest;
+import com.querymole.backend.dto.ProfileReport;
+import com.querymole.backend.service.ProfilingService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/profile")
+@CrossOrigin(origins = "*") // Allow all for dev
+public class ProfileController {
+
+    private final ProfilingService profilingService;
+
+    public ProfileController(ProfilingService profilingService) {
+        this.profilingService = profilingService;
+    }
+
+    /**
+     * Executes a library query (queryId) or the SQL in the body under a flight
+     * recording and returns the summary.
+     */
+    @PostMapping
+    public ProfileReport profile(@RequestParam(required = false) String queryId,
+            @RequestBody(required = false) ExecutionRequest request) throws IOException {
+        return profilingService.profile(queryId, request != null ? request.getSql() : null,
+                request != null ? request.getParameters() : null);
+    }
+
+    @GetMapping
+    public List<ProfileReport> list() {
+        return profilingService.list();
+    }
+
+    @GetMapping("/{id}")
+    public ProfileReport get(@PathVariable String id) {
+        return profilingService.get(id);
+    }
+
+    /**
+     * The recording, for JDK Mission Control or `jfr print`
+     */
+    @GetMapping("/{id}/jfr")
+    public ResponseEntity<StreamingResponseBody> download(@PathVariable String id) {
+        // Fail with 404 before the download starts
+        profilingService.get(id);
+        StreamingResponseBody body = out -> profilingService.copyTo(id, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"profile-" + id + ".jfr\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) throws IOException {
+        profilingService.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<Map<String, Object>> handleNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    /**
+     * Profiling is disabled or another profile is running
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, Object>> handleUnavailable(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("success", false, "error", e.getMessage()));
+    }
+}
@@ -2,13 +2,32 @@ package com.querymole.backend.controller;
 
 import com.querymole.backend.dto.ExecutionRequest;
 import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.FolderRunReport;
+import com.querymole.backend.dto.FolderRunRequest;
+import com.querymole.backend.dto.MoveNodeRequest;
+import com.querymole.backend.dto.PreviewRequest;
+import com.querymole.backend.dto.QueryFolderListing;
+import com.querymole.backend.dto.QueryNodeHeader;
+import com.querymole.backend.dto.QuerySearchResult;
+import com.querymole.backend.dto.ScriptExecutionResponse;
 import com.querymole.backend.model.QueryNode;
+import com.querymole.backend.service.FolderRunService;
 import com.querymole.backend.service.JdbcExecutorService;
+import com.querymole.backend.service.PreviewService;
 import com.querymole.backend.service.QueryService;
+import com.querymole.backend.service.ResultDeltaService;
+import com.querymole.backend.service.ResultMemoryGovernor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 @RestController
 @RequestMapping("/api")
@@ -21,13 +40,180 @@ public class QueryController {
     @Autowired
     private JdbcExecutorService jdbcExecutorService;
 
+    @Autowired
+    private ResultDeltaService resultDeltaService;
+
+    @Autowired
+    private ResultMemoryGovernor resultMemoryGovernor;
+
+    @Autowired
+    private PreviewService previewService;
+
+    @Autowired
+    private FolderRunService folderRunService;
+
     @GetMapping("/queries")
-    public List<QueryNode> getQueries() {
+    public List<QueryNode> getQueries(WebRequest webRequest) {
+        if (webRequest.checkNotModified(queryService.getVersion(null))) {
+            return null;
+        }
         return queryService.getQueryTree();
     }
 
+    /**
+     * Lazy tree: headers of the direct children of a folder (top level when no
+     * parent is given), without SQL. The ETag is the folder's subtree version,
+     * so an unchanged folder revalidates with 304 Not Modified.
+     */
+    @GetMapping("/queries/tree")
+    public QueryFolderListing getFolder(@RequestParam(required = false) String parentId, WebRequest webRequest) {
+        QueryFolderListing listing = queryService.getFolderListing(parentId);
+        if (webRequest.checkNotModified(listing.getVersion())) {
+            return null;
+        }
+        return listing;
+    }
+
+    /**
+     * A single node with its SQL and parameters, for when it is opened.
+     */
+    @GetMapping("/queries/{id}")
+    public QueryNodeHeader getQueryNode(@PathVariable String id, WebRequest webRequest) {
+        QueryNodeHeader detail = queryService.getNodeDetail(id);
+        if (webRequest.checkNotModified(detail.getVersion())) {
+            return null;
+        }
+        return detail;
+    }
+
+    /**
+     * Ranked search over query names, SQL comments and SQL text. The last word
+     * also matches as a prefix.
+     */
+    @GetMapping("/queries/search")
+    public List<QuerySearchResult> searchQueries(@RequestParam("q") String text,
+            @RequestParam(defaultValue = "20") int limit) {
+        return queryService.search(text, Math.max(1, Math.min(limit, 200)));
+    }
+
+    @PostMapping("/queries")
+    public QueryNode addQueryNode(@RequestParam(required = false) String parentId, @RequestBody QueryNode node) {
+        return queryService.addNode(parentId, node);
+    }
+
+    /**
+     * Imports a list of nodes (e.g. an exported library JSON) under a folder or
+     * at the top level.
+     */
+    @PostMapping("/queries/import")
+    public List<QueryNode> importQueryNodes(@RequestParam(required = false) String parentId,
+            @RequestBody List<QueryNode> nodes) {
+        return queryService.importNodes(parentId, nodes);
+    }
+
+    @PutMapping("/queries/{id}")
+    public QueryNode updateQueryNode(@PathVariable String id, @RequestBody QueryNode changes) {
+        return queryService.updateNode(id, changes);
+    }
+
+    @PostMapping("/queries/{id}/move")
+    public QueryNode moveQueryNode(@PathVariable String id, @RequestBody MoveNodeRequest request) {
+        return queryService.moveNode(id, request.getParentId(), request.getPosition());
+    }
+
+    @DeleteMapping("/queries/{id}")
+    public ResponseEntity<Void> deleteQueryNode(@PathVariable String id) {
+        queryService.deleteNode(id);
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/execute")
     public ExecutionResponse execute(@RequestBody ExecutionRequest request) {
-        return jdbcExecutorService.executeQuery(request.getSql());
+        ExecutionResponse response = request.getParameters() != null
+                ? jdbcExecutorService.executeQuery(request.getSql(), request.getParameters(), null)
+                : jdbcExecutorService.executeQuery(request.getSql());
+        return withChangeTracking(request, response, request.getSql());
+    }
+
+    /**
+     * Executes a library query by id, binding the supplied values to its
+     * declared parameters and applying its execution hints. Queries hinted
+     * for streaming write rows to the response as they are read, unless a
+     * delta is requested.
+     */
+    @PostMapping("/queries/{id}/execute")
+    public ResponseEntity<?> executeById(@PathVariable String id, @RequestBody(required = false) ExecutionRequest request) {
+        QueryNode node = queryService.getQueryNode(id);
+        if (node == null || !"QUERY".equals(node.getType())) {
+            return ResponseEntity.ok(ExecutionResponse.failure("Query not found: " + id));
+        }
+        Map<String, Object> values = request != null ? request.getParameters() : null;
+        boolean delta = request != null && (request.isDelta() || request.getPreviousResultToken() != null);
+        if (node.getHints() != null && node.getHints().isStreaming() && !delta) {
+            StreamingResponseBody body = out -> jdbcExecutorService.streamLibraryQuery(node, values, out);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        }
+        ExecutionResponse response = jdbcExecutorService.executeLibraryQuery(node, values);
+        return ResponseEntity.ok(request != null ? withChangeTracking(request, response, node.getQuery()) : response);
+    }
+
+    /**
+     * Runs the queries of a folder concurrently and returns one report with
+     * each result, its timing and its error.
+     */
+    @PostMapping("/queries/{id}/run")
+    public FolderRunReport runFolder(@PathVariable String id, @RequestBody(required = false) FolderRunRequest request)
+            throws InterruptedException {
+        return folderRunService.run(id, request);
+    }
+
+    /**
+     * In delta mode, replaces the rows with the changes since the result
+     * identified by the request's previous result token.
+     */
+    private ExecutionResponse withChangeTracking(ExecutionRequest request, ExecutionResponse response, String sql) {
+        if (!request.isDelta() && request.getPreviousResultToken() == null) {
+            return response;
+        }
+        String fingerprint = ResultDeltaService.fingerprint(jdbcExecutorService.getTargetKey(), sql,
+                request.getParameters());
+        return resultDeltaService.track(response, request.getPreviousResultToken(), request.getKeyColumns(),
+                fingerprint);
+    }
+
+    /**
+     * Executes a multi-statement script in a single transaction and returns
+     * every result set and update count.
+     */
+    @PostMapping("/execute/script")
+    public ScriptExecutionResponse executeScript(@RequestBody ExecutionRequest request) {
+        return jdbcExecutorService.executeScript(request.getSql());
+    }
+
+    /**
+     * Returns a bounded sample of a table or query, sampled on the server where
+     * the database supports it.
+     */
+    @PostMapping("/execute/preview")
+    public ExecutionResponse preview(@RequestBody PreviewRequest request) {
+        return previewService.preview(request);
+    }
+
+    /**
+     * Result memory budgets and current usage.
+     */
+    @GetMapping("/execute/memory")
+    public Map<String, Object> getMemoryStats() {
+        return resultMemoryGovernor.getStats();
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<Map<String, Object>> handleNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
     }
 }
@@ -0,0 +1,50 @@
+package com.querymole.backend.controller;
+
+import com.querymole.backend.service.LobStore;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/results")
+@CrossOrigin(origins = "*") // Allow all for dev
+public class ResultController {
+
+    private final LobStore lobStore;
+
+    public ResultController(LobStore lobStore) {
+        this.lobStore = lobStore;
+    }
+
+    /**
+     * Streams the full value of a large cell that was returned as a preview.
+     * Text is sent as UTF-8, binary values as a download.
+     */
+    @GetMapping("/{handle}/cell")
+    public ResponseEntity<StreamingResponseBody> getCell(@PathVariable String handle, @RequestParam int row,
+            @RequestParam String column) {
+        boolean text = lobStore.isText(handle, row, column);
+        StreamingResponseBody body = out -> lobStore.copyTo(handle, row, column, out);
+        if (text) {
+            return ResponseEntity.ok()
+                    .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                    .body(body);
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"cell-" + row + ".bin\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<Map<String, Object>> handleNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "error", e.getMessage()));
+    }
+}
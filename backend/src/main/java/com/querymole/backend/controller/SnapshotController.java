@@ -0,0 +1,105 @@
+package com.querymole.backend.controller;
+
+import com.querymole.backend.dto.ResultDelta;
+import com.querymole.backend.dto.SnapshotInfo;
+import com.querymole.backend.dto.SnapshotPage;
+import com.querymole.backend.dto.SnapshotRequest;
+import com.querymole.backend.service.ResultSnapshotService;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/snapshots")
+@CrossOrigin(origins = "*") // Allow all for dev
+public class SnapshotController {
+
+    private final ResultSnapshotService snapshotService;
+
+    public SnapshotController(ResultSnapshotService snapshotService) {
+        this.snapshotService = snapshotService;
+    }
+
+    /**
+     * Runs a query once and stores its result as a snapshot.
+     */
+    @PostMapping
+    public SnapshotInfo create(@RequestBody SnapshotRequest request) throws InterruptedException {
+        return snapshotService.create(request);
+    }
+
+    @GetMapping
+    public List<SnapshotInfo> list() throws IOException {
+        return snapshotService.list();
+    }
+
+    @GetMapping("/{id}")
+    public SnapshotInfo getInfo(@PathVariable String id) {
+        return snapshotService.getInfo(id);
+    }
+
+    /**
+     * A page of rows, in stored order or sorted by one column.
+     */
+    @GetMapping("/{id}/rows")
+    public SnapshotPage getRows(@PathVariable String id, @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(defaultValue = "100") int limit, @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "false") boolean desc) {
+        return snapshotService.page(id, offset, limit, sort, desc);
+    }
+
+    @GetMapping("/{id}/export")
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable String id,
+            @RequestParam(required = false) String sort, @RequestParam(defaultValue = "false") boolean desc) {
+        // Fail with 404 before the download starts
+        snapshotService.getInfo(id);
+        StreamingResponseBody body = out -> snapshotService.export(id, sort, desc, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"snapshot-" + id + ".csv\"")
+                .contentType(new MediaType("text", "csv"))
+                .body(body);
+    }
+
+    /**
+     * Changes from this snapshot to another one of the same query.
+     */
+    @GetMapping("/{id}/compare/{otherId}")
+    public ResultDelta compare(@PathVariable String id, @PathVariable String otherId,
+            @RequestParam(required = false) List<String> keyColumns) {
+        return snapshotService.compare(id, otherId, keyColumns);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) throws IOException {
+        snapshotService.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    public ResponseEntity<Map<String, Object>> handleNotFound(NoSuchElementException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    @ExceptionHandler({ IllegalArgumentException.class, DataAccessException.class })
+    public ResponseEntity<Map<String, Object>> handleBadRequest(RuntimeException e) {
+        return ResponseEntity.badRequest().body(Map.of("success", false, "error", e.getMessage()));
+    }
+
+    /**
+     * The target refused the query (queue timeout or open circuit)
+     */
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, Object>> handleUnavailable(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("success", false, "error", e.getMessage()));
+    }
+}
@@ -0,0 +1,70 @@
+package com.querymole.backend.controller;
+
+import com.querymole.backend.model.QueryNode;
+import com.querymole.backend.service.QueryService;
+import com.querymole.backend.service.WatchService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/watch")
+@CrossOrigin(origins = "*") // Allow all for dev
+public class WatchController {
+
+    private static final String PARAMETER_PREFIX = "param.";
+
+    private final WatchService watchService;
+    private final QueryService queryService;
+
+    public WatchController(WatchService watchService, QueryService queryService) {
+        this.watchService = watchService;
+        this.queryService = queryService;
+    }
+
+    /**
+     * Subscribes to a query re-run on a server-side schedule. Either a library
+     * query id or ad-hoc SQL is given; parameter values are passed as
+     * {@code param.<name>=value}. With mode=delta only changes are pushed after
+     * the first result.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> watch(@RequestParam(required = false) String queryId,
+            @RequestParam(required = false) String sql,
+            @RequestParam(defaultValue = "5000") long intervalMs,
+            @RequestParam(defaultValue = "full") String mode,
+            @RequestParam(required = false) List<String> keyColumns,
+            @RequestParam Map<String, String> allParams) {
+        Map<String, Object> parameters = new HashMap<>();
+        allParams.forEach((name, value) -> {
+            if (name.startsWith(PARAMETER_PREFIX)) {
+                parameters.put(name.substring(PARAMETER_PREFIX.length()), value);
+            }
+        });
+
+        boolean delta = "delta".equalsIgnoreCase(mode);
+        if (queryId != null) {
+            QueryNode node = queryService.getQueryNode(queryId);
+            if (node == null || !"QUERY".equals(node.getType())) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(watchService.subscribe(node.getQuery(), parameters, node.getParameters(),
+                    node.getHints(), intervalMs, delta, keyColumns));
+        }
+        if (sql == null || sql.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(watchService.subscribe(sql, parameters, null, null, intervalMs, delta,
+                keyColumns));
+    }
+
+    @GetMapping("/active")
+    public List<Map<String, Object>> getActiveWatches() {
+        return watchService.getActiveWatches();
+    }
+}
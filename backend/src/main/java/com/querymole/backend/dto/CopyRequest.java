@@ -0,0 +1,33 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Copies the result of a query into an existing table, possibly on another
+ * database.
+ */
+@Data
+public class CopyRequest {
+    /**
+     * Connection to read from and to write to; null for the active connection
+     */
+    private ConnectionRequest source;
+    private ConnectionRequest target;
+
+    private String sql;
+
+    /**
+     * Existing table whose columns are named like the result columns
+     */
+    private String targetTable;
+
+    /**
+     * Rows per insert batch, defaulting to querymole.copy.batch-size
+     */
+    private Integer batchSize;
+
+    /**
+     * Use COPY FROM STDIN when the target is PostgreSQL
+     */
+    private boolean postgresCopy = true;
+}
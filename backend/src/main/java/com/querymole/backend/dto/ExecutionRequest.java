@@ -2,7 +2,32 @@ package com.querymole.backend.dto;
 
 import lombok.Data;
 
+import java.util.List;
+import java.util.Map;
+
 @Data
 public class ExecutionRequest {
     private String sql;
+
+    /**
+     * Values for named parameters (:name) in the SQL, keyed by parameter name
+     */
+    private Map<String, Object> parameters;
+
+    /**
+     * Requests change tracking: the response carries a result token and row
+     * keys, and re-executions that send the token back receive only the changes
+     */
+    private boolean delta;
+
+    /**
+     * Token of the previous result to compute changes against
+     */
+    private String previousResultToken;
+
+    /**
+     * Columns identifying a row across executions; the whole row is hashed when
+     * empty
+     */
+    private List<String> keyColumns;
 }
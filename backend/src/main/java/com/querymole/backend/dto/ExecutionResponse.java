@@ -1,13 +1,12 @@
 package com.querymole.backend.dto;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.util.List;
 import java.util.Map;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class ExecutionResponse {
     private List<String> columns;
@@ -16,6 +15,54 @@ public class ExecutionResponse {
     private boolean success;
     private long executionTimeMs;
 
+    /**
+     * Change tracking (delta mode only): the token to send back on the next
+     * execution, the key of each row in a full result, and the changes when the
+     * result is relative to a previous one (rows is then null)
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String resultToken;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> rowKeys;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ResultDelta changes;
+
+    /**
+     * Set when fetching stopped at a memory budget: the rows are a prefix of
+     * the result. The rest is not fetched; the totals come from the planner's
+     * row estimate, with the bytes extrapolated from the fetched rows, and are
+     * null when the database gives no estimate.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean truncated;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String truncationReason;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long estimatedTotalRows;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long estimatedTotalBytes;
+
+    /**
+     * Set for previews: how the rows were sampled
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SampleStats sample;
+
+    /**
+     * Set when a library query's result was served from the result cache
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean cached;
+
+    public ExecutionResponse(List<String> columns, List<Map<String, Object>> rows, String error, boolean success,
+            long executionTimeMs) {
+        this.columns = columns;
+        this.rows = rows;
+        this.error = error;
+        this.success = success;
+        this.executionTimeMs = executionTimeMs;
+    }
+
     public static ExecutionResponse success(List<String> columns, List<Map<String, Object>> rows, long executionTimeMs) {
         ExecutionResponse response = new ExecutionResponse();
         response.setColumns(columns);
@@ -0,0 +1,25 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+
+/**
+ * A bulk extraction split into ranges of a numeric or timestamp column. Either
+ * a table or a query is given.
+ */
+@Data
+public class ExtractionRequest {
+    private String table;
+    private String sql;
+    private String splitColumn;
+
+    /**
+     * Number of ranges; defaults to the target's concurrent statement limit
+     */
+    private Integer partitions;
+
+    /**
+     * Whether ranges are written in split-column order (buffered on disk) or
+     * as soon as rows arrive
+     */
+    private boolean ordered = true;
+}
@@ -0,0 +1,23 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+
+/**
+ * Joins the results of two queries, possibly on different databases, without
+ * moving either table: both sides are streamed and hash-joined in the backend.
+ */
+@Data
+public class FederatedJoinRequest {
+    private FederatedSide left;
+    private FederatedSide right;
+
+    /**
+     * INNER (default) or LEFT
+     */
+    private String joinType;
+
+    /**
+     * Caps the joined rows returned, below the configured maximum
+     */
+    private Integer maxRows;
+}
@@ -0,0 +1,23 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One input of a federated join: a query against a connection profile.
+ */
+@Data
+public class FederatedSide {
+    /**
+     * Null to use the active connection
+     */
+    private ConnectionRequest connection;
+
+    private String sql;
+
+    /**
+     * Join key columns, matched by position with the other side's keys
+     */
+    private List<String> keys;
+}
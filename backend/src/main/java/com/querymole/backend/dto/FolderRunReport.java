@@ -0,0 +1,45 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Combined result of running the queries of a folder concurrently, in folder
+ * order.
+ */
+@Data
+@NoArgsConstructor
+public class FolderRunReport {
+    public static final String SUCCESS = "SUCCESS";
+    public static final String FAILED = "FAILED";
+    public static final String TIMED_OUT = "TIMED_OUT";
+
+    private String folderId;
+    private String folderName;
+    private long startedAt;
+    private int parallelism;
+    private int timeoutSeconds;
+
+    /**
+     * Wall-clock time of the whole run, about that of the slowest query when
+     * the parallelism covers the folder
+     */
+    private long elapsedMs;
+
+    private int succeeded;
+    private int failed;
+    private int timedOut;
+    private List<QueryRun> results;
+
+    /**
+     * @param status    SUCCESS, FAILED or TIMED_OUT
+     * @param elapsedMs from the start of this query, excluding time queued
+     *                  behind other queries of the run
+     * @param result    the query's result; null when it timed out
+     */
+    public record QueryRun(String queryId, String name, String status, long elapsedMs, ExecutionResponse result,
+            String error) {
+    }
+}
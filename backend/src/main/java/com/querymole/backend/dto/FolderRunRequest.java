@@ -0,0 +1,27 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Runs every query of a folder at once, e.g. a set of diagnostics checks.
+ */
+@Data
+public class FolderRunRequest {
+    /**
+     * Values bound by name to the parameters each query declares
+     */
+    private Map<String, Object> parameters;
+
+    /**
+     * Queries running at the same time, up to the configured maximum
+     */
+    private Integer parallelism;
+
+    /**
+     * Per-query timeout in seconds, up to the configured maximum; a query's
+     * own shorter timeout hint is kept
+     */
+    private Integer timeoutSeconds;
+}
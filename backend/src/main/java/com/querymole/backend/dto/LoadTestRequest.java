@@ -0,0 +1,35 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A load test of a library query (by id) or of ad-hoc SQL. Runs until the
+ * duration elapses or the iterations are done, whichever comes first; at least
+ * one of the two is required.
+ */
+@Data
+public class LoadTestRequest {
+    private String queryId;
+    private String sql;
+
+    /**
+     * Number of concurrent workers
+     */
+    private int concurrency = 4;
+
+    private Integer durationSeconds;
+
+    /**
+     * Total executions across all workers
+     */
+    private Long iterations;
+
+    /**
+     * Parameter values used in turn by successive executions; none binds the
+     * query's defaults
+     */
+    private List<Map<String, Object>> parameterSets;
+}
@@ -0,0 +1,35 @@
+package com.querymole.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Placeholder for a large binary or text cell: a bounded preview plus the
+ * reference needed to stream the full value from
+ * /api/results/{handle}/cell?row=&column=.
+ */
+@Data
+@NoArgsConstructor
+public class LobValue {
+    /**
+     * "binary" (preview in hex) or "text"
+     */
+    private String kind;
+
+    private String preview;
+
+    /**
+     * Full length in bytes (binary) or characters (text)
+     */
+    private long length;
+
+    /**
+     * Null when the value could not be kept for download (disk budget
+     * exhausted); only the preview is available then
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String handle;
+    private int row;
+    private String column;
+}
@@ -0,0 +1,16 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+
+@Data
+public class MoveNodeRequest {
+    /**
+     * Target folder id, or null to move the node to the top level
+     */
+    private String parentId;
+
+    /**
+     * Position among the target's children, or null to append
+     */
+    private Integer position;
+}
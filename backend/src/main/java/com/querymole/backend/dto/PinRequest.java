@@ -0,0 +1,22 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Runs a library query (by id) or ad-hoc SQL and loads its result into a
+ * local table of the session's workspace.
+ */
+@Data
+public class PinRequest {
+    /**
+     * Local table name: letters, digits and underscores. An existing table
+     * with this name is replaced.
+     */
+    private String name;
+
+    private String queryId;
+    private String sql;
+    private Map<String, Object> parameters;
+}
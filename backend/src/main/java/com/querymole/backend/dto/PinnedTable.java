@@ -0,0 +1,45 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A result pinned into the session's local H2 workspace.
+ */
+@Data
+@NoArgsConstructor
+public class PinnedTable {
+    private String name;
+    private String sql;
+    private List<String> columns;
+    private long rowCount;
+
+    /**
+     * Approximate heap taken by the loaded values
+     */
+    private long estimatedBytes;
+
+    /**
+     * Loading stopped at the row or memory limit of the workspace, or at the
+     * result memory budget
+     */
+    private boolean truncated;
+    private String truncationReason;
+
+    /**
+     * Character and binary values longer than the local column limit, stored
+     * cut to it
+     */
+    private long cutValues;
+
+    private long loadTimeMs;
+    private long createdAt;
+
+    /**
+     * Indexed column lists, e.g. "customer_id, created_at"
+     */
+    private List<String> indexes = new ArrayList<>();
+}
@@ -0,0 +1,18 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+
+/**
+ * A preview of a table or query. Native sampling needs a table; a query is
+ * always sampled from its result.
+ */
+@Data
+public class PreviewRequest {
+    private String table;
+    private String sql;
+
+    /**
+     * Requested number of rows; defaults to querymole.preview.sample-size
+     */
+    private Integer sampleSize;
+}
@@ -0,0 +1,56 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Summary of a flight recording scoped to one query execution. Method samples
+ * and allocations are those of the executing thread; GC pauses are global but
+ * fall inside the execution.
+ */
+@Data
+@NoArgsConstructor
+public class ProfileReport {
+    private String id;
+    private String sql;
+    private long createdAt;
+    private boolean success;
+    private String error;
+    private long rowCount;
+
+    /**
+     * Query execution including type conversion, then serialization of the
+     * response to JSON
+     */
+    private long executionTimeMs;
+    private long serializationTimeMs;
+
+    private long executionSamples;
+    private List<MethodSamples> hotMethods;
+    private List<AllocationSite> allocationSites;
+
+    private int gcPauseCount;
+    private double gcPauseTotalMs;
+    private double gcPauseMaxMs;
+
+    /**
+     * Size of the .jfr file available for download
+     */
+    private long recordingBytes;
+
+    /**
+     * @param selfSamples  samples with the method on top of the stack
+     * @param totalSamples samples with the method anywhere on the stack
+     */
+    public record MethodSamples(String method, long selfSamples, long totalSamples) {
+    }
+
+    /**
+     * @param allocatedBytes sampled allocation weight, an estimate of the
+     *                       bytes allocated
+     */
+    public record AllocationSite(String method, String objectClass, long allocatedBytes) {
+    }
+}
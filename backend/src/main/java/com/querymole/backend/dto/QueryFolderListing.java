@@ -0,0 +1,20 @@
+package com.querymole.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * The direct children of a folder (or of the top level when parentId is null)
+ * and the subtree version sent as its ETag.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryFolderListing {
+    private String parentId;
+    private String version;
+    private List<QueryNodeHeader> children;
+}
@@ -0,0 +1,40 @@
+package com.querymole.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.querymole.backend.model.ExecutionHints;
+import com.querymole.backend.model.QueryParameter;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A library node without its children. Folder listings carry headers only;
+ * the SQL, parameters, chart settings and execution hints are included when a
+ * single node is fetched.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryNodeHeader {
+    private String id;
+    private String name;
+    private String type;
+
+    /**
+     * Number of direct children (folders only)
+     */
+    private Integer childCount;
+
+    /**
+     * Hash of the node and its whole subtree; changes whenever anything below
+     * it changes
+     */
+    private String version;
+
+    private String query;
+    private List<QueryParameter> parameters;
+    private Map<String, Object> chartConfig;
+    private ExecutionHints hints;
+}
@@ -0,0 +1,24 @@
+package com.querymole.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A ranked match from the query library search.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuerySearchResult {
+    private String id;
+    private String name;
+    private String type;
+
+    /**
+     * Names of the enclosing folders, e.g. "PostgreSQL Diagnostics / Locks"
+     */
+    private String path;
+
+    private double score;
+}
@@ -0,0 +1,31 @@
+package com.querymole.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes between two executions of the same query. Rows are identified by the
+ * row keys returned with the previous result: the declared key column values,
+ * or a hash of the whole row when no key columns are declared (in which case a
+ * changed row shows up as a delete plus an insert).
+ */
+@Data
+@NoArgsConstructor
+public class ResultDelta {
+    private List<Map<String, Object>> inserted = new ArrayList<>();
+    private List<String> insertedKeys = new ArrayList<>();
+    private List<Map<String, Object>> updated = new ArrayList<>();
+    private List<String> updatedKeys = new ArrayList<>();
+    private List<String> deletedKeys = new ArrayList<>();
+    private int unchangedCount;
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return inserted.isEmpty() && updated.isEmpty() && deletedKeys.isEmpty();
+    }
+}
@@ -0,0 +1,40 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How a preview sample was taken.
+ */
+@Data
+@NoArgsConstructor
+public class SampleStats {
+    /**
+     * NATIVE (server-side sampling clause) or RESERVOIR (uniform sample of the
+     * rows read)
+     */
+    private String method;
+
+    private int sampleRows;
+
+    /**
+     * Rows read from the database to draw the sample
+     */
+    private long scannedRows;
+
+    /**
+     * Whether the whole result was read; if not, a reservoir sample only
+     * covers the first scannedRows rows
+     */
+    private boolean complete;
+
+    /**
+     * Exact when complete, else the catalog estimate (null if unknown)
+     */
+    private Long estimatedTotalRows;
+
+    /**
+     * Fraction of all rows in the sample, when the total is known
+     */
+    private Double samplingRate;
+}
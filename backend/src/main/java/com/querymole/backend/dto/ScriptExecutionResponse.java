@@ -0,0 +1,34 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response for a multi-statement script execution. The script runs in a single
+ * transaction: on failure everything is rolled back and {@code results} holds
+ * the results produced before the failing statement.
+ */
+@Data
+@NoArgsConstructor
+public class ScriptExecutionResponse {
+    private List<StatementResult> results = new ArrayList<>();
+    private int statementCount;
+
+    /**
+     * Number of statement round trips sent to the database (a batch counts as
+     * one)
+     */
+    private int roundTrips;
+
+    /**
+     * Zero-based index of the failing statement, or null on success
+     */
+    private Integer failedStatementIndex;
+
+    private String error;
+    private boolean success;
+    private long executionTimeMs;
+}
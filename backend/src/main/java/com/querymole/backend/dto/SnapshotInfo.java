@@ -0,0 +1,32 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A stored result snapshot, as listed.
+ */
+@Data
+@NoArgsConstructor
+public class SnapshotInfo {
+    private String id;
+    private String name;
+    private String sql;
+    private long createdAt;
+    private List<String> columns;
+    private long rowCount;
+
+    /**
+     * Execution time of the query the snapshot was taken from
+     */
+    private long executionTimeMs;
+
+    private long fileBytes;
+
+    /**
+     * Size of the encoded values before compression
+     */
+    private long rawBytes;
+}
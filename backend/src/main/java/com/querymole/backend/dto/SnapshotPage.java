@@ -0,0 +1,26 @@
+package com.querymole.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of rows read from a snapshot, in stored order or sorted by a column.
+ */
+@Data
+@NoArgsConstructor
+public class SnapshotPage {
+    private String id;
+    private List<String> columns;
+    private List<Map<String, Object>> rows;
+    private long offset;
+    private long totalRows;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String sortColumn;
+
+    private boolean descending;
+}
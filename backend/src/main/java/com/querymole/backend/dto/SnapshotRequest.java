@@ -0,0 +1,21 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Runs a library query (by id) or ad-hoc SQL once and stores the result as a
+ * snapshot.
+ */
+@Data
+public class SnapshotRequest {
+    /**
+     * Defaults to the query name or the beginning of the SQL
+     */
+    private String name;
+
+    private String queryId;
+    private String sql;
+    private Map<String, Object> parameters;
+}
@@ -0,0 +1,48 @@
+package com.querymole.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a single statement (or one of its result sets) within a script
+ * execution. Statements returning several result sets or update counts produce
+ * one entry per result, all sharing the same statement index.
+ */
+@Data
+@NoArgsConstructor
+public class StatementResult {
+    /**
+     * Zero-based position of the statement in the script
+     */
+    private int statementIndex;
+
+    private String sql;
+
+    /**
+     * Columns and rows, set when the result is a result set
+     */
+    private List<String> columns;
+    private List<Map<String, Object>> rows;
+
+    /**
+     * Whether fetching stopped early because the script's result memory budget
+     * was exhausted
+     */
+    private boolean truncated;
+
+    /**
+     * Affected row count, set when the result is an update count
+     */
+    private Long updateCount;
+
+    /**
+     * Whether the statement was sent as part of a JDBC batch. Batched
+     * statements share the timing of their batch.
+     */
+    private boolean batched;
+
+    private long executionTimeMs;
+}
@@ -0,0 +1,57 @@
+package com.querymole.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Execution settings of a library query, applied whenever it runs by id.
+ * Unset hints fall back to the querymole.query.* defaults.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExecutionHints {
+    public static final String STREAMING = "STREAMING";
+    public static final String BUFFERED = "BUFFERED";
+
+    /**
+     * Row cap; cannot raise a configured querymole.query.max-rows
+     */
+    private Integer maxRows;
+
+    /**
+     * Rows per round trip, instead of the dialect's default
+     */
+    private Integer fetchSize;
+
+    /**
+     * Statement timeout; cannot raise a configured
+     * querymole.query.timeout-seconds
+     */
+    private Integer queryTimeoutSeconds;
+
+    /**
+     * Forces read-only execution; a configured read-only default cannot be
+     * turned off per query
+     */
+    private Boolean readOnly;
+
+    /**
+     * How long a result is reused for the same parameter values (0 or unset =
+     * not cached)
+     */
+    private Integer cacheTtlSeconds;
+
+    /**
+     * STREAMING writes rows to the response as they are read, without the
+     * memory budget or caching; BUFFERED (default) collects the result first
+     */
+    private String resultMode;
+
+    @JsonIgnore
+    public boolean isStreaming() {
+        return STREAMING.equalsIgnoreCase(resultMode);
+    }
+}
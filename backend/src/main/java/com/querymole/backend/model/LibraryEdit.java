@@ -0,0 +1,26 @@
+package com.querymole.backend.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A single query library change as recorded in the library journal. Replaying
+ * the edits in sequence order on top of the last snapshot restores the tree.
+ */
+@Data
+@NoArgsConstructor
+public class LibraryEdit {
+    private long seq;
+    private String op; // "ADD", "IMPORT", "UPDATE", "MOVE" or "DELETE"
+    private String id; // Target node for UPDATE, MOVE and DELETE
+    private String parentId; // Target folder for ADD, IMPORT and MOVE; null for the top level
+    private Integer position; // MOVE only
+    private QueryNode node; // ADD and UPDATE
+    private List<QueryNode> nodes; // IMPORT
+
+    public LibraryEdit(String op) {
+        this.op = op;
+    }
+}
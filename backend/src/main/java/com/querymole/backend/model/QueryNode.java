@@ -1,26 +1,40 @@
 package com.querymole.backend.model;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Data
+@NoArgsConstructor
 public class QueryNode {
     private String id;
     private String name;
     private String type; // "FOLDER" or "QUERY"
     private String query; // Null if folder
-    private List<QueryNode> children;
+    private List<QueryNode> children = new CopyOnWriteArrayList<>(); // Copy-on-write so readers never see a partial edit
+    private List<QueryParameter> parameters; // Named parameters referenced as :name in the query
+    private Map<String, Object> chartConfig; // Chart settings owned by the frontend, stored as-is
+    private ExecutionHints hints; // Execution settings when run by id; null for the defaults
 
     public QueryNode(String id, String name, String type, String query) {
         this.id = id;
         this.name = name;
         this.type = type;
         this.query = query;
-        this.children = new ArrayList<>();
     }
     
     public void addChild(QueryNode child) {
         this.children.add(child);
     }
+
+    public QueryNode withParameter(String name, String type, String defaultValue, String description) {
+        if (this.parameters == null) {
+            this.parameters = new ArrayList<>();
+        }
+        this.parameters.add(new QueryParameter(name, type, defaultValue, description));
+        return this;
+    }
 }
@@ -0,0 +1,19 @@
+package com.querymole.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A named parameter declared by a library query, referenced in the SQL as
+ * {@code :name} and bound through a PreparedStatement.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryParameter {
+    private String name;
+    private String type; // "STRING", "INTEGER", "DECIMAL", "BOOLEAN", "DATE" or "TIMESTAMP"
+    private String defaultValue; // Null if a value is required
+    private String description;
+}
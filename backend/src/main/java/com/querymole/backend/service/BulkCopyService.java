@@ -0,0 +1,673 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.CopyRequest;
+import com.querymole.backend.util.SqlIdentifiers;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies a query result into a table, typically from one database to another,
+ * as a background job. A reader thread streams the source result and hands
+ * batches of rows over a bounded queue to a writer thread, so at most a few
+ * batches are in memory whatever the result size: a slow target blocks the
+ * reader, a slow source leaves the writer waiting, and both waits are
+ * reported so the bottleneck is visible.
+ * <p>
+ * The writer uses JDBC batch inserts, committed batch by batch, or COPY FROM
+ * STDIN when the target is PostgreSQL (one transaction; the driver is used
+ * reflectively since it is only on the runtime classpath).
+ */
+@Service
+public class BulkCopyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkCopyService.class);
+
+    /**
+     * Marks the end of the source rows in the queue
+     */
+    private static final List<Object[]> END = List.of();
+
+    private final JdbcExecutorService jdbcExecutorService;
+    private final int defaultBatchSize;
+    private final int maxBatchSize;
+    private final int queueBatches;
+    private final int historySize;
+    private final ExecutorService threads;
+
+    /**
+     * Jobs by id in start order; finished jobs beyond the history size are
+     * dropped oldest first
+     */
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+
+    public BulkCopyService(JdbcExecutorService jdbcExecutorService,
+            @Value("${querymole.copy.batch-size:1000}") int defaultBatchSize,
+            @Value("${querymole.copy.max-batch-size:50000}") int maxBatchSize,
+            @Value("${querymole.copy.queue-batches:8}") int queueBatches,
+            @Value("${querymole.copy.history:20}") int historySize) {
+        this.jdbcExecutorService = jdbcExecutorService;
+        this.defaultBatchSize = defaultBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.queueBatches = Math.max(1, queueBatches);
+        this.historySize = historySize;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.threads = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "copy-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private enum State {
+        RUNNING, FINISHED, FAILED, CANCELLED
+    }
+
+    /**
+     * Writes batches of rows to the target table.
+     */
+    private interface BatchSink {
+        void write(List<Object[]> rows) throws SQLException;
+
+        void finish() throws SQLException;
+
+        void abort();
+    }
+
+    private final class Job {
+        final String id = UUID.randomUUID().toString();
+        final CopyRequest request;
+        final int batchSize;
+        final BlockingQueue<List<Object[]>> queue = new ArrayBlockingQueue<>(queueBatches);
+        final long startedAt = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
+        final AtomicInteger running = new AtomicInteger(2);
+        final AtomicLong rowsRead = new AtomicLong();
+        final AtomicLong rowsWritten = new AtomicLong();
+        final AtomicLong batchesWritten = new AtomicLong();
+        final AtomicLong sourceWaitNanos = new AtomicLong();
+        final AtomicLong targetWaitNanos = new AtomicLong();
+
+        JdbcExecutorService.TargetConnection source;
+        JdbcExecutorService.TargetConnection target;
+        Future<?> reader;
+        Future<?> writer;
+
+        /**
+         * Set by the reader before its first batch
+         */
+        volatile List<String> columns;
+        volatile String method;
+        volatile State state = State.RUNNING;
+        volatile String error;
+        volatile long elapsedNanos;
+
+        Job(CopyRequest request, int batchSize) {
+            this.request = request;
+            this.batchSize = batchSize;
+        }
+
+        void read() {
+            // No row limit or timeout: a copy is expected to run long and can be cancelled
+            JdbcExecutorService.ExecutionLimits limits = new JdbcExecutorService.ExecutionLimits(0, 0, true);
+            try {
+                jdbcExecutorService.streamQuery(source, request.getSql(), limits, rs -> {
+                    columns = columnNames(rs.getMetaData());
+                    int columnCount = columns.size();
+                    List<Object[]> batch = new ArrayList<>(batchSize);
+                    while (state == State.RUNNING && rs.next()) {
+                        Object[] row = new Object[columnCount];
+                        for (int i = 0; i < columnCount; i++) {
+                            row[i] = readValue(rs, i + 1);
+                        }
+                        batch.add(row);
+                        rowsRead.incrementAndGet();
+                        if (batch.size() == batchSize) {
+                            if (!put(batch)) {
+                                return null;
+                            }
+                            batch = new ArrayList<>(batchSize);
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        put(batch);
+                    }
+                    return null;
+                });
+                put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                fail("Reading the source failed", e);
+            } finally {
+                done();
+            }
+        }
+
+        void write() {
+            try {
+                jdbcExecutorService.execute(target, (ConnectionCallback<Void>) con -> {
+                    boolean autoCommit = con.getAutoCommit();
+                    con.setAutoCommit(false);
+                    BatchSink sink = null;
+                    try {
+                        while (true) {
+                            List<Object[]> batch = take();
+                            if (batch == null) {
+                                // Cancelled or the reader failed
+                                if (sink != null) {
+                                    sink.abort();
+                                }
+                                con.rollback();
+                                return null;
+                            }
+                            if (batch == END) {
+                                break;
+                            }
+                            if (sink == null) {
+                                sink = openSink(con);
+                            }
+                            sink.write(batch);
+                            rowsWritten.addAndGet(batch.size());
+                            batchesWritten.incrementAndGet();
+                        }
+                        if (sink != null) {
+                            sink.finish();
+                        }
+                        con.commit();
+                    } catch (SQLException | RuntimeException e) {
+                        if (sink != null) {
+                            sink.abort();
+                        }
+                        con.rollback();
+                        throw e;
+                    } finally {
+                        con.setAutoCommit(autoCommit);
+                    }
+                    return null;
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                fail("Writing to " + request.getTargetTable() + " failed", e);
+            } finally {
+                done();
+            }
+        }
+
+        private BatchSink openSink(Connection con) throws SQLException {
+            List<String> names = columns;
+            String columnList = String.join(", ", names);
+            String databaseType = target != null ? target.getDatabaseType() : jdbcExecutorService.getDatabaseType();
+            if (request.isPostgresCopy() && databaseType != null
+                    && databaseType.toLowerCase(Locale.ROOT).startsWith("postgres")) {
+                BatchSink copy = PostgresCopySink.open(con,
+                        "COPY " + request.getTargetTable() + " (" + columnList + ") FROM STDIN");
+                if (copy != null) {
+                    method = "copy";
+                    return copy;
+                }
+                logger.info("Copy job {}: PostgreSQL COPY API not available, using batch inserts", id);
+            }
+            method = "batch";
+            StringBuilder insert = new StringBuilder("INSERT INTO ").append(request.getTargetTable()).append(" (")
+                    .append(columnList).append(") VALUES (");
+            for (int i = 0; i < names.size(); i++) {
+                insert.append(i > 0 ? ", ?" : "?");
+            }
+            insert.append(')');
+            return new InsertSink(con, con.prepareStatement(insert.toString()));
+        }
+
+        /**
+         * @return false if the job stopped (or the thread was interrupted)
+         *         while waiting for room
+         */
+        private boolean put(List<Object[]> batch) {
+            long start = System.nanoTime();
+            try {
+                while (state == State.RUNNING) {
+                    if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                sourceWaitNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * @return the next batch, or null if the job stopped (or the thread
+         *         was interrupted) while waiting
+         */
+        private List<Object[]> take() {
+            long start = System.nanoTime();
+            try {
+                while (state == State.RUNNING) {
+                    List<Object[]> batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (batch != null) {
+                        return batch;
+                    }
+                }
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                targetWaitNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        private synchronized void fail(String message, RuntimeException e) {
+            if (state == State.RUNNING) {
+                state = State.FAILED;
+                error = message + ": " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                logger.warn("Copy job {}: {}", id, error);
+            }
+        }
+
+        /**
+         * The last of the two threads to finish closes the connections.
+         */
+        private void done() {
+            if (running.decrementAndGet() > 0) {
+                return;
+            }
+            elapsedNanos = System.nanoTime() - startNanos;
+            synchronized (this) {
+                if (state == State.RUNNING) {
+                    state = State.FINISHED;
+                }
+            }
+            queue.clear();
+            closeConnections();
+            logger.info("Copy job {} {}: {} rows into {} in {} ms", id, state.name().toLowerCase(),
+                    rowsWritten.get(), request.getTargetTable(), elapsedNanos / 1_000_000);
+        }
+
+        void closeConnections() {
+            if (source != null) {
+                source.close();
+            }
+            if (target != null) {
+                target.close();
+            }
+        }
+
+        Map<String, Object> status() {
+            Map<String, Object> status = new LinkedHashMap<>();
+            long elapsed = state == State.RUNNING ? System.nanoTime() - startNanos : elapsedNanos;
+            double seconds = elapsed / 1e9;
+            status.put("id", id);
+            status.put("state", state);
+            status.put("sql", request.getSql());
+            status.put("targetTable", request.getTargetTable());
+            status.put("method", method);
+            status.put("batchSize", batchSize);
+            status.put("startedAt", startedAt);
+            status.put("elapsedMs", elapsed / 1_000_000);
+            status.put("rowsRead", rowsRead.get());
+            status.put("rowsWritten", rowsWritten.get());
+            status.put("batchesWritten", batchesWritten.get());
+            status.put("rowsPerSecond", seconds > 0 ? rowsWritten.get() / seconds : 0.0);
+            status.put("queuedBatches", queue.size());
+            // Reader blocked on a full queue: the target is the bottleneck, and vice versa
+            status.put("sourceWaitMs", sourceWaitNanos.get() / 1_000_000);
+            status.put("targetWaitMs", targetWaitNanos.get() / 1_000_000);
+            if (error != null) {
+                status.put("error", error);
+            }
+            return status;
+        }
+    }
+
+    /**
+     * Starts a copy in the background. Both connections are opened before
+     * returning, so connection errors are reported right away.
+     *
+     * @return the initial status, including the job id
+     * @throws IllegalArgumentException if the request is incomplete or a
+     *                                  connection cannot be opened
+     */
+    public Map<String, Object> start(CopyRequest request) {
+        if (request.getSql() == null || request.getSql().isBlank()) {
+            throw new IllegalArgumentException("Source SQL is required");
+        }
+        if (!SqlIdentifiers.isQualifiedName(request.getTargetTable())) {
+            throw new IllegalArgumentException("Invalid target table: " + request.getTargetTable());
+        }
+        int batchSize = request.getBatchSize() != null ? request.getBatchSize() : defaultBatchSize;
+        if (batchSize < 1 || batchSize > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + maxBatchSize);
+        }
+
+        Job job = new Job(request, batchSize);
+        try {
+            if (request.getSource() != null) {
+                job.source = jdbcExecutorService.openTarget(request.getSource());
+            }
+            if (request.getTarget() != null) {
+                job.target = jdbcExecutorService.openTarget(request.getTarget());
+            }
+        } catch (RuntimeException e) {
+            job.closeConnections();
+            throw e;
+        }
+        logger.info("Starting copy job {} into {}: {}", job.id, request.getTargetTable(),
+                abbreviate(request.getSql()));
+        job.writer = threads.submit(job::write);
+        job.reader = threads.submit(job::read);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            evictFinished();
+        }
+        return job.status();
+    }
+
+    /**
+     * @throws NoSuchElementException if the job is unknown
+     */
+    public Map<String, Object> getStatus(String id) {
+        return find(id).status();
+    }
+
+    public List<Map<String, Object>> getJobs() {
+        List<Job> snapshot;
+        synchronized (jobs) {
+            snapshot = new ArrayList<>(jobs.values());
+        }
+        List<Map<String, Object>> statuses = new ArrayList<>(snapshot.size());
+        for (Job job : snapshot) {
+            statuses.add(job.status());
+        }
+        return statuses;
+    }
+
+    /**
+     * Stops a running copy. The PostgreSQL COPY transaction is rolled back;
+     * with batch inserts the batches committed so far stay in the target.
+     *
+     * @throws NoSuchElementException if the job is unknown
+     */
+    public Map<String, Object> cancel(String id) {
+        Job job = find(id);
+        stop(job);
+        return job.status();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (jobs) {
+            jobs.values().forEach(this::stop);
+        }
+        threads.shutdownNow();
+    }
+
+    private void stop(Job job) {
+        synchronized (job) {
+            if (job.state != State.RUNNING) {
+                return;
+            }
+            job.state = State.CANCELLED;
+        }
+        // Threads waiting on the queue notice the state change; interrupt
+        // those blocked elsewhere
+        job.reader.cancel(true);
+        job.writer.cancel(true);
+    }
+
+    private Job find(String id) {
+        synchronized (jobs) {
+            Job job = jobs.get(id);
+            if (job == null) {
+                throw new NoSuchElementException("Copy job not found: " + id);
+            }
+            return job;
+        }
+    }
+
+    /**
+     * Drops the oldest finished jobs beyond the history size. Caller holds the
+     * jobs lock.
+     */
+    private void evictFinished() {
+        int excess = jobs.size() - historySize;
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            if (iterator.next().state != State.RUNNING) {
+                iterator.remove();
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * Result column labels, which become the target column names; they must
+     * be plain identifiers (alias the source columns otherwise)
+     */
+    private static List<String> columnNames(ResultSetMetaData metaData) throws SQLException {
+        List<String> names = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String label = metaData.getColumnLabel(i);
+            if (!SqlIdentifiers.isQualifiedName(label) || label.contains(".") || label.startsWith("\"")) {
+                throw new IllegalArgumentException("Column " + label + " is not a plain identifier; alias it in the"
+                        + " source query");
+            }
+            names.add(label);
+        }
+        return names;
+    }
+
+    /**
+     * Source value as handed to the target driver; LOBs are read into memory
+     * since they are only valid while the source row is current
+     */
+    private static Object readValue(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof Clob clob) {
+            return clob.getSubString(1, (int) clob.length());
+        }
+        if (value instanceof Blob blob) {
+            return blob.getBytes(1, (int) blob.length());
+        }
+        return value;
+    }
+
+    private static String abbreviate(String sql) {
+        String flat = sql.replaceAll("\\s+", " ").strip();
+        return flat.length() > 100 ? flat.substring(0, 100) + "..." : flat;
+    }
+
+    /**
+     * JDBC batch inserts, committed batch by batch so the target's undo log
+     * stays small.
+     */
+    private static final class InsertSink implements BatchSink {
+        private final Connection con;
+        private final PreparedStatement statement;
+
+        private InsertSink(Connection con, PreparedStatement statement) {
+            this.con = con;
+            this.statement = statement;
+        }
+
+        @Override
+        public void write(List<Object[]> rows) throws SQLException {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    statement.setObject(i + 1, row[i]);
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            con.commit();
+        }
+
+        @Override
+        public void finish() throws SQLException {
+            statement.close();
+        }
+
+        @Override
+        public void abort() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.debug("Failed to close insert statement: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * COPY ... FROM STDIN through the PostgreSQL driver's CopyManager, with
+     * rows encoded in COPY's text format.
+     */
+    private static final class PostgresCopySink implements BatchSink {
+        private final Object copyIn;
+        private final Method writeToCopy;
+        private final Method endCopy;
+        private final Method cancelCopy;
+        private final StringBuilder text = new StringBuilder();
+
+        private PostgresCopySink(Object copyIn, Method writeToCopy, Method endCopy, Method cancelCopy) {
+            this.copyIn = copyIn;
+            this.writeToCopy = writeToCopy;
+            this.endCopy = endCopy;
+            this.cancelCopy = cancelCopy;
+        }
+
+        /**
+         * @return null if the connection is not a PostgreSQL driver connection
+         *         with the copy API
+         */
+        static BatchSink open(Connection con, String sql) throws SQLException {
+            // Unwrap pool proxies first: the driver classes are visible from the
+            // driver's class loader, which may not be the application's
+            Connection raw = con.isWrapperFor(Connection.class) ? con.unwrap(Connection.class) : con;
+            Class<?> pgConnection;
+            Class<?> copyManager;
+            Class<?> copyIn;
+            try {
+                ClassLoader loader = raw.getClass().getClassLoader();
+                pgConnection = Class.forName("org.postgresql.PGConnection", true, loader);
+                copyManager = Class.forName("org.postgresql.copy.CopyManager", true, loader);
+                copyIn = Class.forName("org.postgresql.copy.CopyIn", true, loader);
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+            if (!raw.isWrapperFor(pgConnection)) {
+                return null;
+            }
+            try {
+                Object manager = pgConnection.getMethod("getCopyAPI").invoke(raw.unwrap(pgConnection));
+                Object operation = copyManager.getMethod("copyIn", String.class).invoke(manager, sql);
+                return new PostgresCopySink(operation,
+                        copyIn.getMethod("writeToCopy", byte[].class, int.class, int.class),
+                        copyIn.getMethod("endCopy"), copyIn.getMethod("cancelCopy"));
+            } catch (ReflectiveOperationException e) {
+                throw sqlException(e);
+            }
+        }
+
+        @Override
+        public void write(List<Object[]> rows) throws SQLException {
+            text.setLength(0);
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) {
+                        text.append('\t');
+                    }
+                    appendValue(text, row[i]);
+                }
+                text.append('\n');
+            }
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            invoke(writeToCopy, bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void finish() throws SQLException {
+            invoke(endCopy);
+        }
+
+        @Override
+        public void abort() {
+            try {
+                invoke(cancelCopy);
+            } catch (SQLException e) {
+                logger.debug("Failed to cancel COPY: {}", e.getMessage());
+            }
+        }
+
+        private void invoke(Method method, Object... args) throws SQLException {
+            try {
+                method.invoke(copyIn, args);
+            } catch (ReflectiveOperationException e) {
+                throw sqlException(e);
+            }
+        }
+
+        private static SQLException sqlException(ReflectiveOperationException e) {
+            Throwable cause = e instanceof InvocationTargetException target ? target.getCause() : e;
+            return cause instanceof SQLException sqlException ? sqlException
+                    : new SQLException("COPY failed: " + cause.getMessage(), cause);
+        }
+
+        /**
+         * A value in COPY text format: \N for null, bytea as \x hex, and
+         * backslash, tab and line breaks escaped.
+         */
+        static void appendValue(StringBuilder out, Object value) {
+            if (value == null) {
+                out.append("\\N");
+                return;
+            }
+            String text = value instanceof byte[] bytes ? "\\x" + HexFormat.of().formatHex(bytes) : value.toString();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '\\' -> out.append("\\\\");
+                    case '\t' -> out.append("\\t");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    default -> out.append(c);
+                }
+            }
+        }
+    }
+}
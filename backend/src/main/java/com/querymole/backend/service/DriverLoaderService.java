@@ -3,6 +3,9 @@ package com.querymole.backend.service;
 import com.querymole.backend.dto.DriverInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -10,10 +13,12 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.sql.Driver;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.jar.JarFile;
 import java.util.jar.JarEntry;
 import java.util.Enumeration;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class DriverLoaderService {
@@ -21,11 +26,71 @@ public class DriverLoaderService {
     private static final Logger logger = LoggerFactory.getLogger(DriverLoaderService.class);
     private static final String DRIVERS_DIR = "drivers";
 
+    private final boolean backgroundScan;
+
+    /**
+     * Latest scan of the drivers directory and the directory listing it was
+     * made from; guarded by this
+     */
+    private CompletableFuture<List<DriverInfo>> scan;
+    private String scannedListing;
+
+    public DriverLoaderService(@Value("${querymole.drivers.background-scan:true}") boolean backgroundScan) {
+        this.backgroundScan = backgroundScan;
+    }
+
+    /**
+     * Starts scanning the drivers directory once the application is ready, so
+     * opening JAR files does not delay startup and the first request for the
+     * driver list finds the result waiting.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scanInBackground() {
+        if (backgroundScan) {
+            currentScan();
+        }
+    }
+
     /**
      * Get available JDBC drivers from the drivers directory.
-     * Scans JAR files and attempts to detect driver classes.
+     * The scan result is reused until JAR files are added, removed or replaced.
      */
     public List<DriverInfo> getAvailableDrivers() {
+        return new ArrayList<>(currentScan().join());
+    }
+
+    private synchronized CompletableFuture<List<DriverInfo>> currentScan() {
+        String listing = directoryListing();
+        // A scan still running for an older listing is superseded once it is done
+        if (scan == null || (!listing.equals(scannedListing) && scan.isDone())) {
+            scannedListing = listing;
+            scan = CompletableFuture.supplyAsync(this::scanDrivers);
+        }
+        return scan;
+    }
+
+    /**
+     * Names, sizes and modification times of the driver JARs; cheap compared
+     * to opening them
+     */
+    private String directoryListing() {
+        File[] jarFiles = new File(DRIVERS_DIR).listFiles((dir, name) -> name.endsWith(".jar"));
+        if (jarFiles == null) {
+            return "";
+        }
+        Arrays.sort(jarFiles);
+        StringBuilder listing = new StringBuilder();
+        for (File jarFile : jarFiles) {
+            listing.append(jarFile.getName()).append(':').append(jarFile.length()).append(':')
+                    .append(jarFile.lastModified()).append('\n');
+        }
+        return listing.toString();
+    }
+
+    /**
+     * Scans JAR files and attempts to detect driver classes.
+     */
+    private List<DriverInfo> scanDrivers() {
         List<DriverInfo> drivers = new ArrayList<>();
         File driversDir = new File(DRIVERS_DIR);
 
@@ -105,9 +170,10 @@ public class DriverLoaderService {
     }
 
     /**
-     * Detect database type from driver class name.
+     * Detect database type from driver class name. A JDBC URL works as well,
+     * since it names the same subprotocol.
      */
-    private String detectDatabaseType(String driverClassName) {
+    public String detectDatabaseType(String driverClassName) {
         if (driverClassName.contains("postgresql")) {
             return "postgresql";
         } else if (driverClassName.contains("mysql")) {
@@ -0,0 +1,764 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.FederatedJoinRequest;
+import com.querymole.backend.dto.FederatedSide;
+import com.querymole.backend.util.LongHashIndex;
+import com.querymole.backend.util.ResultSizeEstimator;
+import com.querymole.backend.util.TypeConverterRegistry;
+import com.querymole.backend.util.ValueCodec;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Joins the results of two queries that may run on different databases. Both
+ * sides are streamed concurrently into the backend and hash-joined there:
+ * <ul>
+ * <li>Rows of both sides are buffered as they arrive. The side that finishes
+ * first is the smaller one and becomes the build side; the other side is
+ * probed against it, its buffered rows first and then the rest of its stream,
+ * so it is never held in memory.</li>
+ * <li>If the buffered rows exceed the memory budget before either side
+ * finishes, both sides are hash-partitioned to spill files and joined
+ * partition by partition (building from the smaller half of each);
+ * partitions still over budget are split again with a different hash.</li>
+ * </ul>
+ * The hash table indexes 64-bit keys ({@link LongHashIndex}): integer keys
+ * are used as is, other keys are hashed, and candidate matches are always
+ * compared on the key values. Integral keys match across types (INTEGER,
+ * BIGINT, whole NUMERIC); null keys never match.
+ */
+@Service
+public class FederatedJoinService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FederatedJoinService.class);
+
+    /**
+     * Rows per batch handed from a side's reader thread to the join
+     */
+    private static final int BATCH_ROWS = 256;
+
+    /**
+     * How many times an over-budget partition is split again before it is
+     * joined in memory anyway (a single hot key cannot be split)
+     */
+    private static final int MAX_REPARTITION_DEPTH = 3;
+
+    private static final int SPILL_BUFFER_BYTES = 16 * 1024;
+    private static final long ROW_OVERHEAD = 16;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final JdbcExecutorService jdbcExecutorService;
+    private final TypeConverterRegistry typeConverterRegistry;
+    private final ValueCodec codec;
+    private final long memoryBudgetBytes;
+    private final int partitions;
+    private final int maxOutputRows;
+    private final int queueCapacity;
+    private final Path spillRoot;
+    private final ExecutorService readers;
+
+    public FederatedJoinService(JdbcExecutorService jdbcExecutorService,
+            TypeConverterRegistry typeConverterRegistry, ObjectMapper objectMapper,
+            @Value("${querymole.federated.memory-budget-mb:256}") long memoryBudgetMb,
+            @Value("${querymole.federated.partitions:32}") int partitions,
+            @Value("${querymole.federated.max-output-rows:100000}") int maxOutputRows,
+            @Value("${querymole.federated.queue-batches:64}") int queueCapacity,
+            @Value("${querymole.federated.spill-dir:}") String spillDir) {
+        this.jdbcExecutorService = jdbcExecutorService;
+        this.typeConverterRegistry = typeConverterRegistry;
+        this.codec = new ValueCodec(objectMapper);
+        this.memoryBudgetBytes = memoryBudgetMb * 1024 * 1024;
+        this.partitions = Math.max(2, partitions);
+        this.maxOutputRows = maxOutputRows;
+        this.queueCapacity = Math.max(2, queueCapacity);
+        this.spillRoot = spillDir == null || spillDir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "querymole-federated")
+                : Paths.get(spillDir);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.readers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "federated-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readers.shutdownNow();
+    }
+
+    /**
+     * Runs both queries and joins their results. Output columns are the left
+     * columns followed by the right ones; right columns whose name is taken
+     * are prefixed with "right.".
+     */
+    public ExecutionResponse join(FederatedJoinRequest request) throws InterruptedException, IOException {
+        validate(request.getLeft(), "left");
+        validate(request.getRight(), "right");
+        if (request.getLeft().getKeys().size() != request.getRight().getKeys().size()) {
+            throw new IllegalArgumentException("Both sides need the same number of join keys");
+        }
+        String joinType = request.getJoinType() == null ? "INNER" : request.getJoinType().toUpperCase(Locale.ROOT);
+        if (!joinType.equals("INNER") && !joinType.equals("LEFT")) {
+            throw new IllegalArgumentException("Unsupported join type: " + request.getJoinType());
+        }
+        int limit = request.getMaxRows() != null && request.getMaxRows() > 0
+                ? Math.min(request.getMaxRows(), maxOutputRows)
+                : maxOutputRows;
+
+        long start = System.currentTimeMillis();
+        Join join = new Join(joinType.equals("LEFT"), limit);
+        try {
+            join.start(request.getLeft(), request.getRight());
+            join.run();
+        } finally {
+            join.close();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        List<String> columns = join.outputColumns();
+        int leftCount = join.left.columns.size();
+        int rightCount = join.right.columns.size();
+        List<Map<String, Object>> rows = new ArrayList<>(join.joined.size());
+        for (Object[][] pair : join.joined) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < leftCount; i++) {
+                row.put(columns.get(i), pair[0][i]);
+            }
+            for (int i = 0; i < rightCount; i++) {
+                row.put(columns.get(leftCount + i), pair[1] != null ? pair[1][i] : null);
+            }
+            rows.add(row);
+        }
+        ExecutionResponse response = ExecutionResponse.success(columns, rows, elapsed);
+        if (join.truncated) {
+            response.setTruncated(true);
+            response.setTruncationReason("Joined rows exceed the limit of " + limit);
+        }
+        logger.info("Federated {} join: {} rows in {} ms ({}){}", joinType, rows.size(), elapsed, join.strategy,
+                join.truncated ? ", truncated" : "");
+        return response;
+    }
+
+    private static void validate(FederatedSide side, String name) {
+        if (side == null || side.getSql() == null || side.getSql().isBlank()) {
+            throw new IllegalArgumentException("SQL is required for the " + name + " side");
+        }
+        if (side.getKeys() == null || side.getKeys().isEmpty()) {
+            throw new IllegalArgumentException("Join keys are required for the " + name + " side");
+        }
+    }
+
+    /**
+     * Rows read by one side's reader thread; the last batch of a side is empty
+     * and marks its end (or failure)
+     */
+    private record Batch(Input input, List<Object[]> rows, boolean last) {
+    }
+
+    /**
+     * Spilled rows of one side in one partition, with their estimated heap size
+     */
+    private record Partition(Input input, Path file, long rows, long bytes) {
+    }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        /**
+         * @return false to stop
+         */
+        boolean accept(Object[] row) throws IOException;
+    }
+
+    /**
+     * One side of a join while it runs.
+     */
+    private static final class Input {
+        private final String name;
+        private FederatedSide side;
+        private JdbcExecutorService.TargetConnection target;
+        private Future<?> task;
+        /**
+         * Set by the reader thread before its first batch
+         */
+        private volatile List<String> columns;
+        private volatile Throwable failure;
+        private int[] keys;
+        private boolean finished;
+        private final List<Object[]> buffer = new ArrayList<>();
+
+        private Input(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * State of one join request.
+     */
+    private final class Join implements AutoCloseable {
+        private final boolean leftJoin;
+        private final int limit;
+        private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final Input left = new Input("left");
+        private final Input right = new Input("right");
+        private final List<Object[][]> joined = new ArrayList<>();
+        private volatile boolean cancelled;
+        private boolean truncated;
+        private String strategy = "in memory";
+        private Path spillDirectory;
+        private int spillCount;
+
+        private Join(boolean leftJoin, int limit) {
+            this.leftJoin = leftJoin;
+            this.limit = limit;
+        }
+
+        private void start(FederatedSide leftSide, FederatedSide rightSide) {
+            left.side = leftSide;
+            right.side = rightSide;
+            for (Input input : List.of(left, right)) {
+                if (input.side.getConnection() != null) {
+                    input.target = jdbcExecutorService.openTarget(input.side.getConnection());
+                }
+            }
+            for (Input input : List.of(left, right)) {
+                input.task = readers.submit(() -> read(input));
+            }
+        }
+
+        private void run() throws InterruptedException, IOException {
+            long buffered = 0;
+            Input build = null;
+            while (build == null) {
+                if (buffered > memoryBudgetBytes) {
+                    partitioned();
+                    return;
+                }
+                Batch batch = receive();
+                for (Object[] row : batch.rows()) {
+                    batch.input().buffer.add(row);
+                    buffered += estimateRow(row);
+                }
+                if (batch.last()) {
+                    build = batch.input();
+                }
+            }
+
+            Input probe = build == left ? right : left;
+            Table table = new Table(build, build.buffer);
+            for (int i = 0; i < probe.buffer.size(); i++) {
+                Object[] row = probe.buffer.get(i);
+                probe.buffer.set(i, null);
+                if (!probe(table, row)) {
+                    return;
+                }
+            }
+            probe.buffer.clear();
+            while (!probe.finished) {
+                for (Object[] row : receive().rows()) {
+                    if (!probe(table, row)) {
+                        return;
+                    }
+                }
+            }
+            finish(table);
+        }
+
+        /**
+         * Hash-partitions both sides to disk, then joins partition by partition.
+         */
+        private void partitioned() throws InterruptedException, IOException {
+            strategy = "partitioned";
+            Files.createDirectories(spillRoot);
+            spillDirectory = Files.createTempDirectory(spillRoot, "join-");
+            Spill leftSpill = new Spill(left, 0);
+            Spill rightSpill = new Spill(right, 0);
+            try {
+                leftSpill.writeAll(left.buffer);
+                left.buffer.clear();
+                rightSpill.writeAll(right.buffer);
+                right.buffer.clear();
+                while (!left.finished || !right.finished) {
+                    Batch batch = receive();
+                    (batch.input() == left ? leftSpill : rightSpill).writeAll(batch.rows());
+                }
+            } finally {
+                leftSpill.close();
+                rightSpill.close();
+            }
+            logger.debug("Federated join spilled {} left and {} right rows to {} partitions", leftSpill.total(),
+                    rightSpill.total(), partitions);
+            for (int p = 0; p < partitions; p++) {
+                if (!joinPartition(leftSpill.partition(p), rightSpill.partition(p), 0)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return false once the output is full
+         */
+        private boolean joinPartition(Partition leftPart, Partition rightPart, int depth) throws IOException {
+            try {
+                if (leftPart.rows() == 0 || rightPart.rows() == 0) {
+                    return !leftJoin || forEach(leftPart, row -> emit(row, null));
+                }
+                Partition build = leftPart.bytes() <= rightPart.bytes() ? leftPart : rightPart;
+                Partition probe = build == leftPart ? rightPart : leftPart;
+                if (build.bytes() > memoryBudgetBytes) {
+                    if (depth < MAX_REPARTITION_DEPTH) {
+                        return repartition(leftPart, rightPart, depth + 1);
+                    }
+                    logger.warn("Federated join partition of {} rows is over the memory budget after {} splits",
+                            build.rows(), depth);
+                }
+                List<Object[]> rows = new ArrayList<>((int) build.rows());
+                forEach(build, rows::add);
+                Table table = new Table(build.input(), rows);
+                return forEach(probe, row -> probe(table, row)) && finish(table);
+            } finally {
+                Files.deleteIfExists(leftPart.file());
+                Files.deleteIfExists(rightPart.file());
+            }
+        }
+
+        private boolean repartition(Partition leftPart, Partition rightPart, int depth) throws IOException {
+            Spill leftSpill = new Spill(left, depth);
+            Spill rightSpill = new Spill(right, depth);
+            try {
+                forEach(leftPart, row -> leftSpill.write(row));
+                forEach(rightPart, row -> rightSpill.write(row));
+            } finally {
+                leftSpill.close();
+                rightSpill.close();
+            }
+            Files.deleteIfExists(leftPart.file());
+            Files.deleteIfExists(rightPart.file());
+            for (int p = 0; p < partitions; p++) {
+                if (!joinPartition(leftSpill.partition(p), rightSpill.partition(p), depth)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean forEach(Partition partition, RowHandler handler) throws IOException {
+            int columnCount = partition.input().columns.size();
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(partition.file()), SPILL_BUFFER_BYTES))) {
+                for (long r = 0; r < partition.rows(); r++) {
+                    Object[] row = new Object[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        row[i] = codec.read(in);
+                    }
+                    if (!handler.accept(row)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Looks up the matches of a probe row and emits the joined rows.
+         *
+         * @return false once the output is full
+         */
+        private boolean probe(Table table, Object[] row) {
+            Input probe = table.input == left ? right : left;
+            Object[] key = keyOf(row, probe.keys);
+            boolean found = false;
+            if (key != null) {
+                for (int i = table.index.first(hash(key)); i != -1; i = table.index.next(i)) {
+                    if (!Arrays.equals(table.keys[i], key)) {
+                        continue;
+                    }
+                    found = true;
+                    if (table.matched != null) {
+                        table.matched.set(i);
+                    }
+                    boolean added = table.input == left ? emit(table.rows.get(i), row) : emit(row, table.rows.get(i));
+                    if (!added) {
+                        return false;
+                    }
+                }
+            }
+            return found || !leftJoin || table.input == left || emit(row, null);
+        }
+
+        /**
+         * Emits the unmatched rows of a left build side (LEFT joins).
+         */
+        private boolean finish(Table table) {
+            if (table.matched == null) {
+                return true;
+            }
+            for (int i = table.matched.nextClearBit(0); i < table.rows.size(); i = table.matched.nextClearBit(i + 1)) {
+                if (!emit(table.rows.get(i), null)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean emit(Object[] leftRow, Object[] rightRow) {
+            if (joined.size() >= limit) {
+                truncated = true;
+                return false;
+            }
+            joined.add(new Object[][] { leftRow, rightRow });
+            return true;
+        }
+
+        private Batch receive() throws InterruptedException {
+            Batch batch = queue.take();
+            Input input = batch.input();
+            if (batch.last()) {
+                Throwable failure = input.failure;
+                if (failure instanceof RuntimeException e) {
+                    throw e;
+                }
+                if (failure instanceof InterruptedException e) {
+                    throw e;
+                }
+                if (failure != null) {
+                    throw new IllegalStateException("The " + input.name + " query failed: " + failure.getMessage(),
+                            failure);
+                }
+                input.finished = true;
+            }
+            if (input.keys == null) {
+                input.keys = resolveKeys(input);
+            }
+            return batch;
+        }
+
+        /**
+         * Reader thread of one side: streams its rows in batches to the queue.
+         */
+        private void read(Input input) {
+            JdbcExecutorService.ExecutionLimits defaults = jdbcExecutorService.getDefaultLimits();
+            JdbcExecutorService.ExecutionLimits limits = new JdbcExecutorService.ExecutionLimits(0,
+                    defaults.timeoutSeconds(), true);
+            try {
+                jdbcExecutorService.streamQuery(input.target, input.side.getSql(), limits, rs -> {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    int columnCount = metaData.getColumnCount();
+                    List<String> columns = new ArrayList<>(columnCount);
+                    for (int i = 1; i <= columnCount; i++) {
+                        columns.add(metaData.getColumnLabel(i));
+                    }
+                    input.columns = columns;
+                    List<Object[]> rows = new ArrayList<>(BATCH_ROWS);
+                    while (!cancelled && rs.next()) {
+                        Object[] row = new Object[columnCount];
+                        for (int i = 0; i < columnCount; i++) {
+                            row[i] = typeConverterRegistry.convertToSerializable(rs.getObject(i + 1));
+                        }
+                        rows.add(row);
+                        if (rows.size() == BATCH_ROWS) {
+                            send(new Batch(input, rows, false));
+                            rows = new ArrayList<>(BATCH_ROWS);
+                        }
+                    }
+                    if (!rows.isEmpty()) {
+                        send(new Batch(input, rows, false));
+                    }
+                    return null;
+                });
+            } catch (Throwable e) {
+                input.failure = e;
+            } finally {
+                send(new Batch(input, List.of(), true));
+            }
+        }
+
+        /**
+         * Waits for room in the queue, giving up when the join is cancelled.
+         */
+        private void send(Batch batch) {
+            try {
+                while (!cancelled) {
+                    if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+        }
+
+        private int[] resolveKeys(Input input) {
+            List<String> keyNames = input.side.getKeys();
+            int[] keys = new int[keyNames.size()];
+            for (int k = 0; k < keys.length; k++) {
+                keys[k] = -1;
+                for (int i = 0; i < input.columns.size(); i++) {
+                    if (input.columns.get(i).equalsIgnoreCase(keyNames.get(k))) {
+                        keys[k] = i;
+                        break;
+                    }
+                }
+                if (keys[k] < 0) {
+                    throw new IllegalArgumentException("Join key " + keyNames.get(k) + " is not a column of the "
+                            + input.name + " result " + input.columns);
+                }
+            }
+            return keys;
+        }
+
+        private List<String> outputColumns() {
+            List<String> columns = new ArrayList<>(left.columns);
+            Set<String> taken = new HashSet<>(left.columns);
+            for (String column : right.columns) {
+                String name = taken.contains(column) ? "right." + column : column;
+                taken.add(name);
+                columns.add(name);
+            }
+            return columns;
+        }
+
+        /**
+         * Stops both readers, closes the ad-hoc connections and removes spill
+         * files.
+         */
+        @Override
+        public void close() {
+            cancelled = true;
+            queue.clear();
+            for (Input input : List.of(left, right)) {
+                if (input.task != null) {
+                    try {
+                        input.task.get(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException | TimeoutException e) {
+                        input.task.cancel(true);
+                    }
+                }
+                if (input.target != null) {
+                    input.target.close();
+                }
+            }
+            if (spillDirectory != null) {
+                try (Stream<Path> files = Files.walk(spillDirectory)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+                } catch (IOException e) {
+                    logger.warn("Failed to remove spill directory {}: {}", spillDirectory, e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Partition files of one side at one partitioning depth.
+         */
+        private final class Spill implements Closeable {
+            private final Input input;
+            private final int depth;
+            private final Path[] files = new Path[partitions];
+            private final DataOutputStream[] outs = new DataOutputStream[partitions];
+            private final long[] rows = new long[partitions];
+            private final long[] bytes = new long[partitions];
+
+            private Spill(Input input, int depth) throws IOException {
+                this.input = input;
+                this.depth = depth;
+                int id = spillCount++;
+                for (int p = 0; p < partitions; p++) {
+                    files[p] = spillDirectory.resolve(input.name + "-" + id + "-" + p + ".bin");
+                    outs[p] = new DataOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(files[p]), SPILL_BUFFER_BYTES));
+                }
+            }
+
+            private boolean write(Object[] row) throws IOException {
+                Object[] key = keyOf(row, input.keys);
+                // Rows without a key never match; partition 0 keeps them for LEFT joins
+                int p = key == null ? 0 : partitionOf(hash(key), depth);
+                for (Object value : row) {
+                    codec.write(outs[p], value);
+                }
+                rows[p]++;
+                bytes[p] += estimateRow(row);
+                return true;
+            }
+
+            private void writeAll(List<Object[]> batch) throws IOException {
+                for (Object[] row : batch) {
+                    write(row);
+                }
+            }
+
+            private long total() {
+                return Arrays.stream(rows).sum();
+            }
+
+            private Partition partition(int p) {
+                return new Partition(input, files[p], rows[p], bytes[p]);
+            }
+
+            @Override
+            public void close() throws IOException {
+                for (DataOutputStream out : outs) {
+                    out.close();
+                }
+            }
+        }
+
+        /**
+         * In-memory hash table over the rows of the build side.
+         */
+        private final class Table {
+            private final Input input;
+            private final List<Object[]> rows;
+            private final Object[][] keys;
+            private final LongHashIndex index;
+            /**
+             * Matched build rows, tracked when they are the left side of a
+             * LEFT join
+             */
+            private final BitSet matched;
+
+            private Table(Input input, List<Object[]> rows) {
+                this.input = input;
+                this.rows = rows;
+                this.keys = new Object[rows.size()][];
+                this.index = new LongHashIndex(rows.size());
+                this.matched = leftJoin && input == left ? new BitSet(rows.size()) : null;
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = keyOf(rows.get(i), input.keys);
+                    if (keys[i] != null) {
+                        index.add(hash(keys[i]), i);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long estimateRow(Object[] row) {
+        long size = ROW_OVERHEAD + 8L * row.length;
+        for (Object value : row) {
+            size += ResultSizeEstimator.estimateValue(value);
+        }
+        return size;
+    }
+
+    /**
+     * Normalized key values of a row, or null if any of them is null
+     */
+    private static Object[] keyOf(Object[] row, int[] keyColumns) {
+        Object[] key = new Object[keyColumns.length];
+        for (int k = 0; k < keyColumns.length; k++) {
+            Object value = row[keyColumns[k]];
+            if (value == null) {
+                return null;
+            }
+            key[k] = normalizeKey(value);
+        }
+        return key;
+    }
+
+    /**
+     * Whole numbers become Long whatever their SQL type; other numbers their
+     * plain decimal text; anything else its text.
+     */
+    static Object normalizeKey(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigInteger integer) {
+            return integer.bitLength() < 64 ? (Object) integer.longValue() : integer.toString();
+        }
+        if (value instanceof BigDecimal decimal) {
+            BigDecimal stripped = decimal.stripTrailingZeros();
+            if (stripped.scale() <= 0 && stripped.precision() - stripped.scale() < 19) {
+                return stripped.longValue();
+            }
+            return stripped.toPlainString();
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (number == Math.rint(number) && Math.abs(number) < 0x1p62) {
+                return (long) number;
+            }
+            return BigDecimal.valueOf(number).stripTrailingZeros().toPlainString();
+        }
+        return value instanceof String ? value : value.toString();
+    }
+
+    /**
+     * A single integer key is its own hash; anything else is FNV-1a hashed.
+     */
+    private static long hash(Object[] key) {
+        if (key.length == 1 && key[0] instanceof Long value) {
+            return value;
+        }
+        long hash = FNV_OFFSET;
+        for (Object part : key) {
+            long partHash;
+            if (part instanceof Long value) {
+                partHash = value;
+            } else {
+                partHash = FNV_OFFSET;
+                String text = (String) part;
+                for (int i = 0; i < text.length(); i++) {
+                    partHash = (partHash ^ text.charAt(i)) * FNV_PRIME;
+                }
+            }
+            hash = (hash ^ partHash) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Partition of a key hash; each depth mixes the hash differently, so a
+     * partition that is split again spreads over all sub-partitions.
+     */
+    private int partitionOf(long hash, int depth) {
+        long mixed = (hash ^ (depth + 1) * 0x9e3779b97f4a7c15L) * 0xff51afd7ed558ccdL;
+        mixed ^= mixed >>> 29;
+        mixed *= 0xc4ceb9fe1a85ec53L;
+        mixed ^= mixed >>> 32;
+        return Math.floorMod((int) mixed, partitions);
+    }
+}
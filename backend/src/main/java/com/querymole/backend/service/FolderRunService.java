@@ -0,0 +1,263 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.FolderRunReport;
+import com.querymole.backend.dto.FolderRunRequest;
+import com.querymole.backend.model.QueryNode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every query of a folder concurrently and combines the results into one
+ * report, so a set of checks that belong together (the diagnostics folders)
+ * takes about as long as the slowest of them.
+ * <p>
+ * A run starts as many workers as its parallelism; each takes the next query
+ * of the folder until none is left, on its own pooled connection. The
+ * parallelism never exceeds the statement slots a target admits, so a query
+ * does not spend its deadline waiting for a slot held by the same run. Every
+ * query gets the run's timeout twice: as its statement timeout, so the database
+ * cancels it, and as a wall-clock deadline from the moment the target admits
+ * it, after which the report no longer waits for it. Time spent waiting for a
+ * statement slot held by other users does not count against the query; the
+ * run's overall time budget still bounds it.
+ */
+@Service
+public class FolderRunService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FolderRunService.class);
+
+    /**
+     * Added to a run's time budget for connection waits and result conversion
+     */
+    private static final long BUDGET_SLACK_MS = 5000;
+
+    private final JdbcExecutorService jdbcExecutorService;
+    private final QueryService queryService;
+    private final int defaultParallelism;
+    private final int maxParallelism;
+    private final int defaultTimeoutSeconds;
+    private final int maxTimeoutSeconds;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService watchdog;
+
+    public FolderRunService(JdbcExecutorService jdbcExecutorService, QueryService queryService,
+            @Value("${querymole.folder-run.parallelism:4}") int defaultParallelism,
+            @Value("${querymole.folder-run.max-parallelism:16}") int maxParallelism,
+            @Value("${querymole.admission.max-concurrent:4}") int maxConcurrent,
+            @Value("${querymole.folder-run.timeout-seconds:30}") int defaultTimeoutSeconds,
+            @Value("${querymole.folder-run.max-timeout-seconds:300}") int maxTimeoutSeconds) {
+        this.jdbcExecutorService = jdbcExecutorService;
+        this.queryService = queryService;
+        this.maxParallelism = Math.max(1, Math.min(maxParallelism, maxConcurrent));
+        this.defaultParallelism = Math.min(defaultParallelism, this.maxParallelism);
+        this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+        this.maxTimeoutSeconds = maxTimeoutSeconds;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "folder-run-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "folder-run-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Runs the direct QUERY children of a folder; subfolders are not entered.
+     *
+     * @throws NoSuchElementException   if the folder does not exist
+     * @throws IllegalArgumentException if the node is not a folder or the
+     *                                  parallelism or timeout is out of range
+     */
+    public FolderRunReport run(String folderId, FolderRunRequest request) throws InterruptedException {
+        QueryNode folder = queryService.getQueryNode(folderId);
+        if (folder == null) {
+            throw new NoSuchElementException("Folder not found: " + folderId);
+        }
+        if (!"FOLDER".equals(folder.getType())) {
+            throw new IllegalArgumentException("Not a folder: " + folderId);
+        }
+        int parallelism = request != null && request.getParallelism() != null
+                ? request.getParallelism()
+                : defaultParallelism;
+        if (parallelism < 1 || parallelism > maxParallelism) {
+            throw new IllegalArgumentException("Parallelism must be between 1 and " + maxParallelism);
+        }
+        int timeoutSeconds = request != null && request.getTimeoutSeconds() != null
+                ? request.getTimeoutSeconds()
+                : defaultTimeoutSeconds;
+        if (timeoutSeconds < 1 || timeoutSeconds > maxTimeoutSeconds) {
+            throw new IllegalArgumentException("Timeout must be between 1 and " + maxTimeoutSeconds + " seconds");
+        }
+        Map<String, Object> values = request != null ? request.getParameters() : null;
+
+        List<QueryNode> queries = new ArrayList<>();
+        for (QueryNode child : folder.getChildren()) {
+            if ("QUERY".equals(child.getType())) {
+                queries.add(child);
+            }
+        }
+
+        FolderRunReport report = new FolderRunReport();
+        report.setFolderId(folderId);
+        report.setFolderName(folder.getName());
+        report.setStartedAt(System.currentTimeMillis());
+        report.setParallelism(parallelism);
+        report.setTimeoutSeconds(timeoutSeconds);
+        long start = System.nanoTime();
+
+        List<CompletableFuture<FolderRunReport.QueryRun>> results = new ArrayList<>();
+        ConcurrentLinkedQueue<Task> pending = new ConcurrentLinkedQueue<>();
+        for (QueryNode query : queries) {
+            Task task = new Task(query, values, timeoutSeconds);
+            results.add(task.result);
+            pending.add(task);
+        }
+        int workerCount = Math.min(parallelism, queries.size());
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(() -> drain(pending));
+        }
+
+        // Queries queued behind others start late; bound the whole run anyway
+        // in case a driver ignores the statement timeout
+        int rounds = workerCount > 0 ? (queries.size() + workerCount - 1) / workerCount : 0;
+        long budgetMs = rounds * timeoutSeconds * 1000L + BUDGET_SLACK_MS;
+        try {
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(budgetMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Task task;
+            while ((task = pending.poll()) != null) {
+                task.result.complete(timedOut(task.query, 0, "Not started within the run's time budget"));
+            }
+            for (int i = 0; i < queries.size(); i++) {
+                results.get(i).complete(timedOut(queries.get(i), budgetMs, "Exceeded the run's time budget"));
+            }
+        } catch (InterruptedException e) {
+            pending.clear();
+            throw e;
+        } catch (ExecutionException e) {
+            // Tasks complete their results normally, never exceptionally
+            throw new IllegalStateException(e.getCause());
+        }
+
+        List<FolderRunReport.QueryRun> runs = new ArrayList<>();
+        for (CompletableFuture<FolderRunReport.QueryRun> result : results) {
+            FolderRunReport.QueryRun run = result.join();
+            runs.add(run);
+            switch (run.status()) {
+                case FolderRunReport.SUCCESS -> report.setSucceeded(report.getSucceeded() + 1);
+                case FolderRunReport.TIMED_OUT -> report.setTimedOut(report.getTimedOut() + 1);
+                default -> report.setFailed(report.getFailed() + 1);
+            }
+        }
+        report.setResults(runs);
+        report.setElapsedMs((System.nanoTime() - start) / 1_000_000);
+        logger.info("Ran folder {} ({} queries, parallelism {}): {} succeeded, {} failed, {} timed out in {} ms",
+                folder.getName(), runs.size(), parallelism, report.getSucceeded(), report.getFailed(),
+                report.getTimedOut(), report.getElapsedMs());
+        return report;
+    }
+
+    /**
+     * One query of a run. The result completes once, by whichever comes
+     * first: the execution or the watchdog.
+     */
+    private final class Task {
+        final QueryNode query;
+        final Map<String, Object> values;
+        final int timeoutSeconds;
+        final CompletableFuture<FolderRunReport.QueryRun> result = new CompletableFuture<>();
+
+        Task(QueryNode query, Map<String, Object> values, int timeoutSeconds) {
+            this.query = query;
+            this.values = values;
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        void execute() {
+            if (result.isDone()) {
+                return;
+            }
+            // Both are set on this thread once the query is admitted
+            long[] start = { System.nanoTime() };
+            ScheduledFuture<?>[] deadline = new ScheduledFuture<?>[1];
+            Runnable onAdmitted = () -> {
+                start[0] = System.nanoTime();
+                deadline[0] = watchdog.schedule(
+                        () -> result.complete(timedOut(query, timeoutSeconds * 1000L,
+                                "Timed out after " + timeoutSeconds + " seconds")),
+                        timeoutSeconds, TimeUnit.SECONDS);
+            };
+            try {
+                ExecutionResponse response = jdbcExecutorService.executeLibraryQuery(query, values, limits(),
+                        onAdmitted);
+                long elapsedMs = (System.nanoTime() - start[0]) / 1_000_000;
+                result.complete(response.isSuccess()
+                        ? new FolderRunReport.QueryRun(query.getId(), query.getName(), FolderRunReport.SUCCESS,
+                                elapsedMs, response, null)
+                        : new FolderRunReport.QueryRun(query.getId(), query.getName(), FolderRunReport.FAILED,
+                                elapsedMs, response, response.getError()));
+            } catch (RuntimeException e) {
+                result.complete(new FolderRunReport.QueryRun(query.getId(), query.getName(), FolderRunReport.FAILED,
+                        (System.nanoTime() - start[0]) / 1_000_000, null, e.getMessage()));
+            } finally {
+                if (deadline[0] != null) {
+                    deadline[0].cancel(false);
+                }
+            }
+        }
+
+        /**
+         * The query's own limits, with a statement timeout no longer than the
+         * run's
+         */
+        private JdbcExecutorService.ExecutionLimits limits() {
+            JdbcExecutorService.ExecutionLimits limits = jdbcExecutorService.limitsFor(query.getHints());
+            int timeout = limits.timeoutSeconds() > 0
+                    ? Math.min(limits.timeoutSeconds(), timeoutSeconds)
+                    : timeoutSeconds;
+            return new JdbcExecutorService.ExecutionLimits(limits.maxRows(), timeout, limits.readOnly(),
+                    limits.fetchSize());
+        }
+    }
+
+    private void drain(ConcurrentLinkedQueue<Task> pending) {
+        Task task;
+        while ((task = pending.poll()) != null) {
+            task.execute();
+        }
+    }
+
+    private static FolderRunReport.QueryRun timedOut(QueryNode query, long elapsedMs, String error) {
+        return new FolderRunReport.QueryRun(query.getId(), query.getName(), FolderRunReport.TIMED_OUT, elapsedMs,
+                null, error);
+    }
+}
@@ -1,87 +1,202 @@
 package com.querymole.backend.service;
 
 import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.LobValue;
+import com.querymole.backend.dto.ScriptExecutionResponse;
+import com.querymole.backend.dto.StatementResult;
+import com.querymole.backend.model.ExecutionHints;
+import com.querymole.backend.model.QueryNode;
+import com.querymole.backend.model.QueryParameter;
+import com.querymole.backend.util.DatabaseDialect;
+import com.querymole.backend.util.DialectRegistry;
+import com.querymole.backend.util.ParameterValueConverter;
+import com.querymole.backend.util.ResultSizeEstimator;
+import com.querymole.backend.util.SqlScriptSplitter;
 import com.querymole.backend.util.TypeConverterRegistry;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
 import org.springframework.stereotype.Service;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class JdbcExecutorService {
 
-    private JdbcTemplate jdbcTemplate;
+    private static final Logger logger = LoggerFactory.getLogger(JdbcExecutorService.class);
+
+    private static final int PARSED_SQL_CACHE_SIZE = 256;
+
+    /**
+     * Row estimate of the top node in the first line of a query plan
+     */
+    private static final Pattern PLAN_ROWS = Pattern.compile("\\brows=(\\d+)");
+
+    /**
+     * Result memory is reserved from the governor in chunks of this size
+     */
+    private static final long RESERVATION_CHUNK = 256 * 1024;
+
+    private static final int LOB_NONE = 0;
+    private static final int LOB_BINARY = 1;
+    private static final int LOB_TEXT = 2;
+
+    /**
+     * Characters read from a text stream at a time
+     */
+    private static final int LOB_READ_CHUNK = 8192;
+
+    /**
+     * The database queries run against. Replaced as a whole by switchConnection,
+     * so a running query always sees a matching template and dialect.
+     */
+    private volatile ActiveConnection active;
+
+    /**
+     * Connection pool created by the last switchConnection call, closed on the
+     * next switch
+     */
+    private HikariDataSource pooledDataSource;
 
     private final DriverLoaderService driverLoaderService;
 
     private final TypeConverterRegistry typeConverterRegistry;
 
+    private final DialectRegistry dialectRegistry;
+
+    private final int poolMaxSize;
+
+    private final int defaultMaxRows;
+
+    private final int defaultTimeoutSeconds;
+
+    private final boolean defaultReadOnly;
+
+    private final ResultMemoryGovernor memoryGovernor;
+
+    private final TargetAdmissionService admissionService;
+
+    private final LobStore lobStore;
+
+    private final QueryResultCache resultCache;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Parsed form of named-parameter SQL keyed by SQL text, least recently used
+     * entries evicted first
+     */
+    private final Map<String, ParsedSql> parsedSqlCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, ParsedSql>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ParsedSql> eldest) {
+                    return size() > PARSED_SQL_CACHE_SIZE;
+                }
+            });
+
+    /**
+     * Row limit (0 = none), statement timeout in seconds (0 = none), read-only
+     * mode and fetch size (0 = the dialect's default) of an execution
+     */
+    public record ExecutionLimits(int maxRows, int timeoutSeconds, boolean readOnly, int fetchSize) {
+        public ExecutionLimits(int maxRows, int timeoutSeconds, boolean readOnly) {
+            this(maxRows, timeoutSeconds, readOnly, 0);
+        }
+    }
+
+    /**
+     * @param targetKey identifies the connection profile for admission control
+     */
+    private record ActiveConnection(JdbcTemplate jdbcTemplate, String targetKey, String databaseType,
+            DatabaseDialect dialect) {
+    }
+
     public JdbcExecutorService(JdbcTemplate jdbcTemplate, DriverLoaderService driverLoaderService,
-            TypeConverterRegistry typeConverterRegistry) {
-        this.jdbcTemplate = jdbcTemplate;
+            TypeConverterRegistry typeConverterRegistry, DialectRegistry dialectRegistry,
+            ResultMemoryGovernor memoryGovernor, TargetAdmissionService admissionService, LobStore lobStore,
+            QueryResultCache resultCache, ObjectMapper objectMapper,
+            @Value("${spring.datasource.url:}") String defaultUrl,
+            @Value("${querymole.pool.max-size:10}") int poolMaxSize,
+            @Value("${querymole.query.max-rows:0}") int defaultMaxRows,
+            @Value("${querymole.query.timeout-seconds:0}") int defaultTimeoutSeconds,
+            @Value("${querymole.query.read-only:false}") boolean defaultReadOnly) {
         this.driverLoaderService = driverLoaderService;
         this.typeConverterRegistry = typeConverterRegistry;
+        this.dialectRegistry = dialectRegistry;
+        this.poolMaxSize = poolMaxSize;
+        this.defaultMaxRows = defaultMaxRows;
+        this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+        this.defaultReadOnly = defaultReadOnly;
+        this.memoryGovernor = memoryGovernor;
+        this.admissionService = admissionService;
+        this.lobStore = lobStore;
+        this.resultCache = resultCache;
+        this.objectMapper = objectMapper;
+        String databaseType = driverLoaderService.detectDatabaseType(defaultUrl);
+        this.active = new ActiveConnection(jdbcTemplate, defaultUrl, databaseType,
+                dialectRegistry.forType(databaseType));
     }
 
     private com.jcraft.jsch.Session sshSession;
 
-    public void switchConnection(com.querymole.backend.dto.ConnectionRequest request) {
+    public synchronized void switchConnection(com.querymole.backend.dto.ConnectionRequest request) {
         try {
+            // Close the previous pool before its SSH tunnel goes away
+            if (this.pooledDataSource != null) {
+                this.pooledDataSource.close();
+                this.pooledDataSource = null;
+            }
+
             // Close existing SSH session if any
             if (this.sshSession != null && this.sshSession.isConnected()) {
                 this.sshSession.disconnect();
             }
 
-            String jdbcUrl = request.getUrl();
-
-            // Handle SSH Tunneling
-            if (request.isUseSsh()) {
-                com.jcraft.jsch.JSch jSch = new com.jcraft.jsch.JSch();
-                this.sshSession = jSch.getSession(request.getSshUser(), request.getSshHost(),
-                        Integer.parseInt(request.getSshPort()));
-                this.sshSession.setPassword(request.getSshPassword());
-                // Avoid StrictHostKeyChecking for simplicity/demo purposes (User beware in
-                // production)
-                java.util.Properties config = new java.util.Properties();
-                config.put("StrictHostKeyChecking", "no");
-                this.sshSession.setConfig(config);
-                this.sshSession.connect();
-
-                // Parse DB port from original URL or separate field?
-                // The URL is like jdbc:postgresql://host:port/db
-                // We need to forward a local port to remote host:port.
-                // Assuming request.getUrl() contains the REMOTE host and port.
-                // WE need to parse it. Or use the separate fields if available.
-
-                // Ideally we should reuse the parsing logic or expect specific fields.
-                // BUT ConnectionRequest doesn't strictly enforce broken down fields, though the
-                // frontend sends them.
-                // Let's blindly assume we need to rewrite the URL.
-
-                // Actually, JSch setPortForwardingL can accept 0 to allocate a random port.
-                int assignedPort = this.sshSession.setPortForwardingL(0,
-                        request.getHost() != null ? request.getHost() : "localhost",
-                        Integer.parseInt(request.getPort()));
-
-                // Rewrite URL to use localhost and assignedPort
-                // Simple string replacement for now, assuming standard formats
-                // This is a bit brittle but fits the MVP.
-                // Better approach: Reconstruct URL from dbType logic, but valid JDBC URLs vary.
-                // Strategy: Replace host:port in the URL.
-                String originalHostPort = (request.getHost() != null ? request.getHost() : "localhost") + ":"
-                        + request.getPort();
-                jdbcUrl = jdbcUrl.replace(originalHostPort, "127.0.0.1:" + assignedPort);
-            }
+            Tunnel tunnel = openTunnel(request);
+            this.sshSession = tunnel.session();
+            String jdbcUrl = tunnel.jdbcUrl();
 
+            String databaseType = detectDatabaseType(request);
+            DatabaseDialect dialect = dialectRegistry.forType(databaseType);
             javax.sql.DataSource dataSource = createDataSource(jdbcUrl, request.getUsername(), request.getPassword(),
-                    request.getDriverClassName());
-            this.jdbcTemplate = new JdbcTemplate(dataSource);
+                    request.getDriverClassName(), dialect);
+            this.pooledDataSource = createPool(dataSource);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(this.pooledDataSource);
+            this.active = new ActiveConnection(jdbcTemplate, targetKey(request), databaseType, dialect);
         } catch (Exception e) {
             throw new RuntimeException("Failed to switch connection: " + e.getMessage(), e);
         }
@@ -90,27 +205,12 @@ public class JdbcExecutorService {
     public void testConnection(com.querymole.backend.dto.ConnectionRequest request) throws Exception {
         com.jcraft.jsch.Session tempSshSession = null;
         try {
-            String jdbcUrl = request.getUrl();
-            if (request.isUseSsh()) {
-                com.jcraft.jsch.JSch jSch = new com.jcraft.jsch.JSch();
-                tempSshSession = jSch.getSession(request.getSshUser(), request.getSshHost(),
-                        Integer.parseInt(request.getSshPort()));
-                tempSshSession.setPassword(request.getSshPassword());
-                java.util.Properties config = new java.util.Properties();
-                config.put("StrictHostKeyChecking", "no");
-                tempSshSession.setConfig(config);
-                tempSshSession.connect();
-
-                int assignedPort = tempSshSession.setPortForwardingL(0,
-                        request.getHost() != null ? request.getHost() : "localhost",
-                        Integer.parseInt(request.getPort()));
-                String originalHostPort = (request.getHost() != null ? request.getHost() : "localhost") + ":"
-                        + request.getPort();
-                jdbcUrl = jdbcUrl.replace(originalHostPort, "127.0.0.1:" + assignedPort);
-            }
+            Tunnel tunnel = openTunnel(request);
+            tempSshSession = tunnel.session();
+            String jdbcUrl = tunnel.jdbcUrl();
 
             javax.sql.DataSource dataSource = createDataSource(jdbcUrl, request.getUsername(), request.getPassword(),
-                    request.getDriverClassName());
+                    request.getDriverClassName(), dialectRegistry.forType(detectDatabaseType(request)));
             try (java.sql.Connection conn = dataSource.getConnection()) {
                 if (!conn.isValid(5)) {
                     throw new java.sql.SQLException("Connection is valid but failed validation check.");
@@ -124,8 +224,179 @@ public class JdbcExecutorService {
         }
     }
 
-    private javax.sql.DataSource createDataSource(String url, String username, String password, String driverClassName)
-            throws Exception {
+    /**
+     * @param session SSH session forwarding the database port, or null
+     * @param jdbcUrl URL to connect to, pointing at the forwarded port when
+     *                tunneled
+     */
+    private record Tunnel(com.jcraft.jsch.Session session, String jdbcUrl) {
+    }
+
+    /**
+     * Opens the SSH tunnel of a connection profile, if it uses one, and
+     * rewrites the URL to the forwarded local port.
+     */
+    private static Tunnel openTunnel(com.querymole.backend.dto.ConnectionRequest request)
+            throws com.jcraft.jsch.JSchException {
+        if (!request.isUseSsh()) {
+            return new Tunnel(null, request.getUrl());
+        }
+        com.jcraft.jsch.JSch jSch = new com.jcraft.jsch.JSch();
+        com.jcraft.jsch.Session session = jSch.getSession(request.getSshUser(), request.getSshHost(),
+                Integer.parseInt(request.getSshPort()));
+        session.setPassword(request.getSshPassword());
+        // Avoid StrictHostKeyChecking for simplicity/demo purposes (User beware in
+        // production)
+        java.util.Properties config = new java.util.Properties();
+        config.put("StrictHostKeyChecking", "no");
+        session.setConfig(config);
+        session.connect();
+
+        // Forward a random local port to the database host and port, then replace
+        // host:port in the URL. This is a bit brittle but valid JDBC URLs vary.
+        int assignedPort = session.setPortForwardingL(0,
+                request.getHost() != null ? request.getHost() : "localhost",
+                Integer.parseInt(request.getPort()));
+        String originalHostPort = (request.getHost() != null ? request.getHost() : "localhost") + ":"
+                + request.getPort();
+        return new Tunnel(session, request.getUrl().replace(originalHostPort, "127.0.0.1:" + assignedPort));
+    }
+
+    /**
+     * A database other than the active one, e.g. one side of a federated
+     * query. Holds a single physical connection (and its SSH tunnel) until
+     * closed; statements through it are admitted against its own target.
+     */
+    public static final class TargetConnection implements AutoCloseable {
+        private final ActiveConnection connection;
+        private final SingleConnectionDataSource dataSource;
+        private final com.jcraft.jsch.Session sshSession;
+
+        private TargetConnection(ActiveConnection connection, SingleConnectionDataSource dataSource,
+                com.jcraft.jsch.Session sshSession) {
+            this.connection = connection;
+            this.dataSource = dataSource;
+            this.sshSession = sshSession;
+        }
+
+        public String getDatabaseType() {
+            return connection.databaseType();
+        }
+
+        @Override
+        public void close() {
+            dataSource.destroy();
+            if (sshSession != null && sshSession.isConnected()) {
+                sshSession.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Connects to a connection profile without making it the active
+     * connection.
+     */
+    public TargetConnection openTarget(com.querymole.backend.dto.ConnectionRequest request) {
+        Tunnel tunnel = null;
+        try {
+            tunnel = openTunnel(request);
+            String databaseType = detectDatabaseType(request);
+            DatabaseDialect dialect = dialectRegistry.forType(databaseType);
+            javax.sql.DataSource dataSource = createDataSource(tunnel.jdbcUrl(), request.getUsername(),
+                    request.getPassword(), request.getDriverClassName(), dialect);
+            SingleConnectionDataSource single = new SingleConnectionDataSource(dataSource.getConnection(), true);
+            ActiveConnection connection = new ActiveConnection(new JdbcTemplate(single), targetKey(request),
+                    databaseType, dialect);
+            return new TargetConnection(connection, single, tunnel.session());
+        } catch (Exception e) {
+            if (tunnel != null && tunnel.session() != null) {
+                tunnel.session().disconnect();
+            }
+            throw new IllegalArgumentException("Failed to connect to " + targetKey(request) + ": " + e.getMessage(),
+                    e);
+        }
+    }
+
+    /**
+     * Database type from the connection form, else from the driver class or
+     * the JDBC URL.
+     */
+    private String detectDatabaseType(com.querymole.backend.dto.ConnectionRequest request) {
+        if (request.getDbType() != null && !request.getDbType().isEmpty()) {
+            return request.getDbType().toLowerCase(java.util.Locale.ROOT);
+        }
+        if (request.getDriverClassName() != null && !request.getDriverClassName().isEmpty()) {
+            return driverLoaderService.detectDatabaseType(request.getDriverClassName());
+        }
+        return driverLoaderService.detectDatabaseType(request.getUrl());
+    }
+
+    /**
+     * The profile name when given, else user and URL. The original URL is used
+     * so an SSH tunnel's local port does not split one target into several.
+     */
+    private static String targetKey(com.querymole.backend.dto.ConnectionRequest request) {
+        if (request.getName() != null && !request.getName().isEmpty()) {
+            return request.getName();
+        }
+        return request.getUsername() != null ? request.getUsername() + "@" + request.getUrl() : request.getUrl();
+    }
+
+    /**
+     * Limits from the querymole.query.* configuration
+     */
+    public ExecutionLimits getDefaultLimits() {
+        return new ExecutionLimits(defaultMaxRows, defaultTimeoutSeconds, defaultReadOnly);
+    }
+
+    /**
+     * Limits of a library query: its hints over the configured defaults. A
+     * hinted row cap or timeout never exceeds a configured one (0 keeps the
+     * configured one), and a configured read-only mode stays on.
+     */
+    public ExecutionLimits limitsFor(ExecutionHints hints) {
+        if (hints == null) {
+            return getDefaultLimits();
+        }
+        int maxRows = defaultMaxRows;
+        if (hints.getMaxRows() != null && hints.getMaxRows() > 0) {
+            maxRows = defaultMaxRows > 0 ? Math.min(defaultMaxRows, hints.getMaxRows()) : hints.getMaxRows();
+        }
+        int timeoutSeconds = defaultTimeoutSeconds;
+        if (hints.getQueryTimeoutSeconds() != null && hints.getQueryTimeoutSeconds() > 0) {
+            timeoutSeconds = defaultTimeoutSeconds > 0
+                    ? Math.min(defaultTimeoutSeconds, hints.getQueryTimeoutSeconds())
+                    : hints.getQueryTimeoutSeconds();
+        }
+        boolean readOnly = defaultReadOnly || Boolean.TRUE.equals(hints.getReadOnly());
+        int fetchSize = hints.getFetchSize() != null ? hints.getFetchSize() : 0;
+        return new ExecutionLimits(maxRows, timeoutSeconds, readOnly, fetchSize);
+    }
+
+    /**
+     * Dialect of the active database
+     */
+    public DatabaseDialect getDialect() {
+        return active.dialect();
+    }
+
+    /**
+     * Type of the active database as detected when connecting, e.g.
+     * "postgresql"
+     */
+    public String getDatabaseType() {
+        return active.databaseType();
+    }
+
+    /**
+     * Connection profile of the active database, as used for admission control
+     */
+    public String getTargetKey() {
+        return active.targetKey();
+    }
+
+    private javax.sql.DataSource createDataSource(String url, String username, String password, String driverClassName,
+            DatabaseDialect dialect) throws Exception {
         if (driverClassName != null && !driverClassName.isEmpty()) {
             // Use dynamic driver loading
             java.sql.Driver driver = driverLoaderService.getDriver(driverClassName);
@@ -134,6 +405,7 @@ public class JdbcExecutorService {
             simpleDataSource.setUrl(url);
             simpleDataSource.setUsername(username);
             simpleDataSource.setPassword(password);
+            simpleDataSource.setConnectionProperties(dialect.getConnectionProperties());
             return simpleDataSource;
         } else {
             // Fallback to default behavior (DriverManagerDataSource)
@@ -141,6 +413,7 @@ public class JdbcExecutorService {
             defaultDataSource.setUrl(url);
             defaultDataSource.setUsername(username);
             defaultDataSource.setPassword(password);
+            defaultDataSource.setConnectionProperties(dialect.getConnectionProperties());
             // Basic driver detection or default to Postgres for now, can be enhanced
             if (url.contains("postgresql")) {
                 defaultDataSource.setDriverClassName("org.postgresql.Driver");
@@ -151,34 +424,774 @@ public class JdbcExecutorService {
         }
     }
 
+    /**
+     * Wraps a data source in a connection pool. Keeping physical connections
+     * open lets drivers reuse their per-connection prepared statement caches
+     * across executions.
+     */
+    private HikariDataSource createPool(javax.sql.DataSource dataSource) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setDataSource(dataSource);
+        pool.setPoolName("query-mole");
+        pool.setMaximumPoolSize(poolMaxSize);
+        pool.setMinimumIdle(1);
+        return pool;
+    }
+
     public ExecutionResponse executeQuery(String sql) {
+        return executeQuery(sql, null);
+    }
+
+    /**
+     * Executes a query containing named parameters (:name) through a
+     * PreparedStatement. Declared parameters are converted to their declared
+     * type, falling back to their default value when no value is supplied;
+     * undeclared values are bound as given.
+     */
+    public ExecutionResponse executeQuery(String sql, Map<String, Object> values, List<QueryParameter> declared) {
+        return executeQuery(sql, values, declared, getDefaultLimits());
+    }
+
+    /**
+     * Like {@link #executeQuery(String, Map, List)} with the given limits.
+     */
+    public ExecutionResponse executeQuery(String sql, Map<String, Object> values, List<QueryParameter> declared,
+            ExecutionLimits limits) {
+        return executeQuery(sql, values, declared, limits, null);
+    }
+
+    private ExecutionResponse executeQuery(String sql, Map<String, Object> values, List<QueryParameter> declared,
+            ExecutionLimits limits, Runnable onAdmitted) {
         long startTime = System.currentTimeMillis();
         try {
-            return jdbcTemplate.query(sql, rs -> {
-                ResultSetMetaData metaData = rs.getMetaData();
-                int columnCount = metaData.getColumnCount();
-                List<String> columns = new ArrayList<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    columns.add(metaData.getColumnName(i));
-                }
-
-                List<Map<String, Object>> rows = new ArrayList<>();
-                while (rs.next()) {
-                    Map<String, Object> row = new HashMap<>();
-                    for (String column : columns) {
-                        Object value = rs.getObject(column);
-                        // Convert database-specific types to JSON-serializable formats
-                        Object convertedValue = typeConverterRegistry.convertToSerializable(value);
-                        row.put(column, convertedValue);
-                    }
-                    rows.add(row);
+            return executeQuery(sql, bindParameters(values, declared), limits, onAdmitted);
+        } catch (Exception e) {
+            long duration = System.currentTimeMillis() - startTime;
+            return new ExecutionResponse(null, null, e.getMessage(), false, duration);
+        }
+    }
+
+    /**
+     * Executes a library query with its execution hints. Results of queries
+     * with a cache TTL are reused for the same parameter values until the TTL
+     * expires.
+     */
+    public ExecutionResponse executeLibraryQuery(QueryNode node, Map<String, Object> values) {
+        return executeLibraryQuery(node, values, limitsFor(node.getHints()));
+    }
+
+    /**
+     * Like {@link #executeLibraryQuery(QueryNode, Map)} with the given limits
+     * in place of those of the hints.
+     */
+    public ExecutionResponse executeLibraryQuery(QueryNode node, Map<String, Object> values,
+            ExecutionLimits limits) {
+        return executeLibraryQuery(node, values, limits, null);
+    }
+
+    /**
+     * Like {@link #executeLibraryQuery(QueryNode, Map, ExecutionLimits)}.
+     *
+     * @param onAdmitted run on the executing thread once the target admitted
+     *                   the query, before it is sent; not run for a cached
+     *                   result or when admission fails
+     */
+    public ExecutionResponse executeLibraryQuery(QueryNode node, Map<String, Object> values,
+            ExecutionLimits limits, Runnable onAdmitted) {
+        ExecutionHints hints = node.getHints();
+        int cacheTtl = hints != null && hints.getCacheTtlSeconds() != null ? hints.getCacheTtlSeconds() : 0;
+        ActiveConnection connection = this.active;
+        String cacheKey = cacheTtl > 0 && connection != null
+                ? QueryResultCache.key(connection.targetKey(), node.getQuery(), values, limits)
+                : null;
+        if (cacheKey != null) {
+            ExecutionResponse cached = resultCache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        ExecutionResponse response = executeQuery(node.getQuery(), values, node.getParameters(), limits,
+                onAdmitted);
+        if (cacheKey != null) {
+            resultCache.put(cacheKey, response, cacheTtl);
+        }
+        return response;
+    }
+
+    /**
+     * Executes a library query with its execution hints and writes the result
+     * as JSON while it is read, in the shape of an {@link ExecutionResponse}:
+     * rows are not collected, so the memory budget does not apply. A failure
+     * after rows were written still ends the document, with success false and
+     * the error.
+     *
+     * @throws IOException if the client went away
+     */
+    public void streamLibraryQuery(QueryNode node, Map<String, Object> values, OutputStream out)
+            throws IOException {
+        long startTime = System.currentTimeMillis();
+        OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        boolean[] started = new boolean[1];
+        String error = null;
+        try {
+            runQuery(node.getQuery(), bindParameters(values, node.getParameters()), limitsFor(node.getHints()),
+                    rs -> {
+                        try {
+                            List<String> columns = extractColumns(rs);
+                            int[] lobKinds = lobKinds(rs.getMetaData());
+                            FetchedRows fetched = new FetchedRows();
+                            buffered.write("{\"columns\":".getBytes(StandardCharsets.UTF_8));
+                            buffered.write(objectMapper.writeValueAsBytes(columns));
+                            buffered.write(",\"rows\":[".getBytes(StandardCharsets.UTF_8));
+                            started[0] = true;
+                            int row = 0;
+                            while (rs.next()) {
+                                if (row > 0) {
+                                    buffered.write(',');
+                                }
+                                buffered.write(objectMapper.writeValueAsBytes(readRow(rs, row, columns, lobKinds,
+                                        fetched, null)));
+                                row++;
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return null;
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Interrupted while waiting to execute";
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        StringBuilder end = new StringBuilder(started[0] ? "]" : "{\"columns\":null,\"rows\":null");
+        end.append(",\"success\":").append(error == null);
+        end.append(",\"executionTimeMs\":").append(System.currentTimeMillis() - startTime);
+        if (error != null) {
+            end.append(",\"error\":").append(objectMapper.writeValueAsString(error));
+        }
+        end.append('}');
+        buffered.write(end.toString().getBytes(StandardCharsets.UTF_8));
+        buffered.flush();
+    }
+
+    /**
+     * @param parameters named parameter values, or null to send the SQL as a
+     *                   plain statement
+     */
+    private ExecutionResponse executeQuery(String sql, MapSqlParameterSource parameters) {
+        return executeQuery(sql, parameters, getDefaultLimits());
+    }
+
+    private ExecutionResponse executeQuery(String sql, MapSqlParameterSource parameters, ExecutionLimits limits) {
+        return executeQuery(sql, parameters, limits, null);
+    }
+
+    private ExecutionResponse executeQuery(String sql, MapSqlParameterSource parameters, ExecutionLimits limits,
+            Runnable onAdmitted) {
+        long startTime = System.currentTimeMillis();
+        ActiveConnection connection = this.active;
+        try (ResultMemoryGovernor.Reservation reservation = memoryGovernor.admit()) {
+            FetchedRows[] result = new FetchedRows[1];
+            ExecutionResponse response = runQuery(connection, sql, parameters, limits, onAdmitted, rs -> {
+                List<String> columns = extractColumns(rs);
+                FetchedRows fetched = extractRows(rs, columns, reservation);
+                if (fetched.truncated && connection.dialect().isEarlyCloseDraining()) {
+                    // Closing would read the rest of the result
+                    rs.getStatement().cancel();
                 }
+                result[0] = fetched;
                 long duration = System.currentTimeMillis() - startTime;
-                return new ExecutionResponse(columns, rows, null, true, duration);
+                return new ExecutionResponse(columns, fetched.rows, null, true, duration);
             });
+            FetchedRows fetched = result[0];
+            if (fetched.truncated) {
+                response.setTruncated(true);
+                response.setTruncationReason("Stopped at the " + reservation.getRefusal());
+                Long planned = estimateRows(connection, sql, parameters, limits);
+                if (planned != null) {
+                    // The refused row was read, so there is at least one more
+                    long rowCount = fetched.rows.size();
+                    long total = Math.max(planned, rowCount + 1);
+                    if (limits.maxRows() > 0) {
+                        total = Math.min(total, limits.maxRows());
+                    }
+                    response.setEstimatedTotalRows(total);
+                    response.setEstimatedTotalBytes(rowCount > 0 ? fetched.bytes / rowCount * total : fetched.bytes);
+                }
+            }
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecutionResponse.failure("Interrupted while waiting to execute");
         } catch (Exception e) {
             long duration = System.currentTimeMillis() - startTime;
             return new ExecutionResponse(null, null, e.getMessage(), false, duration);
         }
     }
+
+    /**
+     * The planner's estimate of the rows a query returns, which the query is
+     * not run for; null if the dialect gives none or planning fails
+     */
+    private Long estimateRows(ActiveConnection connection, String sql, MapSqlParameterSource parameters,
+            ExecutionLimits limits) throws InterruptedException {
+        String explainSql = connection.dialect().getExplainSql(sql);
+        if (explainSql == null) {
+            return null;
+        }
+        try {
+            return runQuery(connection, explainSql, parameters, limits, rs -> {
+                if (!rs.next()) {
+                    return null;
+                }
+                String plan = rs.getString(1);
+                Matcher matcher = plan != null ? PLAN_ROWS.matcher(plan.lines().findFirst().orElse("")) : null;
+                return matcher != null && matcher.find() ? Long.parseLong(matcher.group(1)) : null;
+            });
+        } catch (RuntimeException e) {
+            logger.info("No row estimate for a truncated result: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Runs a query and hands the open result set to the extractor, which reads
+     * it without the rows being collected, so no result memory is reserved.
+     * Used by bulk operations; each call holds one statement slot of the
+     * target.
+     *
+     * @param parameters named parameter values bound as given, or null
+     */
+    public <T> T streamQuery(String sql, Map<String, Object> parameters, ExecutionLimits limits,
+            ResultSetExtractor<T> extractor) throws InterruptedException {
+        MapSqlParameterSource parameterSource = parameters != null ? new MapSqlParameterSource(parameters) : null;
+        return runQuery(sql, parameterSource, limits, extractor);
+    }
+
+    /**
+     * Like {@link #streamQuery(String, Map, ExecutionLimits, ResultSetExtractor)},
+     * converting values to the declared parameter types of a library query.
+     *
+     * @param declared declared parameters, or null to bind the values as given
+     */
+    public <T> T streamQuery(String sql, Map<String, Object> values, List<QueryParameter> declared,
+            ExecutionLimits limits, ResultSetExtractor<T> extractor) throws InterruptedException {
+        if (declared == null) {
+            return streamQuery(sql, values, limits, extractor);
+        }
+        return runQuery(sql, bindParameters(values, declared), limits, extractor);
+    }
+
+    /**
+     * Like {@link #streamQuery(String, Map, ExecutionLimits, ResultSetExtractor)}
+     * against another target, or the active connection when target is null.
+     */
+    public <T> T streamQuery(TargetConnection target, String sql, ExecutionLimits limits,
+            ResultSetExtractor<T> extractor) throws InterruptedException {
+        ActiveConnection connection = target != null ? target.connection : this.active;
+        return runQuery(connection, sql, null, limits, extractor);
+    }
+
+    /**
+     * Runs a single query with the active dialect's execution defaults: its
+     * fetch size (inside a transaction when its cursor needs one and the
+     * statement returns rows) and the given read-only mode, statement timeout
+     * and row limit. A transaction opened here is committed after the result
+     * was read and rolled back on failure.
+     */
+    private <T> T runQuery(String sql, MapSqlParameterSource parameters, ExecutionLimits limits,
+            ResultSetExtractor<T> extractor) throws InterruptedException {
+        return runQuery(this.active, sql, parameters, limits, extractor);
+    }
+
+    private <T> T runQuery(ActiveConnection connection, String sql, MapSqlParameterSource parameters,
+            ExecutionLimits limits, ResultSetExtractor<T> extractor) throws InterruptedException {
+        return runQuery(connection, sql, parameters, limits, null, extractor);
+    }
+
+    private <T> T runQuery(ActiveConnection connection, String sql, MapSqlParameterSource parameters,
+            ExecutionLimits limits, Runnable onAdmitted, ResultSetExtractor<T> extractor)
+            throws InterruptedException {
+        DatabaseDialect dialect = connection.dialect();
+        int maxRows = limits.maxRows();
+        int timeoutSeconds = limits.timeoutSeconds();
+        boolean readOnly = limits.readOnly();
+        return execute(connection, (ConnectionCallback<T>) con -> {
+            int fetchSize = limits.fetchSize() != 0 ? limits.fetchSize() : dialect.getFetchSize();
+            // Other statements (DML, VACUUM, CREATE INDEX CONCURRENTLY) run in
+            // autocommit as they would without limits; their timeout is set on
+            // the statement
+            boolean query = SqlScriptSplitter.isQuery(sql);
+            String readOnlySql = readOnly ? dialect.getReadOnlyTransactionSql() : null;
+            String timeoutSql = timeoutSeconds > 0 && (query || readOnlySql != null)
+                    ? dialect.getStatementTimeoutSql(timeoutSeconds)
+                    : null;
+            boolean transactional = (query && fetchSize != 0 && dialect.isCursorTransactional())
+                    || readOnlySql != null || timeoutSql != null;
+
+            boolean autoCommit = con.getAutoCommit();
+            boolean wasReadOnly = con.isReadOnly();
+            if (transactional && autoCommit) {
+                con.setAutoCommit(false);
+            }
+            if (readOnly && readOnlySql == null) {
+                con.setReadOnly(true);
+            }
+            try {
+                if (readOnlySql != null || timeoutSql != null) {
+                    try (Statement setup = con.createStatement()) {
+                        // READ ONLY must come before any other statement of the transaction
+                        if (readOnlySql != null) {
+                            setup.execute(readOnlySql);
+                        }
+                        if (timeoutSql != null) {
+                            setup.execute(timeoutSql);
+                        }
+                    }
+                }
+
+                String limitedSql = dialect.applyLimits(sql, maxRows, timeoutSeconds);
+                T result;
+                try (Statement stmt = parameters != null ? prepareStatement(con, limitedSql, parameters)
+                        : con.createStatement()) {
+                    if (fetchSize != 0) {
+                        stmt.setFetchSize(fetchSize);
+                    }
+                    if (maxRows > 0) {
+                        stmt.setMaxRows(maxRows);
+                    }
+                    if (timeoutSeconds > 0 && timeoutSql == null) {
+                        stmt.setQueryTimeout(timeoutSeconds);
+                    }
+                    try (ResultSet rs = stmt instanceof PreparedStatement ps ? ps.executeQuery()
+                            : stmt.executeQuery(limitedSql)) {
+                        result = extractor.extractData(rs);
+                    }
+                }
+                if (!con.getAutoCommit()) {
+                    con.commit();
+                }
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                if (!con.getAutoCommit()) {
+                    con.rollback();
+                }
+                throw e;
+            } finally {
+                if (con.getAutoCommit() != autoCommit) {
+                    con.setAutoCommit(autoCommit);
+                }
+                if (con.isReadOnly() != wasReadOnly) {
+                    con.setReadOnly(wasReadOnly);
+                }
+            }
+        }, timeoutSeconds > 0, onAdmitted);
+    }
+
+    /**
+     * Prepares named-parameter SQL as a JDBC statement with "?" placeholders
+     * and binds the values.
+     */
+    private PreparedStatement prepareStatement(Connection con, String sql, MapSqlParameterSource parameters)
+            throws SQLException {
+        ParsedSql parsedSql = parsedSqlCache.computeIfAbsent(sql, NamedParameterUtils::parseSqlStatement);
+        String jdbcSql = NamedParameterUtils.substituteNamedParameters(parsedSql, parameters);
+        Object[] args = NamedParameterUtils.buildValueArray(parsedSql, parameters, null);
+        PreparedStatement ps = con.prepareStatement(jdbcSql);
+        try {
+            new ArgumentPreparedStatementSetter(args).setValues(ps);
+        } catch (SQLException | RuntimeException e) {
+            ps.close();
+            throw e;
+        }
+        return ps;
+    }
+
+    private MapSqlParameterSource bindParameters(Map<String, Object> values, List<QueryParameter> declared) {
+        MapSqlParameterSource parameterSource = new MapSqlParameterSource();
+        if (values != null) {
+            parameterSource.addValues(values);
+        }
+        if (declared != null) {
+            for (QueryParameter parameter : declared) {
+                boolean supplied = values != null && values.containsKey(parameter.getName());
+                Object raw = supplied ? values.get(parameter.getName()) : parameter.getDefaultValue();
+                if (!supplied && raw == null) {
+                    throw new IllegalArgumentException("Missing value for parameter :" + parameter.getName());
+                }
+                parameterSource.addValue(parameter.getName(), ParameterValueConverter.toSqlValue(parameter, raw));
+            }
+        }
+        return parameterSource;
+    }
+
+    /**
+     * Runs a callback on a connection of another target, or of the active
+     * connection when target is null, under that target's admission control.
+     */
+    public <T> T execute(TargetConnection target, ConnectionCallback<T> action) throws InterruptedException {
+        return execute(target != null ? target.connection : this.active, action);
+    }
+
+    /**
+     * Runs a callback on the connection once the target admits it, reporting
+     * the outcome to the target's circuit breaker.
+     *
+     * @param timeoutLimited whether the statement runs under a timeout from its
+     *                       limits, whose expiry is then not held against the
+     *                       target
+     * @param onAdmitted     run once the permit is held, or null
+     */
+    private <T> T execute(ActiveConnection connection, ConnectionCallback<T> action, boolean timeoutLimited,
+            Runnable onAdmitted) throws InterruptedException {
+        try (TargetAdmissionService.Permit permit = admissionService.acquire(connection.targetKey())) {
+            if (timeoutLimited) {
+                permit.limitTimeout();
+            }
+            if (onAdmitted != null) {
+                onAdmitted.run();
+            }
+            try {
+                T result = connection.jdbcTemplate().execute(action);
+                permit.recordSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                permit.recordFailure(e);
+                throw e;
+            }
+        }
+    }
+
+    private <T> T execute(ActiveConnection connection, ConnectionCallback<T> action) throws InterruptedException {
+        return execute(connection, action, false, null);
+    }
+
+    /**
+     * Executes a multi-statement script on a single connection inside one
+     * transaction. Consecutive plain DML statements are sent as one JDBC batch;
+     * every other statement is executed individually and all of its result sets
+     * and update counts are collected.
+     */
+    public ScriptExecutionResponse executeScript(String script) {
+        long startTime = System.currentTimeMillis();
+        List<String> statements = SqlScriptSplitter.split(script, active.dialect().isBackslashEscaping());
+        ScriptExecutionResponse response = new ScriptExecutionResponse();
+        response.setStatementCount(statements.size());
+        try (ResultMemoryGovernor.Reservation reservation = memoryGovernor.admit()) {
+            execute(active, (ConnectionCallback<Void>) con -> {
+                Exception failure = runScript(con, statements, response, reservation);
+                // Rethrown after the rollback so the circuit breaker sees why the
+                // script failed; the response already carries the error
+                if (failure instanceof SQLException sqlException) {
+                    throw sqlException;
+                }
+                if (failure instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                return null;
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.setSuccess(false);
+            response.setError("Interrupted while waiting to execute");
+        } catch (Exception e) {
+            response.setSuccess(false);
+            if (response.getError() == null) {
+                response.setError(e.getMessage());
+            }
+        }
+        response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+        return response;
+    }
+
+    /**
+     * @return the error that rolled the script back, or null on success
+     */
+    private Exception runScript(Connection con, List<String> statements, ScriptExecutionResponse response,
+            ResultMemoryGovernor.Reservation reservation) throws SQLException {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        int index = 0;
+        try (Statement stmt = con.createStatement()) {
+            while (index < statements.size()) {
+                int batchEnd = index;
+                while (batchEnd < statements.size() && SqlScriptSplitter.isBatchable(statements.get(batchEnd))) {
+                    batchEnd++;
+                }
+                if (batchEnd - index > 1) {
+                    runBatch(stmt, statements, index, batchEnd, response);
+                    index = batchEnd;
+                } else {
+                    runStatement(stmt, statements.get(index), index, response, reservation);
+                    index++;
+                }
+                response.setRoundTrips(response.getRoundTrips() + 1);
+            }
+            con.commit();
+            response.setSuccess(true);
+            return null;
+        } catch (SQLException | RuntimeException e) {
+            // Roll back before autocommit is restored, which would otherwise commit
+            con.rollback();
+            response.setSuccess(false);
+            if (response.getFailedStatementIndex() == null) {
+                response.setFailedStatementIndex(index);
+            }
+            response.setError("Statement " + (response.getFailedStatementIndex() + 1) + " failed: " + e.getMessage()
+                    + " (transaction rolled back)");
+            return e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void runBatch(Statement stmt, List<String> statements, int from, int to,
+            ScriptExecutionResponse response) throws SQLException {
+        long start = System.currentTimeMillis();
+        for (int i = from; i < to; i++) {
+            stmt.addBatch(statements.get(i));
+        }
+        int[] counts;
+        try {
+            counts = stmt.executeBatch();
+        } catch (BatchUpdateException e) {
+            response.setFailedStatementIndex(from + failedBatchIndex(e.getUpdateCounts(), to - from));
+            throw e;
+        } finally {
+            stmt.clearBatch();
+        }
+        long duration = System.currentTimeMillis() - start;
+        for (int i = from; i < to; i++) {
+            StatementResult result = new StatementResult();
+            result.setStatementIndex(i);
+            result.setSql(statements.get(i));
+            result.setBatched(true);
+            int count = i - from < counts.length ? counts[i - from] : Statement.SUCCESS_NO_INFO;
+            result.setUpdateCount(count == Statement.SUCCESS_NO_INFO ? null : (long) count);
+            result.setExecutionTimeMs(duration);
+            response.getResults().add(result);
+        }
+    }
+
+    /**
+     * Position of the failed statement in a batch. Drivers that go on after a
+     * failure (MySQL with continueBatchOnError) report a count for every
+     * statement, marking the failed ones; drivers that stop at the first
+     * failure report the counts of the statements that succeeded before it.
+     */
+    private static int failedBatchIndex(int[] counts, int size) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.EXECUTE_FAILED) {
+                return i;
+            }
+        }
+        return Math.min(counts.length, size - 1);
+    }
+
+    private void runStatement(Statement stmt, String sql, int index, ScriptExecutionResponse response,
+            ResultMemoryGovernor.Reservation reservation) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean isResultSet = stmt.execute(sql);
+        while (true) {
+            StatementResult result = new StatementResult();
+            result.setStatementIndex(index);
+            result.setSql(sql);
+            if (isResultSet) {
+                try (ResultSet rs = stmt.getResultSet()) {
+                    List<String> columns = extractColumns(rs);
+                    result.setColumns(columns);
+                    FetchedRows fetched = extractRows(rs, columns, reservation);
+                    result.setRows(fetched.rows);
+                    result.setTruncated(fetched.truncated);
+                }
+            } else {
+                int updateCount = stmt.getUpdateCount();
+                if (updateCount == -1) {
+                    break;
+                }
+                result.setUpdateCount((long) updateCount);
+            }
+            // Each result is timed from the end of the previous one
+            long now = System.currentTimeMillis();
+            result.setExecutionTimeMs(now - start);
+            start = now;
+            response.getResults().add(result);
+            isResultSet = stmt.getMoreResults();
+        }
+    }
+
+    private List<String> extractColumns(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> columns = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            columns.add(metaData.getColumnName(i));
+        }
+        return columns;
+    }
+
+    /**
+     * Rows fetched from one result set, and whether fetching stopped at the
+     * memory budget
+     */
+    private static final class FetchedRows {
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        boolean truncated;
+
+        /**
+         * Estimated size of the rows
+         */
+        long bytes;
+
+        /**
+         * Set when the first large value is spilled; shared by all large
+         * values of the result set
+         */
+        String lobHandle;
+    }
+
+    /**
+     * Fetches rows while the reservation can grow to hold them. Memory is
+     * reserved in chunks so the shared budget is not contended on every row.
+     * Once the budget is exhausted no further rows are fetched, so the budget
+     * also bounds what is transferred.
+     * <p>
+     * Binary and large text columns are read as streams: binary values longer
+     * than the preview length and text longer than the spill threshold are
+     * spilled to the LOB store and returned as a preview with a reference, so
+     * they never sit in the result in full.
+     */
+    private FetchedRows extractRows(ResultSet rs, List<String> columns,
+            ResultMemoryGovernor.Reservation reservation) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        ResultSizeEstimator estimator = new ResultSizeEstimator(metaData);
+        int[] lobKinds = lobKinds(metaData);
+        FetchedRows fetched = new FetchedRows();
+        long fetchedBytes = 0;
+        long reservedBytes = 0;
+        long[] previewBytes = new long[1];
+        while (rs.next()) {
+            previewBytes[0] = 0;
+            Map<String, Object> row = readRow(rs, fetched.rows.size(), columns, lobKinds, fetched, previewBytes);
+            long rowBytes = estimator.estimateRow(columns, row) + previewBytes[0];
+            if (fetchedBytes + rowBytes > reservedBytes) {
+                long chunk = Math.max(RESERVATION_CHUNK, fetchedBytes + rowBytes - reservedBytes);
+                if (!reservation.tryGrow(chunk)) {
+                    fetched.truncated = true;
+                    break;
+                }
+                reservedBytes += chunk;
+            }
+            fetchedBytes += rowBytes;
+            fetched.rows.add(row);
+        }
+        fetched.bytes = fetchedBytes;
+        return fetched;
+    }
+
+    /**
+     * Reads the current row, converting values to JSON-serializable form.
+     * Large values become previews, spilled under the given row index, whose
+     * size is added to previewBytes when given.
+     */
+    private Map<String, Object> readRow(ResultSet rs, int rowIndex, List<String> columns, int[] lobKinds,
+            FetchedRows fetched, long[] previewBytes) throws SQLException {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            Object value = lobKinds[i] != LOB_NONE
+                    ? readLob(rs, rowIndex, i + 1, lobKinds[i], column, fetched)
+                    : rs.getObject(column);
+            if (value instanceof LobValue lob) {
+                if (previewBytes != null) {
+                    previewBytes[0] += ResultSizeEstimator.estimateValue(lob.getPreview());
+                }
+                row.put(column, lob);
+                continue;
+            }
+            // Convert database-specific types to JSON-serializable formats
+            Object convertedValue = typeConverterRegistry.convertToSerializable(value);
+            row.put(column, convertedValue);
+        }
+        return row;
+    }
+
+    private static int[] lobKinds(ResultSetMetaData metaData) throws SQLException {
+        int[] kinds = new int[metaData.getColumnCount()];
+        for (int i = 0; i < kinds.length; i++) {
+            switch (metaData.getColumnType(i + 1)) {
+                case Types.BLOB:
+                case Types.BINARY:
+                case Types.VARBINARY:
+                case Types.LONGVARBINARY:
+                    kinds[i] = LOB_BINARY;
+                    break;
+                case Types.CLOB:
+                case Types.NCLOB:
+                case Types.LONGVARCHAR:
+                case Types.LONGNVARCHAR:
+                    kinds[i] = LOB_TEXT;
+                    break;
+                default:
+                    kinds[i] = LOB_NONE;
+            }
+        }
+        return kinds;
+    }
+
+    /**
+     * Reads a binary or text value through its stream. Binary values up to the
+     * preview length are returned in hex and text up to the spill threshold as
+     * a String, both in full; longer ones are spilled and returned as a
+     * LobValue, so a binary value is never cut to its preview without a
+     * handle.
+     */
+    private Object readLob(ResultSet rs, int row, int index, int kind, String column, FetchedRows fetched)
+            throws SQLException {
+        try {
+            if (kind == LOB_BINARY) {
+                int inlineLength = lobStore.getPreviewLength();
+                try (InputStream in = rs.getBinaryStream(index)) {
+                    if (in == null) {
+                        return null;
+                    }
+                    byte[] head = in.readNBytes(inlineLength + 1);
+                    if (head.length <= inlineLength) {
+                        return "\\x" + HexFormat.of().formatHex(head);
+                    }
+                    return lobStore.spillBinary(lobHandle(fetched), row, column, head, in);
+                }
+            }
+            int threshold = lobStore.getSpillThreshold();
+            try (Reader in = rs.getCharacterStream(index)) {
+                if (in == null) {
+                    return null;
+                }
+                // Read in chunks, so a short value does not cost a threshold-sized buffer
+                StringBuilder head = new StringBuilder();
+                char[] chunk = new char[LOB_READ_CHUNK];
+                int read;
+                while (head.length() <= threshold
+                        && (read = in.read(chunk, 0, Math.min(chunk.length, threshold + 1 - head.length()))) >= 0) {
+                    head.append(chunk, 0, read);
+                }
+                if (head.length() <= threshold) {
+                    return head.toString();
+                }
+                return lobStore.spillText(lobHandle(fetched), row, column, head.toString(), in);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to read the value of column " + column + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String lobHandle(FetchedRows fetched) {
+        if (fetched.lobHandle == null) {
+            fetched.lobHandle = lobStore.newHandle();
+        }
+        return fetched.lobHandle;
+    }
 }
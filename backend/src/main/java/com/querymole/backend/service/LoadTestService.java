@@ -0,0 +1,368 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.LoadTestRequest;
+import com.querymole.backend.model.QueryNode;
+import com.querymole.backend.model.QueryParameter;
+import com.querymole.backend.util.LatencyHistogram;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * pgbench-style load tests of a library query or ad-hoc SQL: a number of
+ * workers execute the query back to back for a duration or an iteration count
+ * while throughput, latency percentiles and errors are collected for live
+ * reporting.
+ * <p>
+ * Workers are virtual threads when the runtime has them (Java 21+) and daemon
+ * platform threads otherwise. Every execution goes through the regular
+ * execution path, so it reads the full result (without keeping it) and
+ * is subject to the target's admission control. Concurrency is capped at the
+ * statement slots a target admits, since workers beyond them would only queue
+ * and report their wait as query latency; the circuit breaker still protects
+ * the database.
+ */
+@Service
+public class LoadTestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestService.class);
+
+    private static final int MAX_ERROR_MESSAGES = 10;
+
+    private final JdbcExecutorService jdbcExecutorService;
+    private final QueryService queryService;
+    private final int maxConcurrency;
+    private final int maxDurationSeconds;
+    private final int historySize;
+    private final ThreadFactory workerFactory;
+    private final boolean virtualThreads;
+
+    /**
+     * Runs by id in start order; finished runs beyond the history size are
+     * dropped oldest first
+     */
+    private final Map<String, Run> runs = new LinkedHashMap<>();
+
+    public LoadTestService(JdbcExecutorService jdbcExecutorService, QueryService queryService,
+            @Value("${querymole.loadtest.max-concurrency:64}") int maxConcurrency,
+            @Value("${querymole.admission.max-concurrent:4}") int maxConcurrent,
+            @Value("${querymole.loadtest.max-duration-seconds:3600}") int maxDurationSeconds,
+            @Value("${querymole.loadtest.history:20}") int historySize) {
+        this.jdbcExecutorService = jdbcExecutorService;
+        this.queryService = queryService;
+        this.maxConcurrency = Math.max(1, Math.min(maxConcurrency, maxConcurrent));
+        this.maxDurationSeconds = maxDurationSeconds;
+        this.historySize = historySize;
+        ThreadFactory virtual = virtualThreadFactory();
+        this.virtualThreads = virtual != null;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workerFactory = virtual != null ? virtual : r -> {
+            Thread thread = new Thread(r, "loadtest-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private enum State {
+        RUNNING, FINISHED, CANCELLED
+    }
+
+    private final class Run {
+        final String id = UUID.randomUUID().toString();
+        final String sql;
+        final List<QueryParameter> declared;
+        final JdbcExecutorService.ExecutionLimits limits;
+        final List<Map<String, Object>> parameterSets;
+        final int concurrency;
+        final long deadlineNanos;
+        final long iterations;
+        final long startedAt = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
+        final List<Thread> workers = new ArrayList<>();
+
+        final AtomicLong claimed = new AtomicLong();
+        final AtomicInteger runningWorkers = new AtomicInteger();
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder rowsRead = new LongAdder();
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final Map<String, LongAdder> errorMessages = new ConcurrentHashMap<>();
+
+        volatile State state = State.RUNNING;
+        volatile long elapsedNanos;
+
+        Run(String sql, List<QueryParameter> declared, JdbcExecutorService.ExecutionLimits limits,
+                List<Map<String, Object>> parameterSets, int concurrency, Integer durationSeconds, Long iterations) {
+            this.sql = sql;
+            this.declared = declared;
+            this.limits = limits;
+            this.parameterSets = parameterSets != null && !parameterSets.isEmpty() ? parameterSets : null;
+            this.concurrency = concurrency;
+            this.deadlineNanos = durationSeconds != null
+                    ? startNanos + durationSeconds * 1_000_000_000L
+                    : Long.MAX_VALUE;
+            this.iterations = iterations != null ? iterations : Long.MAX_VALUE;
+        }
+
+        void work() {
+            try {
+                while (state == State.RUNNING && System.nanoTime() < deadlineNanos) {
+                    long iteration = claimed.getAndIncrement();
+                    if (iteration >= iterations) {
+                        break;
+                    }
+                    Map<String, Object> values = parameterSets != null
+                            ? parameterSets.get((int) (iteration % parameterSets.size()))
+                            : null;
+                    if (!executeOnce(values)) {
+                        break;
+                    }
+                }
+            } finally {
+                if (runningWorkers.decrementAndGet() == 0) {
+                    elapsedNanos = System.nanoTime() - startNanos;
+                    if (state == State.RUNNING) {
+                        state = State.FINISHED;
+                    }
+                    logger.info("Load test {} {}: {} executions, {} errors", id, state.name().toLowerCase(),
+                            succeeded.sum() + failed.sum(), failed.sum());
+                }
+            }
+        }
+
+        /**
+         * @return false when the worker was interrupted and must stop
+         */
+        private boolean executeOnce(Map<String, Object> values) {
+            long start = System.nanoTime();
+            try {
+                long rows = jdbcExecutorService.streamQuery(sql, values, declared, limits, rs -> {
+                    long count = 0;
+                    while (rs.next()) {
+                        count++;
+                    }
+                    return count;
+                });
+                latencies.record((System.nanoTime() - start) / 1000);
+                succeeded.increment();
+                rowsRead.add(rows);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (RuntimeException e) {
+                if (state != State.RUNNING) {
+                    // Cancelled mid-execution; not a failure of the query
+                    return false;
+                }
+                latencies.record((System.nanoTime() - start) / 1000);
+                failed.increment();
+                recordError(e);
+                return true;
+            }
+        }
+
+        private void recordError(RuntimeException e) {
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            LongAdder count = errorMessages.get(message);
+            if (count == null && errorMessages.size() >= MAX_ERROR_MESSAGES) {
+                message = "(other errors)";
+            }
+            errorMessages.computeIfAbsent(message, k -> new LongAdder()).increment();
+        }
+
+        Map<String, Object> status() {
+            Map<String, Object> status = new LinkedHashMap<>();
+            long elapsed = state == State.RUNNING ? System.nanoTime() - startNanos : elapsedNanos;
+            long ok = succeeded.sum();
+            long errors = failed.sum();
+            long executions = ok + errors;
+            double seconds = elapsed / 1e9;
+            status.put("id", id);
+            status.put("state", state);
+            status.put("sql", sql);
+            status.put("concurrency", concurrency);
+            status.put("virtualThreads", virtualThreads);
+            status.put("startedAt", startedAt);
+            status.put("elapsedMs", elapsed / 1_000_000);
+            status.put("executions", executions);
+            status.put("errors", errors);
+            status.put("errorRate", executions > 0 ? (double) errors / executions : 0.0);
+            status.put("rowsRead", rowsRead.sum());
+            status.put("throughputPerSecond", seconds > 0 ? executions / seconds : 0.0);
+
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("mean", latencies.getMean() / 1000);
+            latency.put("p50", latencies.getPercentile(50) / 1000.0);
+            latency.put("p90", latencies.getPercentile(90) / 1000.0);
+            latency.put("p95", latencies.getPercentile(95) / 1000.0);
+            latency.put("p99", latencies.getPercentile(99) / 1000.0);
+            latency.put("max", latencies.getMax() / 1000.0);
+            status.put("latencyMs", latency);
+
+            Map<String, Long> messages = new LinkedHashMap<>();
+            errorMessages.forEach((message, count) -> messages.put(message, count.sum()));
+            status.put("errorMessages", messages);
+            return status;
+        }
+    }
+
+    /**
+     * Starts a load test in the background.
+     *
+     * @return the initial status, including the run id
+     * @throws IllegalArgumentException if the request is incomplete or out of
+     *                                  bounds
+     * @throws NoSuchElementException   if the library query does not exist
+     */
+    public Map<String, Object> start(LoadTestRequest request) {
+        String sql;
+        List<QueryParameter> declared = null;
+        JdbcExecutorService.ExecutionLimits limits = jdbcExecutorService.getDefaultLimits();
+        if (request.getQueryId() != null) {
+            QueryNode node = queryService.getQueryNode(request.getQueryId());
+            if (node == null || !"QUERY".equals(node.getType())) {
+                throw new NoSuchElementException("Query not found: " + request.getQueryId());
+            }
+            sql = node.getQuery();
+            declared = node.getParameters();
+            limits = jdbcExecutorService.limitsFor(node.getHints());
+        } else if (request.getSql() != null && !request.getSql().isBlank()) {
+            sql = request.getSql();
+        } else {
+            throw new IllegalArgumentException("Either a query id or SQL is required");
+        }
+        if (request.getConcurrency() < 1 || request.getConcurrency() > maxConcurrency) {
+            throw new IllegalArgumentException("Concurrency must be between 1 and " + maxConcurrency);
+        }
+        Integer duration = request.getDurationSeconds();
+        if (duration == null && request.getIterations() == null) {
+            throw new IllegalArgumentException("A duration or an iteration count is required");
+        }
+        if (duration != null && (duration < 1 || duration > maxDurationSeconds)) {
+            throw new IllegalArgumentException("Duration must be between 1 and " + maxDurationSeconds + " seconds");
+        }
+        if (request.getIterations() != null && request.getIterations() < 1) {
+            throw new IllegalArgumentException("Iterations must be positive");
+        }
+        // Without a duration an iteration-count run is still bounded in time
+        if (duration == null) {
+            duration = maxDurationSeconds;
+        }
+
+        Run run = new Run(sql, declared, limits, request.getParameterSets(), request.getConcurrency(), duration,
+                request.getIterations());
+        synchronized (runs) {
+            runs.put(run.id, run);
+            evictFinished();
+        }
+        run.runningWorkers.set(run.concurrency);
+        for (int i = 0; i < run.concurrency; i++) {
+            Thread worker = workerFactory.newThread(run::work);
+            run.workers.add(worker);
+        }
+        logger.info("Starting load test {} with {} workers: {}", run.id, run.concurrency, abbreviate(sql));
+        run.workers.forEach(Thread::start);
+        return run.status();
+    }
+
+    /**
+     * @throws NoSuchElementException if the run is unknown
+     */
+    public Map<String, Object> getStatus(String id) {
+        return find(id).status();
+    }
+
+    public List<Map<String, Object>> getRuns() {
+        List<Run> snapshot;
+        synchronized (runs) {
+            snapshot = new ArrayList<>(runs.values());
+        }
+        List<Map<String, Object>> statuses = new ArrayList<>(snapshot.size());
+        for (Run run : snapshot) {
+            statuses.add(run.status());
+        }
+        return statuses;
+    }
+
+    /**
+     * Stops a running load test; executions in flight are interrupted.
+     *
+     * @throws NoSuchElementException if the run is unknown
+     */
+    public Map<String, Object> cancel(String id) {
+        Run run = find(id);
+        if (run.state == State.RUNNING) {
+            run.state = State.CANCELLED;
+            run.workers.forEach(Thread::interrupt);
+        }
+        return run.status();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (runs) {
+            for (Run run : runs.values()) {
+                if (run.state == State.RUNNING) {
+                    run.state = State.CANCELLED;
+                    run.workers.forEach(Thread::interrupt);
+                }
+            }
+        }
+    }
+
+    private Run find(String id) {
+        synchronized (runs) {
+            Run run = runs.get(id);
+            if (run == null) {
+                throw new NoSuchElementException("Load test not found: " + id);
+            }
+            return run;
+        }
+    }
+
+    private void evictFinished() {
+        Iterator<Run> oldest = runs.values().iterator();
+        int excess = runs.size() - historySize;
+        while (excess > 0 && oldest.hasNext()) {
+            if (oldest.next().state != State.RUNNING) {
+                oldest.remove();
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * Thread.ofVirtual().factory() when running on Java 21+, looked up
+     * reflectively because the build targets Java 17
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "loadtest-", 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() > 80 ? sql.substring(0, 80) + "..." : sql;
+    }
+}
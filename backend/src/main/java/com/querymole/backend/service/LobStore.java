@@ -0,0 +1,240 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.LobValue;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HexFormat;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Spills large binary and text cells to disk while a result is fetched, so
+ * only a bounded preview is kept in the result. The full value is streamed
+ * from the file when it is opened. Files of one result share a handle
+ * directory; handles expire after the configured time and total spilled bytes
+ * are bounded.
+ */
+@Service
+public class LobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LobStore.class);
+
+    private static final Pattern HANDLE = Pattern.compile("[0-9a-f-]{36}");
+    private static final int COPY_BUFFER = 64 * 1024;
+    private static final long CLEANUP_INTERVAL_MS = 60_000;
+    private static final String TEXT_SUFFIX = ".txt";
+    private static final String BINARY_SUFFIX = ".bin";
+
+    private final Path directory;
+    private final int previewLength;
+    private final int spillThreshold;
+    private final long ttlMillis;
+    private final long maxDiskBytes;
+
+    private final AtomicLong diskBytes = new AtomicLong();
+    private volatile long lastCleanup;
+
+    public LobStore(@Value("${querymole.lob.dir:}") String directory,
+            @Value("${querymole.lob.preview-length:100}") int previewLength,
+            @Value("${querymole.lob.spill-threshold-kb:256}") int spillThresholdKb,
+            @Value("${querymole.lob.ttl-seconds:1800}") long ttlSeconds,
+            @Value("${querymole.lob.max-disk-mb:1024}") long maxDiskMb) {
+        this.directory = directory.isEmpty()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "querymole-lobs")
+                : Paths.get(directory);
+        this.previewLength = previewLength;
+        this.spillThreshold = Math.max(previewLength, spillThresholdKb * 1024);
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxDiskBytes = maxDiskMb * 1024 * 1024;
+    }
+
+    /**
+     * Spilled values do not survive a restart
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Length in bytes or characters of the preview of a spilled value
+     */
+    public int getPreviewLength() {
+        return previewLength;
+    }
+
+    /**
+     * Text values up to this many characters are returned inline; binary
+     * values are spilled once longer than the preview, which is all of them
+     * that can be shown
+     */
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    public String newHandle() {
+        cleanupExpired();
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Stores a binary value whose first bytes were already read.
+     */
+    public LobValue spillBinary(String handle, int row, String column, byte[] head, InputStream rest)
+            throws IOException {
+        LobValue value = newValue("binary", handle, row, column);
+        value.setPreview("\\x" + HexFormat.of().formatHex(head, 0, Math.min(head.length, previewLength)));
+        if (diskBytes.get() >= maxDiskBytes) {
+            value.setHandle(null);
+            value.setLength(head.length + rest.transferTo(OutputStream.nullOutputStream()));
+            return value;
+        }
+        Path file = newCellFile(handle, row, column, BINARY_SUFFIX);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(head);
+            value.setLength(head.length + rest.transferTo(out));
+        }
+        diskBytes.addAndGet(value.getLength());
+        return value;
+    }
+
+    /**
+     * Stores a text value whose first characters were already read.
+     */
+    public LobValue spillText(String handle, int row, String column, String head, Reader rest) throws IOException {
+        LobValue value = newValue("text", handle, row, column);
+        value.setPreview(head.substring(0, Math.min(head.length(), previewLength)));
+        if (diskBytes.get() >= maxDiskBytes) {
+            value.setHandle(null);
+            value.setLength(head.length() + rest.transferTo(Writer.nullWriter()));
+            return value;
+        }
+        Path file = newCellFile(handle, row, column, TEXT_SUFFIX);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(head);
+            value.setLength(head.length() + rest.transferTo(out));
+        }
+        diskBytes.addAndGet(Files.size(file));
+        return value;
+    }
+
+    /**
+     * Streams a spilled value; text is written as UTF-8.
+     *
+     * @throws NoSuchElementException if the handle or cell is unknown or expired
+     */
+    public void copyTo(String handle, int row, String column, OutputStream out) throws IOException {
+        Path file = handleDirectory(handle).resolve(cellName(row, column)
+                + (isText(handle, row, column) ? TEXT_SUFFIX : BINARY_SUFFIX));
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[COPY_BUFFER];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        } catch (NoSuchFileException e) {
+            throw new NoSuchElementException("Cell not found or expired: " + handle + " row " + row + " " + column);
+        }
+    }
+
+    /**
+     * Whether a spilled cell holds text (otherwise binary)
+     *
+     * @throws NoSuchElementException if the handle or cell is unknown or expired
+     */
+    public boolean isText(String handle, int row, String column) {
+        Path handleDir = handleDirectory(handle);
+        String name = cellName(row, column);
+        if (Files.exists(handleDir.resolve(name + TEXT_SUFFIX))) {
+            return true;
+        }
+        if (Files.exists(handleDir.resolve(name + BINARY_SUFFIX))) {
+            return false;
+        }
+        throw new NoSuchElementException("Cell not found or expired: " + handle + " row " + row + " " + column);
+    }
+
+    private LobValue newValue(String kind, String handle, int row, String column) {
+        LobValue value = new LobValue();
+        value.setKind(kind);
+        value.setHandle(handle);
+        value.setRow(row);
+        value.setColumn(column);
+        return value;
+    }
+
+    private Path newCellFile(String handle, int row, String column, String suffix) throws IOException {
+        Path handleDir = handleDirectory(handle);
+        Files.createDirectories(handleDir);
+        return handleDir.resolve(cellName(row, column) + suffix);
+    }
+
+    private Path handleDirectory(String handle) {
+        // The handle comes from the request path, so it must not escape the directory
+        if (handle == null || !HANDLE.matcher(handle).matches()) {
+            throw new NoSuchElementException("Unknown result handle: " + handle);
+        }
+        return directory.resolve(handle);
+    }
+
+    /**
+     * Column names may contain any character; the file name uses their hex
+     * form
+     */
+    private static String cellName(int row, String column) {
+        return row + "-" + HexFormat.of().formatHex(column.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void cleanupExpired() {
+        long now = System.currentTimeMillis();
+        if (now - lastCleanup < CLEANUP_INTERVAL_MS) {
+            return;
+        }
+        lastCleanup = now;
+        try (DirectoryStream<Path> handles = Files.newDirectoryStream(directory)) {
+            for (Path handleDir : handles) {
+                FileTime modified = Files.getLastModifiedTime(handleDir);
+                if (now - modified.toMillis() > ttlMillis) {
+                    long size = directorySize(handleDir);
+                    FileSystemUtils.deleteRecursively(handleDir);
+                    diskBytes.addAndGet(-size);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Failed to clean up spilled values in {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).sum();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.ExtractionRequest;
+import com.querymole.backend.util.CsvFormat;
+import com.querymole.backend.util.RangeSplitter;
+import com.querymole.backend.util.SqlIdentifiers;
+import com.querymole.backend.util.TypeConverterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Extracts a large table or query as CSV by splitting the value range of a
+ * numeric or timestamp column into chunks that are read concurrently, each on
+ * its own pooled connection. Concurrency is bounded by the target's statement
+ * slots, so a bulk pull scales with the connections the target allows without
+ * exceeding them; further chunks queue until a reader is free.
+ * <p>
+ * In ordered mode each chunk is spooled to a temporary file and the files are
+ * written out in range order; in unordered mode rows are written as soon as
+ * any chunk produces them.
+ */
+@Service
+public class ParallelExtractionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelExtractionService.class);
+
+    /**
+     * Rows per block handed from a chunk to the writer in unordered mode
+     */
+    private static final int BLOCK_ROWS = 500;
+
+    private static final String END_OF_CHUNK = new String("end of chunk");
+
+    private final JdbcExecutorService jdbcExecutorService;
+    private final TypeConverterRegistry typeConverterRegistry;
+    private final int defaultPartitions;
+    private final int maxPartitions;
+    private final ExecutorService executor;
+
+    public ParallelExtractionService(JdbcExecutorService jdbcExecutorService,
+            TypeConverterRegistry typeConverterRegistry,
+            @Value("${querymole.admission.max-concurrent:4}") int maxConcurrent,
+            @Value("${querymole.extract.max-partitions:64}") int maxPartitions,
+            @Value("${querymole.extract.threads:8}") int threads) {
+        this.jdbcExecutorService = jdbcExecutorService;
+        this.typeConverterRegistry = typeConverterRegistry;
+        this.defaultPartitions = maxConcurrent;
+        this.maxPartitions = maxPartitions;
+        AtomicInteger threadCount = new AtomicInteger();
+        // No more chunks in flight than the target admits: chunks beyond that
+        // wait here without a timeout instead of in the admission queue, where
+        // they would time out behind long-running ones
+        this.executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, maxConcurrent)), r -> {
+            Thread thread = new Thread(r, "extract-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * One range of the split column; the last range includes its upper bound,
+     * the null range holds the rows whose split column is null.
+     */
+    private record Chunk(int index, Object lower, Object upper, boolean upperInclusive, boolean nulls) {
+    }
+
+    /**
+     * A validated extraction: the source, its columns and the chunks to read.
+     */
+    public static final class Plan {
+        private final String source;
+        private final String splitColumn;
+        private final List<String> columns;
+        private final List<Chunk> chunks;
+        private final boolean ordered;
+
+        private Plan(String source, String splitColumn, List<String> columns, List<Chunk> chunks, boolean ordered) {
+            this.source = source;
+            this.splitColumn = splitColumn;
+            this.columns = columns;
+            this.chunks = chunks;
+            this.ordered = ordered;
+        }
+
+        public int getChunkCount() {
+            return chunks.size();
+        }
+    }
+
+    /**
+     * Validates the request, reads the split column's range and divides it.
+     * Runs before the response starts so errors can still be reported as such.
+     *
+     * @throws IllegalArgumentException if the request is incomplete or the
+     *                                  split column is not numeric or temporal
+     */
+    public Plan plan(ExtractionRequest request) throws InterruptedException {
+        boolean hasTable = request.getTable() != null && !request.getTable().isBlank();
+        boolean hasSql = request.getSql() != null && !request.getSql().isBlank();
+        if (hasTable == hasSql) {
+            throw new IllegalArgumentException("Either table or sql is required");
+        }
+        if (!SqlIdentifiers.isQualifiedName(request.getSplitColumn())) {
+            throw new IllegalArgumentException("A valid split column is required");
+        }
+        if (hasTable && !SqlIdentifiers.isQualifiedName(request.getTable())) {
+            throw new IllegalArgumentException("Invalid table name: " + request.getTable());
+        }
+        String source = hasTable ? request.getTable() : "(" + SqlIdentifiers.stripTrailingSemicolons(request.getSql()) + "\n) src";
+        String column = request.getSplitColumn();
+        int partitions = request.getPartitions() != null ? request.getPartitions() : defaultPartitions;
+        partitions = Math.max(1, Math.min(partitions, maxPartitions));
+
+        JdbcExecutorService.ExecutionLimits limits = jdbcExecutorService.getDefaultLimits();
+        List<String> columns = jdbcExecutorService.streamQuery("SELECT * FROM " + source + " WHERE 1 = 0", null,
+                limits, rs -> columnNames(rs.getMetaData()));
+        Object[] range = jdbcExecutorService.streamQuery(
+                "SELECT MIN(" + column + "), MAX(" + column + ") FROM " + source, null, limits,
+                rs -> rs.next() ? new Object[] { rs.getObject(1), rs.getObject(2) } : new Object[2]);
+
+        List<Chunk> chunks = new ArrayList<>();
+        if (range[0] != null) {
+            List<Object> boundaries = RangeSplitter.boundaries(range[0], range[1], partitions);
+            int rangeCount = Math.max(1, boundaries.size() - 1);
+            for (int i = 0; i < rangeCount; i++) {
+                Object upper = boundaries.get(Math.min(i + 1, boundaries.size() - 1));
+                chunks.add(new Chunk(i, boundaries.get(i), upper, i == rangeCount - 1, false));
+            }
+        }
+        chunks.add(new Chunk(chunks.size(), null, null, false, true));
+        return new Plan(source, column, columns, chunks, request.isOrdered());
+    }
+
+    /**
+     * Reads all chunks concurrently and writes a CSV document with a header
+     * row. A failed chunk aborts the extraction; the output is then incomplete
+     * and an IOException is thrown.
+     */
+    public void export(Plan plan, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        StringBuilder header = new StringBuilder();
+        CsvFormat.appendRow(header, new ArrayList<>(plan.columns));
+        writer.write(header.toString());
+
+        AtomicLong rowCount = new AtomicLong();
+        if (plan.ordered) {
+            exportOrdered(plan, writer, rowCount);
+        } else {
+            exportUnordered(plan, writer, rowCount);
+        }
+        writer.flush();
+        logger.info("Extracted {} rows from {} in {} chunks in {} ms", rowCount.get(), plan.source,
+                plan.chunks.size(), System.currentTimeMillis() - start);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void exportOrdered(Plan plan, Writer writer, AtomicLong rowCount) throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Chunk chunk : plan.chunks) {
+                Path file = Files.createTempFile("querymole-extract-", ".csv");
+                files.add(file);
+                futures.add(executor.submit(() -> {
+                    try (Writer chunkWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                        StringBuilder line = new StringBuilder();
+                        readChunk(plan, chunk, rs -> {
+                            line.setLength(0);
+                            CsvFormat.appendRow(line, rowValues(rs, plan.columns.size()));
+                            chunkWriter.write(line.toString());
+                            rowCount.incrementAndGet();
+                        });
+                    }
+                    return null;
+                }));
+            }
+            // Chunks finish in any order; each is copied out once all before it are
+            for (int i = 0; i < futures.size(); i++) {
+                await(futures.get(i), plan.chunks.get(i));
+                try (java.io.Reader reader = Files.newBufferedReader(files.get(i), StandardCharsets.UTF_8)) {
+                    reader.transferTo(writer);
+                }
+                Files.deleteIfExists(files.get(i));
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void exportUnordered(Plan plan, Writer writer, AtomicLong rowCount) throws IOException {
+        BlockingQueue<String> blocks = new ArrayBlockingQueue<>(Math.max(16, plan.chunks.size() * 4));
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Chunk chunk : plan.chunks) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        StringBuilder block = new StringBuilder();
+                        int[] blockRows = { 0 };
+                        readChunk(plan, chunk, rs -> {
+                            CsvFormat.appendRow(block, rowValues(rs, plan.columns.size()));
+                            rowCount.incrementAndGet();
+                            if (++blockRows[0] == BLOCK_ROWS) {
+                                blocks.put(block.toString());
+                                block.setLength(0);
+                                blockRows[0] = 0;
+                            }
+                        });
+                        if (block.length() > 0) {
+                            blocks.put(block.toString());
+                        }
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        blocks.put(END_OF_CHUNK);
+                    }
+                    return null;
+                }));
+            }
+
+            int finished = 0;
+            while (finished < plan.chunks.size()) {
+                String block = blocks.take();
+                if (block == END_OF_CHUNK) {
+                    finished++;
+                    if (failure.get() != null) {
+                        throw new IOException("Extraction failed: " + failure.get().getMessage(), failure.get());
+                    }
+                } else {
+                    writer.write(block);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Extraction interrupted", e);
+        } finally {
+            // Also unblocks chunks waiting on a full queue after the client went away
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException, InterruptedException;
+    }
+
+    private void readChunk(Plan plan, Chunk chunk, RowWriter rowWriter) throws Exception {
+        String column = plan.splitColumn;
+        Map<String, Object> parameters = new HashMap<>();
+        String condition;
+        if (chunk.nulls()) {
+            condition = column + " IS NULL";
+        } else {
+            condition = column + " >= :lower AND " + column + (chunk.upperInclusive() ? " <= :upper" : " < :upper");
+            parameters.put("lower", chunk.lower());
+            parameters.put("upper", chunk.upper());
+        }
+        // Bulk reads are not capped by the interactive row limit
+        JdbcExecutorService.ExecutionLimits defaults = jdbcExecutorService.getDefaultLimits();
+        JdbcExecutorService.ExecutionLimits limits = new JdbcExecutorService.ExecutionLimits(0,
+                defaults.timeoutSeconds(), defaults.readOnly());
+        try {
+            jdbcExecutorService.streamQuery("SELECT * FROM " + plan.source + " WHERE " + condition, parameters,
+                    limits, rs -> {
+                        try {
+                            while (rs.next()) {
+                                rowWriter.write(rs);
+                            }
+                        } catch (IOException e) {
+                            throw new java.io.UncheckedIOException(e);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("Extraction cancelled", e);
+                        }
+                        return null;
+                    });
+        } catch (java.io.UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void await(Future<?> future, Chunk chunk) throws IOException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new IOException("Extraction of chunk " + chunk.index() + " failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Extraction interrupted", e);
+        }
+    }
+
+    private List<Object> rowValues(ResultSet rs, int columnCount) throws SQLException {
+        List<Object> values = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            values.add(typeConverterRegistry.convertToSerializable(rs.getObject(i)));
+        }
+        return values;
+    }
+
+    private static List<String> columnNames(ResultSetMetaData metaData) throws SQLException {
+        List<String> names = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            names.add(metaData.getColumnLabel(i));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,615 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.PinRequest;
+import com.querymole.backend.dto.PinnedTable;
+import com.querymole.backend.model.QueryNode;
+import com.querymole.backend.model.QueryParameter;
+import com.querymole.backend.util.ResultSizeEstimator;
+import com.querymole.backend.util.TypeConverterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Pins query results into a per-session in-memory H2 database, so follow-up
+ * SQL (aggregations, joins between pinned results, window functions) runs
+ * locally instead of against the source database.
+ * <p>
+ * Results are streamed from the source into the local table with batched
+ * inserts; rows and estimated memory per workspace are bounded, and loading
+ * stops (marking the table truncated) at either limit. Each table also holds a
+ * retained reservation of the result memory governor for its estimated size,
+ * so pinned data counts toward the global result budget. Character and binary
+ * columns hold at most H2's limit of 1,000,000 characters or bytes; longer
+ * values are cut and counted. Indexes are created on request.
+ * <p>
+ * Local SQL runs as a user that may only SELECT, so it cannot change the
+ * pinned tables or reach H2's file and Java functions. Workspaces are dropped
+ * when their HTTP session ends.
+ */
+@Service
+public class PinnedResultService implements HttpSessionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinnedResultService.class);
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]{0,62}");
+    private static final String READER_USER = "READER";
+
+    /**
+     * Longest CHARACTER VARYING and BINARY VARYING value H2 accepts
+     */
+    private static final int MAX_VALUE_LENGTH = 1_000_000;
+    private static final String TEXT_TYPE = "CHARACTER VARYING(" + MAX_VALUE_LENGTH + ")";
+    private static final String BINARY_TYPE = "BINARY VARYING(" + MAX_VALUE_LENGTH + ")";
+
+    /**
+     * Pinned memory is reserved from the governor in chunks of this size
+     */
+    private static final long RESERVATION_CHUNK = 256 * 1024;
+
+    private final JdbcExecutorService jdbcExecutorService;
+    private final QueryService queryService;
+    private final TypeConverterRegistry typeConverterRegistry;
+    private final ResultMemoryGovernor memoryGovernor;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final long maxRows;
+    private final long maxBytes;
+    private final int maxWorkspaces;
+    private final int maxResultRows;
+    private final int queryTimeoutSeconds;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * HTTP session id -> workspace; guarded by itself
+     */
+    private final Map<String, Workspace> workspaces = new HashMap<>();
+
+    public PinnedResultService(JdbcExecutorService jdbcExecutorService, QueryService queryService,
+            TypeConverterRegistry typeConverterRegistry, ResultMemoryGovernor memoryGovernor,
+            ObjectMapper objectMapper, @Value("${querymole.pins.batch-size:1000}") int batchSize,
+            @Value("${querymole.pins.max-rows:2000000}") long maxRows,
+            @Value("${querymole.pins.max-workspace-mb:512}") long maxWorkspaceMb,
+            @Value("${querymole.pins.max-workspaces:16}") int maxWorkspaces,
+            @Value("${querymole.pins.max-result-rows:10000}") int maxResultRows,
+            @Value("${querymole.pins.query-timeout-seconds:60}") int queryTimeoutSeconds) {
+        this.jdbcExecutorService = jdbcExecutorService;
+        this.queryService = queryService;
+        this.typeConverterRegistry = typeConverterRegistry;
+        this.memoryGovernor = memoryGovernor;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxRows = maxRows;
+        this.maxBytes = maxWorkspaceMb * 1024 * 1024;
+        this.maxWorkspaces = maxWorkspaces;
+        this.maxResultRows = maxResultRows;
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+    }
+
+    /**
+     * One session's H2 database: the owner connection loads tables, the reader
+     * connection runs local SQL. Guarded by itself.
+     */
+    private static final class Workspace {
+        final String sessionId;
+        final Connection owner;
+        final Connection reader;
+        final Map<String, PinnedTable> tables = new LinkedHashMap<>();
+
+        /**
+         * Memory held by each table, by lower-case name
+         */
+        final Map<String, ResultMemoryGovernor.Reservation> reservations = new HashMap<>();
+
+        Workspace(String sessionId, Connection owner, Connection reader) {
+            this.sessionId = sessionId;
+            this.owner = owner;
+            this.reader = reader;
+        }
+
+        long estimatedBytes() {
+            long bytes = 0;
+            for (PinnedTable table : tables.values()) {
+                bytes += table.getEstimatedBytes();
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Runs the query and loads its result into a local table, replacing a
+     * table of the same name.
+     *
+     * @throws IllegalArgumentException if the name is invalid or no SQL is given
+     * @throws NoSuchElementException   if the library query does not exist
+     * @throws IllegalStateException    if no workspace can be created
+     */
+    public PinnedTable pin(String sessionId, PinRequest request) throws InterruptedException {
+        String name = request.getName();
+        if (name == null || !TABLE_NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException(
+                    "Table name must start with a letter or underscore and contain only letters, digits and underscores");
+        }
+        String sql;
+        List<QueryParameter> declared = null;
+        JdbcExecutorService.ExecutionLimits limits = jdbcExecutorService.getDefaultLimits();
+        if (request.getQueryId() != null) {
+            QueryNode node = queryService.getQueryNode(request.getQueryId());
+            if (node == null || !"QUERY".equals(node.getType())) {
+                throw new NoSuchElementException("Query not found: " + request.getQueryId());
+            }
+            sql = node.getQuery();
+            declared = node.getParameters();
+            limits = jdbcExecutorService.limitsFor(node.getHints());
+        } else if (request.getSql() != null && !request.getSql().isBlank()) {
+            sql = request.getSql();
+        } else {
+            throw new IllegalArgumentException("Either a query id or SQL is required");
+        }
+
+        Workspace workspace = workspace(sessionId, true);
+        synchronized (workspace) {
+            dropIfExists(workspace, name);
+            long start = System.currentTimeMillis();
+            PinnedTable table = jdbcExecutorService.streamQuery(sql, request.getParameters(), declared, limits,
+                    rs -> load(workspace, name, rs));
+            table.setSql(sql);
+            table.setCreatedAt(start);
+            table.setLoadTimeMs(System.currentTimeMillis() - start);
+            workspace.tables.put(name.toLowerCase(), table);
+            logger.info("Pinned {} rows into {} ({} ms{}{})", table.getRowCount(), name, table.getLoadTimeMs(),
+                    table.isTruncated() ? ", truncated" : "",
+                    table.getCutValues() > 0 ? ", " + table.getCutValues() + " values cut" : "");
+            return table;
+        }
+    }
+
+    /**
+     * Runs read-only SQL against the session's pinned tables.
+     */
+    public ExecutionResponse query(String sessionId, String sql) {
+        long start = System.currentTimeMillis();
+        Workspace workspace = workspace(sessionId, false);
+        if (workspace == null) {
+            return ExecutionResponse.failure("No pinned results in this session");
+        }
+        synchronized (workspace) {
+            try (Statement stmt = workspace.reader.createStatement()) {
+                stmt.setMaxRows(maxResultRows + 1);
+                stmt.setQueryTimeout(queryTimeoutSeconds);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    List<String> columns = new ArrayList<>();
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        columns.add(metaData.getColumnLabel(i));
+                    }
+                    List<Map<String, Object>> rows = new ArrayList<>();
+                    boolean truncated = false;
+                    while (rs.next()) {
+                        if (rows.size() == maxResultRows) {
+                            truncated = true;
+                            break;
+                        }
+                        Map<String, Object> row = new HashMap<>();
+                        for (int i = 0; i < columns.size(); i++) {
+                            row.put(columns.get(i), typeConverterRegistry.convertToSerializable(rs.getObject(i + 1)));
+                        }
+                        rows.add(row);
+                    }
+                    ExecutionResponse response = new ExecutionResponse(columns, rows, null, true,
+                            System.currentTimeMillis() - start);
+                    if (truncated) {
+                        response.setTruncated(true);
+                        response.setTruncationReason("Stopped at " + maxResultRows + " rows");
+                    }
+                    return response;
+                }
+            } catch (SQLException e) {
+                return new ExecutionResponse(null, null, e.getMessage(), false, System.currentTimeMillis() - start);
+            }
+        }
+    }
+
+    /**
+     * Creates an index on columns of a pinned table.
+     *
+     * @throws NoSuchElementException   if the table does not exist
+     * @throws IllegalArgumentException if a column is not in the table
+     */
+    public PinnedTable createIndex(String sessionId, String name, List<String> columns) {
+        Workspace workspace = requireWorkspace(sessionId);
+        synchronized (workspace) {
+            PinnedTable table = requireTable(workspace, name);
+            if (columns == null || columns.isEmpty()) {
+                throw new IllegalArgumentException("At least one column is required");
+            }
+            for (String column : columns) {
+                if (!table.getColumns().contains(column)) {
+                    throw new IllegalArgumentException("Column not found in " + table.getName() + ": " + column);
+                }
+            }
+            String indexed = String.join(", ", columns);
+            if (table.getIndexes().contains(indexed)) {
+                return table;
+            }
+            StringBuilder sql = new StringBuilder("CREATE INDEX ")
+                    .append(quote(table.getName() + "_idx_" + (table.getIndexes().size() + 1)))
+                    .append(" ON ").append(quote(table.getName())).append(" (");
+            for (int i = 0; i < columns.size(); i++) {
+                sql.append(i > 0 ? ", " : "").append(quote(columns.get(i)));
+            }
+            sql.append(')');
+            try (Statement stmt = workspace.owner.createStatement()) {
+                stmt.execute(sql.toString());
+            } catch (SQLException e) {
+                throw new IllegalArgumentException("Failed to create index: " + e.getMessage(), e);
+            }
+            table.getIndexes().add(indexed);
+            return table;
+        }
+    }
+
+    public List<PinnedTable> getTables(String sessionId) {
+        Workspace workspace = workspace(sessionId, false);
+        if (workspace == null) {
+            return List.of();
+        }
+        synchronized (workspace) {
+            return new ArrayList<>(workspace.tables.values());
+        }
+    }
+
+    /**
+     * @throws NoSuchElementException if the table does not exist
+     */
+    public void drop(String sessionId, String name) {
+        Workspace workspace = requireWorkspace(sessionId);
+        synchronized (workspace) {
+            requireTable(workspace, name);
+            dropIfExists(workspace, name);
+        }
+    }
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent event) {
+        Workspace workspace;
+        synchronized (workspaces) {
+            workspace = workspaces.remove(event.getSession().getId());
+        }
+        if (workspace != null) {
+            close(workspace);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List<Workspace> all;
+        synchronized (workspaces) {
+            all = new ArrayList<>(workspaces.values());
+            workspaces.clear();
+        }
+        all.forEach(this::close);
+    }
+
+    /**
+     * Creates the local table from the result metadata and inserts the rows in
+     * batches, committing each batch so H2's undo log stays small.
+     */
+    private PinnedTable load(Workspace workspace, String name, ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> columns = uniqueColumnNames(metaData);
+        boolean[] asText = new boolean[columnCount];
+        String[] types = new String[columnCount];
+        StringBuilder ddl = new StringBuilder("CREATE TABLE ").append(quote(name)).append(" (");
+        StringBuilder insert = new StringBuilder("INSERT INTO ").append(quote(name)).append(" VALUES (");
+        for (int i = 0; i < columnCount; i++) {
+            String type = localType(metaData, i + 1);
+            asText[i] = type == null;
+            types[i] = type != null ? type : TEXT_TYPE;
+            ddl.append(i > 0 ? ", " : "").append(quote(columns.get(i))).append(' ').append(types[i]);
+            insert.append(i > 0 ? ", ?" : "?");
+        }
+        ddl.append(')');
+        insert.append(')');
+
+        long previousBytes = workspace.estimatedBytes();
+        PinnedTable table = new PinnedTable();
+        table.setName(name);
+        table.setColumns(columns);
+        Connection con = workspace.owner;
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute(ddl.toString());
+        }
+        ResultMemoryGovernor.Reservation reservation = memoryGovernor.retain();
+        try (PreparedStatement ps = con.prepareStatement(insert.toString())) {
+            con.setAutoCommit(false);
+            long rows = 0;
+            long bytes = 0;
+            long reservedBytes = 0;
+            long cutValues = 0;
+            int batched = 0;
+            while (rs.next()) {
+                if (rows >= maxRows) {
+                    table.setTruncated(true);
+                    table.setTruncationReason("Stopped at " + maxRows + " rows");
+                    break;
+                }
+                if (previousBytes + bytes >= maxBytes) {
+                    table.setTruncated(true);
+                    table.setTruncationReason("Stopped at the workspace limit of " + maxBytes / (1024 * 1024)
+                            + " MB");
+                    break;
+                }
+                long rowBytes = 32;
+                for (int i = 0; i < columnCount; i++) {
+                    Object value;
+                    if (TEXT_TYPE.equals(types[i])) {
+                        value = asText[i] ? rs.getObject(i + 1) : rs.getString(i + 1);
+                        if (asText[i] && value != null) {
+                            value = toText(typeConverterRegistry.convertToSerializable(value));
+                        }
+                        if (value instanceof String text && text.length() > MAX_VALUE_LENGTH) {
+                            value = text.substring(0, MAX_VALUE_LENGTH);
+                            cutValues++;
+                        }
+                    } else if (BINARY_TYPE.equals(types[i])) {
+                        byte[] data = rs.getBytes(i + 1);
+                        if (data != null && data.length > MAX_VALUE_LENGTH) {
+                            data = Arrays.copyOf(data, MAX_VALUE_LENGTH);
+                            cutValues++;
+                        }
+                        value = data;
+                    } else {
+                        value = rs.getObject(i + 1);
+                    }
+                    ps.setObject(i + 1, value);
+                    rowBytes += ResultSizeEstimator.estimateValue(value);
+                }
+                if (bytes + rowBytes > reservedBytes) {
+                    long chunk = Math.max(RESERVATION_CHUNK, bytes + rowBytes - reservedBytes);
+                    if (!reservation.tryGrow(chunk)) {
+                        ps.clearParameters();
+                        table.setTruncated(true);
+                        table.setTruncationReason("Stopped at the " + reservation.getRefusal());
+                        break;
+                    }
+                    reservedBytes += chunk;
+                }
+                ps.addBatch();
+                rows++;
+                bytes += rowBytes;
+                if (++batched == batchSize) {
+                    ps.executeBatch();
+                    con.commit();
+                    batched = 0;
+                }
+            }
+            if (batched > 0) {
+                ps.executeBatch();
+            }
+            con.commit();
+            table.setRowCount(rows);
+            table.setEstimatedBytes(bytes);
+            table.setCutValues(cutValues);
+            workspace.reservations.put(name.toLowerCase(), reservation);
+        } catch (SQLException | RuntimeException e) {
+            reservation.close();
+            con.rollback();
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS " + quote(name));
+            }
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+        return table;
+    }
+
+    /**
+     * H2 column type for a source column, or null to store its converted
+     * value as text (JSON for structured values)
+     */
+    private static String localType(ResultSetMetaData metaData, int column) throws SQLException {
+        switch (metaData.getColumnType(column)) {
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return "BOOLEAN";
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return "INTEGER";
+            case Types.BIGINT:
+                return "BIGINT";
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return "DOUBLE PRECISION";
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                int precision = metaData.getPrecision(column);
+                int scale = metaData.getScale(column);
+                return precision > 0 && precision <= 1000 && scale >= 0 && scale <= precision
+                        ? "NUMERIC(" + precision + ", " + scale + ")"
+                        : "NUMERIC";
+            case Types.DATE:
+                return "DATE";
+            case Types.TIME:
+                return "TIME";
+            case Types.TIMESTAMP:
+                return "TIMESTAMP";
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return "TIMESTAMP WITH TIME ZONE";
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return BINARY_TYPE;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return TEXT_TYPE;
+            default:
+                return null;
+        }
+    }
+
+    private String toText(Object value) {
+        if (value instanceof Map || value instanceof Collection || value instanceof Object[]) {
+            return objectMapper.writeValueAsString(value);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Source column labels (aliases where given), with duplicates (e.g. "id"
+     * from two joined tables) numbered
+     */
+    private static List<String> uniqueColumnNames(ResultSetMetaData metaData) throws SQLException {
+        List<String> names = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String base = metaData.getColumnLabel(i);
+            String name = base;
+            for (int n = 2; !seen.add(name.toLowerCase()); n++) {
+                name = base + "_" + n;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    private void dropIfExists(Workspace workspace, String name) {
+        try (Statement stmt = workspace.owner.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS " + quote(name));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to drop local table " + name + ": " + e.getMessage(), e);
+        }
+        workspace.tables.remove(name.toLowerCase());
+        ResultMemoryGovernor.Reservation reservation = workspace.reservations.remove(name.toLowerCase());
+        if (reservation != null) {
+            reservation.close();
+        }
+    }
+
+    private Workspace requireWorkspace(String sessionId) {
+        Workspace workspace = workspace(sessionId, false);
+        if (workspace == null) {
+            throw new NoSuchElementException("No pinned results in this session");
+        }
+        return workspace;
+    }
+
+    private static PinnedTable requireTable(Workspace workspace, String name) {
+        PinnedTable table = name != null ? workspace.tables.get(name.toLowerCase()) : null;
+        if (table == null) {
+            throw new NoSuchElementException("Pinned table not found: " + name);
+        }
+        return table;
+    }
+
+    private Workspace workspace(String sessionId, boolean create) {
+        synchronized (workspaces) {
+            Workspace workspace = workspaces.get(sessionId);
+            if (workspace != null || !create) {
+                return workspace;
+            }
+            if (workspaces.size() >= maxWorkspaces) {
+                throw new IllegalStateException("Too many sessions with pinned results (limit " + maxWorkspaces + ")");
+            }
+            workspace = open(sessionId);
+            workspaces.put(sessionId, workspace);
+            return workspace;
+        }
+    }
+
+    /**
+     * Creates the in-memory database with identifiers matched case-insensitively
+     * (so source column names work unquoted) and the read-only user for local
+     * SQL.
+     */
+    private Workspace open(String sessionId) {
+        String url = "jdbc:h2:mem:pins-" + UUID.randomUUID()
+                + ";DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=FALSE;CASE_INSENSITIVE_IDENTIFIERS=TRUE";
+        byte[] secret = new byte[16];
+        random.nextBytes(secret);
+        String password = HexFormat.of().formatHex(secret);
+        Connection owner = null;
+        try {
+            owner = DriverManager.getConnection(url, "sa", "");
+            try (Statement stmt = owner.createStatement()) {
+                stmt.execute("CREATE USER " + READER_USER + " PASSWORD '" + password + "'");
+                stmt.execute("GRANT SELECT ON SCHEMA PUBLIC TO " + READER_USER);
+            }
+            Connection reader = DriverManager.getConnection(url, READER_USER, password);
+            return new Workspace(sessionId, owner, reader);
+        } catch (SQLException e) {
+            if (owner != null) {
+                try {
+                    owner.close();
+                } catch (SQLException ignored) {
+                    // Already failing
+                }
+            }
+            throw new IllegalStateException("Failed to create the local workspace: " + e.getMessage(), e);
+        }
+    }
+
+    private void close(Workspace workspace) {
+        synchronized (workspace) {
+            workspace.reservations.values().forEach(ResultMemoryGovernor.Reservation::close);
+            workspace.reservations.clear();
+            try (Statement stmt = workspace.owner.createStatement()) {
+                // Drops the in-memory database despite DB_CLOSE_DELAY=-1
+                stmt.execute("SHUTDOWN");
+            } catch (SQLException e) {
+                logger.warn("Failed to shut down workspace of session {}: {}", workspace.sessionId, e.getMessage());
+            }
+            try {
+                workspace.reader.close();
+                workspace.owner.close();
+            } catch (SQLException ignored) {
+                // The database is gone already
+            }
+        }
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,256 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.PreviewRequest;
+import com.querymole.backend.dto.SampleStats;
+import com.querymole.backend.util.DatabaseDialect;
+import com.querymole.backend.util.SqlIdentifiers;
+import com.querymole.backend.util.TypeConverterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded previews of large tables and queries. For a table on an engine with
+ * native sampling (PostgreSQL TABLESAMPLE SYSTEM, ClickHouse SAMPLE) a fraction
+ * of the table sized from the catalog row estimate is read on the server.
+ * Otherwise, or when native sampling fails or returns too few rows, a uniform
+ * reservoir sample is drawn in a single pass over the result, which stops
+ * early after a row or time budget.
+ */
+@Service
+public class PreviewService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreviewService.class);
+
+    /**
+     * Native sampling reads about this many times the requested rows, so the
+     * sample is still full when the catalog estimate is high
+     */
+    private static final double OVERSAMPLING = 2.0;
+
+    /**
+     * Tables smaller than this many times the sample size are read in full
+     */
+    private static final long NATIVE_MIN_FACTOR = 10;
+
+    private final JdbcExecutorService jdbcExecutorService;
+    private final TypeConverterRegistry typeConverterRegistry;
+    private final int defaultSampleSize;
+    private final int maxSampleSize;
+    private final long scanLimit;
+    private final long timeBudgetMs;
+
+    public PreviewService(JdbcExecutorService jdbcExecutorService, TypeConverterRegistry typeConverterRegistry,
+            @Value("${querymole.preview.sample-size:1000}") int defaultSampleSize,
+            @Value("${querymole.preview.max-sample-size:10000}") int maxSampleSize,
+            @Value("${querymole.preview.scan-limit:200000}") long scanLimit,
+            @Value("${querymole.preview.time-budget-ms:3000}") long timeBudgetMs) {
+        this.jdbcExecutorService = jdbcExecutorService;
+        this.typeConverterRegistry = typeConverterRegistry;
+        this.defaultSampleSize = defaultSampleSize;
+        this.maxSampleSize = maxSampleSize;
+        this.scanLimit = scanLimit;
+        this.timeBudgetMs = timeBudgetMs;
+    }
+
+    private static final class Sample {
+        List<String> columns;
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        long scanned;
+        boolean complete = true;
+    }
+
+    /**
+     * @throws IllegalArgumentException if neither a valid table nor SQL is given
+     */
+    public ExecutionResponse preview(PreviewRequest request) {
+        boolean hasTable = request.getTable() != null && !request.getTable().isBlank();
+        boolean hasSql = request.getSql() != null && !request.getSql().isBlank();
+        if (hasTable == hasSql) {
+            throw new IllegalArgumentException("Either table or sql is required");
+        }
+        if (hasTable && !SqlIdentifiers.isQualifiedName(request.getTable())) {
+            throw new IllegalArgumentException("Invalid table name: " + request.getTable());
+        }
+        int size = request.getSampleSize() != null ? request.getSampleSize() : defaultSampleSize;
+        size = Math.max(1, Math.min(size, maxSampleSize));
+
+        long startTime = System.currentTimeMillis();
+        try {
+            DatabaseDialect dialect = jdbcExecutorService.getDialect();
+            Long estimate = hasTable ? estimateRows(dialect, request.getTable()) : null;
+
+            SampleStats stats = new SampleStats();
+            Sample sample = null;
+            if (estimate != null && estimate > size * NATIVE_MIN_FACTOR) {
+                double fraction = Math.min(1.0, size * OVERSAMPLING / estimate);
+                sample = sampleNatively(dialect, request.getTable(), fraction, size);
+                if (sample != null) {
+                    stats.setMethod("NATIVE");
+                    stats.setSamplingRate(fraction);
+                }
+            }
+            if (sample == null) {
+                if (hasTable && (estimate == null || estimate > size * NATIVE_MIN_FACTOR)) {
+                    // Small tables are read in full by design; anything else is a fallback
+                    logger.info("Falling back to a reservoir sample of {} ({})", request.getTable(),
+                            estimate == null ? "no row estimate" : "native sampling unavailable");
+                }
+                String sql = hasTable ? "SELECT * FROM " + request.getTable() : request.getSql();
+                sample = sampleReservoir(dialect, sql, size);
+                stats.setMethod("RESERVOIR");
+                if (sample.complete) {
+                    estimate = sample.scanned;
+                }
+                if (estimate != null && estimate > 0) {
+                    stats.setSamplingRate(Math.min(1.0, (double) sample.rows.size() / estimate));
+                }
+            }
+            stats.setSampleRows(sample.rows.size());
+            stats.setScannedRows(sample.scanned);
+            stats.setComplete(sample.complete);
+            stats.setEstimatedTotalRows(estimate);
+
+            ExecutionResponse response = ExecutionResponse.success(sample.columns, sample.rows,
+                    System.currentTimeMillis() - startTime);
+            response.setSample(stats);
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ExecutionResponse.failure("Interrupted while waiting to execute");
+        } catch (Exception e) {
+            ExecutionResponse response = ExecutionResponse.failure(e.getMessage());
+            response.setExecutionTimeMs(System.currentTimeMillis() - startTime);
+            return response;
+        }
+    }
+
+    /**
+     * Catalog row estimate, or null if the dialect keeps none or it is unknown
+     */
+    private Long estimateRows(DatabaseDialect dialect, String table) throws InterruptedException {
+        String sql = dialect.getRowEstimateSql();
+        if (sql == null) {
+            return null;
+        }
+        try {
+            return jdbcExecutorService.streamQuery(sql, Map.of("table", table),
+                    jdbcExecutorService.getDefaultLimits(), rs -> {
+                        if (!rs.next()) {
+                            return null;
+                        }
+                        long rows = rs.getLong(1);
+                        return rs.wasNull() || rows < 0 ? null : rows;
+                    });
+        } catch (DataAccessException e) {
+            logger.info("No row estimate for {}: {}", table, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the sample, or null if the engine cannot sample this table or the
+     *         sample came back too small (e.g. a stale estimate)
+     */
+    private Sample sampleNatively(DatabaseDialect dialect, String table, double fraction, int size)
+            throws InterruptedException {
+        String sampledTable = dialect.sampleTable(table, fraction);
+        if (sampledTable == null) {
+            return null;
+        }
+        JdbcExecutorService.ExecutionLimits defaults = jdbcExecutorService.getDefaultLimits();
+        JdbcExecutorService.ExecutionLimits limits = new JdbcExecutorService.ExecutionLimits(size,
+                defaults.timeoutSeconds(), defaults.readOnly());
+        try {
+            Sample sample = jdbcExecutorService.streamQuery("SELECT * FROM " + sampledTable, null, limits, rs -> {
+                Sample read = new Sample();
+                read.columns = columnNames(rs.getMetaData());
+                while (read.rows.size() < size && rs.next()) {
+                    read.rows.add(readRow(rs, read.columns));
+                    read.scanned++;
+                }
+                return read;
+            });
+            if (sample.rows.size() < size / 2) {
+                logger.debug("Native sample of {} returned {} of {} rows, sampling the full result", table,
+                        sample.rows.size(), size);
+                return null;
+            }
+            // The sample covers the table even though the table was not scanned
+            sample.complete = false;
+            return sample;
+        } catch (DataAccessException e) {
+            logger.info("Native sampling not available for {}: {}", table, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Algorithm R: the i-th row replaces a random sample slot with probability
+     * size/i, so every row read has the same chance of being in the sample.
+     * Only rows that enter the sample are converted.
+     */
+    private Sample sampleReservoir(DatabaseDialect dialect, String sql, int size) throws InterruptedException {
+        JdbcExecutorService.ExecutionLimits defaults = jdbcExecutorService.getDefaultLimits();
+        JdbcExecutorService.ExecutionLimits limits = new JdbcExecutorService.ExecutionLimits(0,
+                defaults.timeoutSeconds(), defaults.readOnly());
+        long deadline = System.currentTimeMillis() + timeBudgetMs;
+        return jdbcExecutorService.streamQuery(sql, null, limits, rs -> {
+            Sample sample = new Sample();
+            sample.columns = columnNames(rs.getMetaData());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (true) {
+                // The clock is only checked every 1024 rows
+                if (sample.scanned >= scanLimit
+                        || (sample.scanned & 1023) == 0 && System.currentTimeMillis() > deadline) {
+                    sample.complete = false;
+                    break;
+                }
+                if (!rs.next()) {
+                    break;
+                }
+                sample.scanned++;
+                if (sample.rows.size() < size) {
+                    sample.rows.add(readRow(rs, sample.columns));
+                } else {
+                    long slot = random.nextLong(sample.scanned);
+                    if (slot < size) {
+                        sample.rows.set((int) slot, readRow(rs, sample.columns));
+                    }
+                }
+            }
+            if (!sample.complete && dialect.isEarlyCloseDraining()) {
+                rs.getStatement().cancel();
+            }
+            return sample;
+        });
+    }
+
+    private Map<String, Object> readRow(ResultSet rs, List<String> columns) throws SQLException {
+        Map<String, Object> row = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            row.put(columns.get(i), typeConverterRegistry.convertToSerializable(rs.getObject(i + 1)));
+        }
+        return row;
+    }
+
+    private static List<String> columnNames(ResultSetMetaData metaData) throws SQLException {
+        List<String> names = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            names.add(metaData.getColumnName(i));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,320 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.ProfileReport;
+import com.querymole.backend.model.QueryNode;
+import com.querymole.backend.model.QueryParameter;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Profiles a single query execution with a Java Flight Recorder recording
+ * that runs only for the duration of that execution: the query runs and its
+ * response is serialized on the calling thread while the recording samples
+ * stacks and allocations; the recording is then summarized (hottest methods
+ * and allocation sites of that thread, GC pauses in the window) and kept as a
+ * .jfr file for download in JDK Mission Control.
+ * <p>
+ * JFR is not touched until a profile is requested, so there is no overhead
+ * otherwise. Recordings are JVM-wide, so one profile runs at a time.
+ */
+@Service
+public class ProfilingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfilingService.class);
+
+    private static final Pattern ID = Pattern.compile("[0-9a-f-]{36}");
+    private static final String SUFFIX = ".jfr";
+    private static final int TOP_ENTRIES = 20;
+
+    private final JdbcExecutorService jdbcExecutorService;
+    private final QueryService queryService;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int samplePeriodMs;
+    private final int historySize;
+    private final Path directory;
+    private final ReentrantLock recordingLock = new ReentrantLock();
+
+    /**
+     * Reports by id, oldest first; guarded by itself
+     */
+    private final LinkedHashMap<String, ProfileReport> reports = new LinkedHashMap<>();
+
+    public ProfilingService(JdbcExecutorService jdbcExecutorService, QueryService queryService,
+            ObjectMapper objectMapper,
+            @Value("${querymole.profiling.enabled:true}") boolean enabled,
+            @Value("${querymole.profiling.sample-period-ms:10}") int samplePeriodMs,
+            @Value("${querymole.profiling.history:10}") int historySize,
+            @Value("${querymole.profiling.dir:}") String dir) {
+        this.jdbcExecutorService = jdbcExecutorService;
+        this.queryService = queryService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.samplePeriodMs = samplePeriodMs;
+        this.historySize = historySize;
+        this.directory = dir == null || dir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "querymole-profiles")
+                : Paths.get(dir);
+    }
+
+    /**
+     * Runs a library query (by id) or ad-hoc SQL under a recording.
+     *
+     * @throws IllegalStateException    if profiling is disabled or another
+     *                                  profile is running
+     * @throws NoSuchElementException   if the library query does not exist
+     * @throws IllegalArgumentException if neither a query id nor SQL is given
+     */
+    public ProfileReport profile(String queryId, String sql, Map<String, Object> parameters) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("Profiling is disabled (querymole.profiling.enabled)");
+        }
+        List<QueryParameter> declared = null;
+        JdbcExecutorService.ExecutionLimits limits = jdbcExecutorService.getDefaultLimits();
+        if (queryId != null) {
+            QueryNode node = queryService.getQueryNode(queryId);
+            if (node == null || !"QUERY".equals(node.getType())) {
+                throw new NoSuchElementException("Query not found: " + queryId);
+            }
+            sql = node.getQuery();
+            declared = node.getParameters();
+            limits = jdbcExecutorService.limitsFor(node.getHints());
+        } else if (sql == null || sql.isBlank()) {
+            throw new IllegalArgumentException("Either a query id or SQL is required");
+        }
+        if (!recordingLock.tryLock()) {
+            throw new IllegalStateException("Another execution is being profiled");
+        }
+        try {
+            return record(sql, parameters, declared, limits);
+        } finally {
+            recordingLock.unlock();
+        }
+    }
+
+    public List<ProfileReport> list() {
+        synchronized (reports) {
+            return new ArrayList<>(reports.values());
+        }
+    }
+
+    /**
+     * @throws NoSuchElementException if the profile is unknown
+     */
+    public ProfileReport get(String id) {
+        synchronized (reports) {
+            ProfileReport report = reports.get(id);
+            if (report == null) {
+                throw new NoSuchElementException("Profile not found: " + id);
+            }
+            return report;
+        }
+    }
+
+    /**
+     * Writes the .jfr file of a profile.
+     *
+     * @throws NoSuchElementException if the profile is unknown
+     */
+    public void copyTo(String id, OutputStream out) throws IOException {
+        get(id);
+        Files.copy(file(id), out);
+    }
+
+    public void delete(String id) throws IOException {
+        get(id);
+        synchronized (reports) {
+            reports.remove(id);
+        }
+        Files.deleteIfExists(file(id));
+    }
+
+    private ProfileReport record(String sql, Map<String, Object> parameters, List<QueryParameter> declared,
+            JdbcExecutorService.ExecutionLimits limits) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Files.createDirectories(directory);
+        Path file = file(id);
+        ProfileReport report = new ProfileReport();
+        report.setId(id);
+        report.setSql(sql);
+        report.setCreatedAt(System.currentTimeMillis());
+        long threadId = Thread.currentThread().getId();
+
+        try (Recording recording = new Recording()) {
+            recording.setName("querymole-profile-" + id);
+            recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(samplePeriodMs)).withStackTrace();
+            recording.enable("jdk.ObjectAllocationSample").with("throttle", "1000/s").withStackTrace();
+            recording.enable("jdk.GarbageCollection");
+            recording.start();
+            try {
+                long start = System.nanoTime();
+                ExecutionResponse response = jdbcExecutorService.executeQuery(sql, parameters, declared, limits);
+                long executed = System.nanoTime();
+                objectMapper.writeValue(OutputStream.nullOutputStream(), response);
+                report.setExecutionTimeMs((executed - start) / 1_000_000);
+                report.setSerializationTimeMs((System.nanoTime() - executed) / 1_000_000);
+                report.setSuccess(response.isSuccess());
+                report.setError(response.getError());
+                report.setRowCount(response.getRows() != null ? response.getRows().size() : 0);
+            } finally {
+                recording.stop();
+            }
+            recording.dump(file);
+        }
+        summarize(file, threadId, report);
+        report.setRecordingBytes(Files.size(file));
+
+        List<String> evicted = new ArrayList<>();
+        synchronized (reports) {
+            reports.put(id, report);
+            while (reports.size() > historySize) {
+                String oldest = reports.keySet().iterator().next();
+                reports.remove(oldest);
+                evicted.add(oldest);
+            }
+        }
+        for (String old : evicted) {
+            Files.deleteIfExists(file(old));
+        }
+        logger.info("Profiled execution {} ({} ms, {} samples): {}", id, report.getExecutionTimeMs(),
+                report.getExecutionSamples(), sql.length() > 100 ? sql.substring(0, 100) + "..." : sql);
+        return report;
+    }
+
+    /**
+     * Aggregates the recorded events of the executing thread.
+     */
+    private void summarize(Path file, long threadId, ProfileReport report) throws IOException {
+        Map<String, long[]> methods = new HashMap<>();
+        Map<String, long[]> allocations = new HashMap<>();
+        long samples = 0;
+        int pauses = 0;
+        double pauseTotal = 0;
+        double pauseMax = 0;
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                switch (event.getEventType().getName()) {
+                    case "jdk.ExecutionSample" -> {
+                        if (!isThread(event.getThread("sampledThread"), threadId)) {
+                            continue;
+                        }
+                        samples++;
+                        List<RecordedFrame> frames = frames(event.getStackTrace());
+                        Set<String> seen = new HashSet<>();
+                        for (int i = 0; i < frames.size(); i++) {
+                            String method = describe(frames.get(i).getMethod());
+                            long[] counts = methods.computeIfAbsent(method, k -> new long[2]);
+                            if (i == 0) {
+                                counts[0]++;
+                            }
+                            // Recursive methods count once per sample
+                            if (seen.add(method)) {
+                                counts[1]++;
+                            }
+                        }
+                    }
+                    case "jdk.ObjectAllocationSample" -> {
+                        if (!isThread(event.getThread(), threadId)) {
+                            continue;
+                        }
+                        List<RecordedFrame> frames = frames(event.getStackTrace());
+                        String site = frames.isEmpty() ? "(unknown)" : describe(frames.get(0).getMethod());
+                        String objectClass = event.getClass("objectClass") != null
+                                ? event.getClass("objectClass").getName()
+                                : "(unknown)";
+                        allocations.computeIfAbsent(site + "\n" + objectClass, k -> new long[1])[0] += event
+                                .getLong("weight");
+                    }
+                    case "jdk.GarbageCollection" -> {
+                        double pause = event.getDuration("sumOfPauses").toNanos() / 1e6;
+                        pauses++;
+                        pauseTotal += pause;
+                        pauseMax = Math.max(pauseMax, event.getDuration("longestPause").toNanos() / 1e6);
+                    }
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        List<ProfileReport.MethodSamples> hotMethods = new ArrayList<>();
+        methods.forEach((method, counts) -> hotMethods
+                .add(new ProfileReport.MethodSamples(method, counts[0], counts[1])));
+        hotMethods.sort(Comparator.comparingLong(ProfileReport.MethodSamples::selfSamples)
+                .thenComparingLong(ProfileReport.MethodSamples::totalSamples).reversed());
+        List<ProfileReport.AllocationSite> sites = new ArrayList<>();
+        allocations.forEach((key, weight) -> {
+            int separator = key.indexOf('\n');
+            sites.add(new ProfileReport.AllocationSite(key.substring(0, separator), key.substring(separator + 1),
+                    weight[0]));
+        });
+        sites.sort(Comparator.comparingLong(ProfileReport.AllocationSite::allocatedBytes).reversed());
+
+        report.setExecutionSamples(samples);
+        report.setHotMethods(hotMethods.subList(0, Math.min(TOP_ENTRIES, hotMethods.size())));
+        report.setAllocationSites(sites.subList(0, Math.min(TOP_ENTRIES, sites.size())));
+        report.setGcPauseCount(pauses);
+        report.setGcPauseTotalMs(pauseTotal);
+        report.setGcPauseMaxMs(pauseMax);
+    }
+
+    private static boolean isThread(RecordedThread thread, long threadId) {
+        return thread != null && thread.getJavaThreadId() == threadId;
+    }
+
+    private static List<RecordedFrame> frames(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return List.of();
+        }
+        List<RecordedFrame> frames = new ArrayList<>();
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.isJavaFrame()) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    private static String describe(RecordedMethod method) {
+        return method.getType().getName() + "." + method.getName();
+    }
+
+    private Path file(String id) {
+        // Ids become file names; reject anything that is not a UUID
+        if (id == null || !ID.matcher(id).matches()) {
+            throw new NoSuchElementException("Profile not found: " + id);
+        }
+        return directory.resolve(id + SUFFIX);
+    }
+}
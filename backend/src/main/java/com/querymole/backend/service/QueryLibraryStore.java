@@ -0,0 +1,335 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.model.LibraryEdit;
+import com.querymole.backend.model.QueryNode;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable storage for the query library: an append-only journal of
+ * {@link LibraryEdit}s plus a periodically compacted snapshot of the whole tree.
+ * <p>
+ * The journal is split into segments named after the sequence number of their
+ * first edit. Compaction starts a new segment, writes the snapshot of
+ * everything before it in the background and then deletes the covered
+ * segments, so appends never wait for a snapshot to be written. At startup the
+ * snapshot is read through a memory-mapped buffer and only the journal tail
+ * after it is replayed.
+ * <p>
+ * Snapshot layout: magic, format version, last sequence number, then the root
+ * nodes as JSON. Journal record layout: payload length, CRC32 of the payload,
+ * then the edit as JSON. A torn record at the end of the journal (e.g. after a
+ * crash) is discarded.
+ */
+@Service
+public class QueryLibraryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryLibraryStore.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x514D4C53; // "QMLS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String SNAPSHOT_FILE = "library.snapshot";
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final TypeReference<List<QueryNode>> NODE_LIST = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int compactAfter;
+    private final boolean fsync;
+
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "library-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FileChannel journal;
+    private long nextSeq = 1;
+    private int editsSinceSnapshot;
+
+    public QueryLibraryStore(ObjectMapper objectMapper,
+            @Value("${querymole.library.dir:data/library}") String directory,
+            @Value("${querymole.library.compact-after:1000}") int compactAfter,
+            @Value("${querymole.library.fsync:true}") boolean fsync) {
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+        this.compactAfter = compactAfter;
+        this.fsync = fsync;
+    }
+
+    /**
+     * The persisted library: the snapshot roots (null if no snapshot exists yet)
+     * and the journaled edits made after it, in sequence order.
+     */
+    public record StoredLibrary(List<QueryNode> roots, List<LibraryEdit> edits) {
+        public boolean isEmpty() {
+            return roots == null && edits.isEmpty();
+        }
+    }
+
+    /**
+     * Loads the snapshot and the journal tail, then opens a fresh journal
+     * segment for new edits.
+     */
+    public synchronized StoredLibrary load() {
+        try {
+            Files.createDirectories(directory);
+            long snapshotSeq = 0;
+            List<QueryNode> roots = null;
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            if (Files.exists(snapshot)) {
+                try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    if (buffer.remaining() < SNAPSHOT_HEADER_BYTES || buffer.getInt() != SNAPSHOT_MAGIC
+                            || buffer.getInt() != SNAPSHOT_VERSION) {
+                        throw new IOException("Unrecognized snapshot file: " + snapshot);
+                    }
+                    snapshotSeq = buffer.getLong();
+                    roots = objectMapper.readValue(new ByteBufferInputStream(buffer), NODE_LIST);
+                }
+            }
+
+            List<LibraryEdit> edits = new ArrayList<>();
+            List<Path> segments = listSegments();
+            for (int i = 0; i < segments.size(); i++) {
+                readSegment(segments.get(i), i == segments.size() - 1, snapshotSeq, edits);
+            }
+
+            long lastSeq = edits.isEmpty() ? snapshotSeq : edits.get(edits.size() - 1).getSeq();
+            this.nextSeq = lastSeq + 1;
+            this.editsSinceSnapshot = edits.size();
+            openSegment();
+            logger.info("Loaded query library: snapshot at seq {}, {} journaled edits replayed", snapshotSeq,
+                    edits.size());
+            return new StoredLibrary(roots, edits);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load query library from " + directory.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Appends an edit to the journal and assigns its sequence number.
+     */
+    public synchronized void append(LibraryEdit edit) {
+        edit.setSeq(nextSeq);
+        byte[] payload = objectMapper.writeValueAsBytes(edit);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        try {
+            while (record.hasRemaining()) {
+                journal.write(record);
+            }
+            if (fsync) {
+                journal.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write query library journal", e);
+        }
+        nextSeq++;
+        editsSinceSnapshot++;
+    }
+
+    public synchronized boolean needsCompaction() {
+        return editsSinceSnapshot >= compactAfter;
+    }
+
+    /**
+     * Starts compaction. Must be called while the caller holds the library
+     * write lock so that {@code roots} matches every edit appended so far: the
+     * tree is serialized here and a new journal segment is started, the snapshot
+     * file itself is written in the background.
+     */
+    public synchronized void compact(List<QueryNode> roots) {
+        long snapshotSeq = nextSeq - 1;
+        byte[] json = objectMapper.writeValueAsBytes(roots);
+        try {
+            openSegment();
+        } catch (IOException e) {
+            logger.error("Failed to start a new library journal segment, skipping compaction", e);
+            return;
+        }
+        editsSinceSnapshot = 0;
+        compactionExecutor.submit(() -> writeSnapshot(json, snapshotSeq));
+    }
+
+    /**
+     * Writes a snapshot synchronously, e.g. right after seeding an empty
+     * library.
+     */
+    public synchronized void writeSnapshotNow(List<QueryNode> roots) {
+        long snapshotSeq = nextSeq - 1;
+        writeSnapshot(objectMapper.writeValueAsBytes(roots), snapshotSeq);
+        editsSinceSnapshot = 0;
+    }
+
+    @PreDestroy
+    public void close() throws Exception {
+        compactionExecutor.shutdown();
+        compactionExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        synchronized (this) {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    private void writeSnapshot(byte[] json, long snapshotSeq) {
+        Path target = directory.resolve(SNAPSHOT_FILE);
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES);
+                header.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(snapshotSeq).flip();
+                ByteBuffer body = ByteBuffer.wrap(json);
+                while (header.hasRemaining() || body.hasRemaining()) {
+                    channel.write(new ByteBuffer[] { header, body });
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            deleteCoveredSegments(snapshotSeq);
+            logger.debug("Wrote query library snapshot at seq {} ({} bytes)", snapshotSeq, json.length);
+        } catch (IOException e) {
+            // The journal still holds every edit, so nothing is lost
+            logger.error("Failed to write query library snapshot", e);
+        }
+    }
+
+    /**
+     * Deletes journal segments whose edits are all contained in the snapshot. A
+     * segment is covered when the next segment starts at or before
+     * snapshotSeq + 1.
+     */
+    private synchronized void deleteCoveredSegments(long snapshotSeq) throws IOException {
+        List<Path> segments = listSegments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (segmentStart(segments.get(i + 1)) <= snapshotSeq + 1) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    private void openSegment() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSeq, SEGMENT_SUFFIX));
+        journal = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void readSegment(Path segment, boolean last, long afterSeq, List<LibraryEdit> edits)
+            throws IOException {
+        long validLength = 0;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                LibraryEdit edit = objectMapper.readValue(payload, LibraryEdit.class);
+                if (edit.getSeq() > afterSeq) {
+                    edits.add(edit);
+                }
+                validLength = buffer.position();
+            }
+        }
+        if (validLength < Files.size(segment)) {
+            if (!last) {
+                throw new IOException("Corrupt query library journal segment: " + segment);
+            }
+            logger.warn("Discarding torn record at the end of {}", segment);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        // Zero-padded start sequence numbers sort lexicographically
+        segments.sort(null);
+        return segments;
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Reads a (memory-mapped) buffer without copying it to the heap first.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
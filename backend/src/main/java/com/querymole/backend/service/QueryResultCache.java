@@ -0,0 +1,131 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.LobValue;
+import com.querymole.backend.util.ResultSizeEstimator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Results of library queries that declare a cache TTL, keyed by target, SQL,
+ * parameter values and execution limits, so editing a query or switching the
+ * connection never serves an old result. Least recently used entries are
+ * evicted beyond the entry limit; large, truncated and failed results are
+ * not cached. Cached rows hold a retained reservation of the result memory
+ * governor until they are dropped, and a result the governor refuses is not
+ * cached.
+ */
+@Service
+public class QueryResultCache {
+
+    private record Entry(ExecutionResponse response, long expiresAt, ResultMemoryGovernor.Reservation reservation) {
+    }
+
+    private final ResultMemoryGovernor memoryGovernor;
+
+    private final int maxEntries;
+    private final int maxRows;
+
+    /**
+     * Guarded by itself
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public QueryResultCache(ResultMemoryGovernor memoryGovernor,
+            @Value("${querymole.cache.max-entries:200}") int maxEntries,
+            @Value("${querymole.cache.max-rows:10000}") int maxRows) {
+        this.memoryGovernor = memoryGovernor;
+        this.maxEntries = maxEntries;
+        this.maxRows = maxRows;
+    }
+
+    public static String key(String target, String sql, Map<String, Object> values,
+            JdbcExecutorService.ExecutionLimits limits) {
+        String parameters = values != null ? new TreeMap<>(values).toString() : "";
+        return target + '\n' + limits + '\n' + parameters + '\n' + sql;
+    }
+
+    /**
+     * A copy of the cached result, marked as cached, or null
+     */
+    public ExecutionResponse get(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt() <= System.currentTimeMillis()) {
+                entries.remove(key);
+                entry.reservation().close();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        ExecutionResponse cached = entry.response();
+        ExecutionResponse copy = ExecutionResponse.success(cached.getColumns(), cached.getRows(),
+                cached.getExecutionTimeMs());
+        copy.setCached(true);
+        return copy;
+    }
+
+    public void put(String key, ExecutionResponse response, int ttlSeconds) {
+        if (!isCacheable(response)) {
+            return;
+        }
+        ResultMemoryGovernor.Reservation reservation = memoryGovernor.retain();
+        if (!reservation.tryGrow(ResultSizeEstimator.estimateValue(response.getRows()))) {
+            reservation.close();
+            return;
+        }
+        ExecutionResponse stored = ExecutionResponse.success(response.getColumns(),
+                Collections.unmodifiableList(response.getRows()), response.getExecutionTimeMs());
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(stored, now + ttlSeconds * 1000L, reservation));
+            if (previous != null) {
+                previous.reservation().close();
+            }
+            // Expired entries still hold memory until dropped
+            var iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.expiresAt() <= now || entries.size() > maxEntries) {
+                    iterator.remove();
+                    entry.reservation().close();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.values().forEach(entry -> entry.reservation().close());
+            entries.clear();
+        }
+    }
+
+    /**
+     * Large values refer to spilled files that expire on their own schedule,
+     * so results holding them are not cached either
+     */
+    private boolean isCacheable(ExecutionResponse response) {
+        List<Map<String, Object>> rows = response.getRows();
+        if (!response.isSuccess() || response.getTruncated() != null || rows == null || rows.size() > maxRows) {
+            return false;
+        }
+        for (Map<String, Object> row : rows) {
+            for (Object value : row.values()) {
+                if (value instanceof LobValue) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
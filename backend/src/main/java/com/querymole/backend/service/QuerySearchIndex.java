@@ -0,0 +1,198 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.model.QueryNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over query library nodes. Terms come from the node name, the
+ * SQL comments and the remaining SQL text, weighted in that order. Terms are
+ * kept sorted so the last word of a search can also match as a prefix while the
+ * user is still typing.
+ * <p>
+ * Updates are expected from a single writer (QueryService serializes them);
+ * searches may run concurrently with updates.
+ */
+class QuerySearchIndex {
+
+    private static final double NAME_WEIGHT = 3.0;
+    private static final double COMMENT_WEIGHT = 2.0;
+    private static final double SQL_WEIGHT = 1.0;
+
+    /**
+     * Prefix matches count for less than exact matches
+     */
+    private static final double PREFIX_MATCH_FACTOR = 0.5;
+
+    /**
+     * Upper bound on index terms a single prefix may expand to
+     */
+    private static final int MAX_PREFIX_EXPANSION = 64;
+
+    private static final Pattern COMMENT = Pattern.compile("--[^\\n\\r]*|/\\*[\\s\\S]*?\\*/");
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}_]+");
+
+    /**
+     * term -> (node id -> weighted term frequency)
+     */
+    private final NavigableMap<String, Map<String, Double>> postings = new ConcurrentSkipListMap<>();
+
+    /**
+     * node id -> indexed terms, used to remove a node's postings
+     */
+    private final Map<String, Set<String>> termsByNode = new ConcurrentHashMap<>();
+
+    /**
+     * (Re)indexes a single node, replacing any previous postings for it.
+     */
+    void index(QueryNode node) {
+        remove(node.getId());
+
+        Map<String, Double> weights = new HashMap<>();
+        addTerms(weights, node.getName(), NAME_WEIGHT);
+        String sql = node.getQuery();
+        if (sql != null) {
+            Matcher comments = COMMENT.matcher(sql);
+            StringBuilder commentText = new StringBuilder();
+            while (comments.find()) {
+                commentText.append(comments.group()).append(' ');
+            }
+            addTerms(weights, commentText.toString(), COMMENT_WEIGHT);
+            addTerms(weights, COMMENT.matcher(sql).replaceAll(" "), SQL_WEIGHT);
+        }
+
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new ConcurrentHashMap<>())
+                    .put(node.getId(), entry.getValue());
+        }
+        termsByNode.put(node.getId(), weights.keySet());
+    }
+
+    void remove(String nodeId) {
+        Set<String> terms = termsByNode.remove(nodeId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            postings.computeIfPresent(term, (key, nodes) -> {
+                nodes.remove(nodeId);
+                return nodes.isEmpty() ? null : nodes;
+            });
+        }
+    }
+
+    /**
+     * Returns node ids matching every search term, ranked by TF-IDF score. The
+     * last term also matches as a prefix.
+     */
+    List<Map.Entry<String, Double>> search(String text, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(text)));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        int documentCount = Math.max(1, termsByNode.size());
+        Map<String, Double> scores = null;
+        for (int i = 0; i < terms.size(); i++) {
+            Map<String, Double> termScores = scoreTerm(terms.get(i), i == terms.size() - 1, documentCount);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                // Every term must match
+                Map<String, Double> combined = new HashMap<>();
+                for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                    Double score = termScores.get(entry.getKey());
+                    if (score != null) {
+                        combined.put(entry.getKey(), entry.getValue() + score);
+                    }
+                }
+                scores = combined;
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+        return ranked.size() > limit ? ranked.subList(0, limit) : ranked;
+    }
+
+    private Map<String, Double> scoreTerm(String term, boolean allowPrefix, int documentCount) {
+        Map<String, Double> scores = new HashMap<>();
+        addScores(scores, term, postings.get(term), 1.0, documentCount);
+        if (allowPrefix) {
+            int expanded = 0;
+            for (Map.Entry<String, Map<String, Double>> entry : postings.tailMap(term, false).entrySet()) {
+                if (!entry.getKey().startsWith(term) || expanded++ >= MAX_PREFIX_EXPANSION) {
+                    break;
+                }
+                addScores(scores, entry.getKey(), entry.getValue(), PREFIX_MATCH_FACTOR, documentCount);
+            }
+        }
+        return scores;
+    }
+
+    private void addScores(Map<String, Double> scores, String term, Map<String, Double> nodes, double factor,
+            int documentCount) {
+        if (nodes == null || nodes.isEmpty()) {
+            return;
+        }
+        double idf = Math.log(1.0 + (double) documentCount / nodes.size());
+        for (Map.Entry<String, Double> entry : nodes.entrySet()) {
+            double score = entry.getValue() * idf * factor;
+            // A node matched by several expansions keeps its best one
+            scores.merge(entry.getKey(), score, Math::max);
+        }
+    }
+
+    /**
+     * Adds a field's terms with a log-damped frequency so long SQL bodies do not
+     * outrank a name match.
+     */
+    private static void addTerms(Map<String, Double> weights, String text, double weight) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String term : tokenize(text)) {
+            counts.merge(term, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            weights.merge(entry.getKey(), weight * (1.0 + Math.log(entry.getValue())), Double::sum);
+        }
+    }
+
+    /**
+     * Lower-cased word tokens in text order. Identifiers such as
+     * pg_stat_activity are indexed both whole and by their underscore-separated
+     * parts.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        Matcher matcher = TOKEN.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            String token = matcher.group();
+            tokens.add(token);
+            if (token.indexOf('_') >= 0) {
+                for (String part : token.split("_+")) {
+                    if (!part.isEmpty()) {
+                        tokens.add(part);
+                    }
+                }
+            }
+        }
+        return tokens;
+    }
+}
@@ -1,19 +1,123 @@
 package com.querymole.backend.service;
 
+import com.querymole.backend.dto.QueryFolderListing;
+import com.querymole.backend.dto.QueryNodeHeader;
+import com.querymole.backend.dto.QuerySearchResult;
+import com.querymole.backend.model.ExecutionHints;
+import com.querymole.backend.model.LibraryEdit;
 import com.querymole.backend.model.QueryNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Holds the query library tree. Nodes are indexed by id (and by parent id) for
+ * O(1) lookups, and by text for search; both indexes are maintained
+ * incrementally by the mutating methods.
+ * <p>
+ * Mutations are serialized on this service and journaled to the
+ * {@link QueryLibraryStore}; reads are lock-free because child lists are
+ * copy-on-write.
+ * <p>
+ * Every subtree has a version hash computed from its content (Merkle style),
+ * used as ETag by the lazy tree endpoints. Versions are cached until the next
+ * mutation; unchanged subtrees hash to the same version again.
+ * <p>
+ * Loaded eagerly even with lazy initialization: the library tree is what the
+ * first request asks for.
+ */
 @Service
+@Lazy(false)
 public class QueryService {
 
-    private List<QueryNode> rootNodes = new ArrayList<>();
+    private static final Logger logger = LoggerFactory.getLogger(QueryService.class);
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String ROOT_VERSION_KEY = "";
+
+    private final List<QueryNode> rootNodes = new CopyOnWriteArrayList<>();
+
+    private final Map<String, QueryNode> nodesById = new ConcurrentHashMap<>();
+
+    /**
+     * node id -> parent folder id; top-level nodes have no entry
+     */
+    private final Map<String, String> parentIds = new ConcurrentHashMap<>();
+
+    private final QuerySearchIndex searchIndex = new QuerySearchIndex();
+
+    /**
+     * node id (or ROOT_VERSION_KEY) -> subtree version; guarded by this
+     * service, cleared on every mutation
+     */
+    private final Map<String, Long> versions = new HashMap<>();
+
+    private final QueryLibraryStore store;
+
+    /**
+     * Set while the journal is replayed at startup so replayed edits are not
+     * journaled again
+     */
+    private boolean replaying;
+
+    public QueryService(QueryLibraryStore store) {
+        this.store = store;
+    }
 
     @PostConstruct
-    public void init() {
+    public synchronized void init() {
+        QueryLibraryStore.StoredLibrary library = store.load();
+        replaying = true;
+        try {
+            if (library.isEmpty()) {
+                seedDefaultLibrary();
+                store.writeSnapshotNow(rootNodes);
+                return;
+            }
+            if (library.roots() != null) {
+                importNodes(null, library.roots());
+            }
+            for (LibraryEdit edit : library.edits()) {
+                try {
+                    apply(edit);
+                } catch (RuntimeException e) {
+                    logger.warn("Skipping query library edit {} ({}): {}", edit.getSeq(), edit.getOp(),
+                            e.getMessage());
+                }
+            }
+        } finally {
+            replaying = false;
+        }
+    }
+
+    private void apply(LibraryEdit edit) {
+        switch (edit.getOp()) {
+            case "ADD" -> addNode(edit.getParentId(), edit.getNode());
+            case "IMPORT" -> importNodes(edit.getParentId(), edit.getNodes());
+            case "UPDATE" -> updateNode(edit.getId(), edit.getNode());
+            case "MOVE" -> moveNode(edit.getId(), edit.getParentId(), edit.getPosition());
+            case "DELETE" -> deleteNode(edit.getId());
+            default -> throw new IllegalArgumentException("Unknown edit: " + edit.getOp());
+        }
+    }
+
+    private void seedDefaultLibrary() {
         // Postgres Diagnostics
         QueryNode pgFolder = new QueryNode(UUID.randomUUID().toString(), "PostgreSQL Diagnostics", "FOLDER", null);
         
@@ -23,36 +127,369 @@ public class QueryService {
         pgFolder.addChild(new QueryNode(UUID.randomUUID().toString(), "Blocked Queries", "QUERY", 
             "SELECT blocked_locks.pid AS blocked_pid, blocked_activity.usename AS blocked_user, blocking_locks.pid AS blocking_pid, blocking_activity.usename AS blocking_user, blocked_activity.query AS blocked_statement, blocking_activity.query AS current_statement_in_blocking_process FROM pg_catalog.pg_locks blocked_locks JOIN pg_catalog.pg_stat_activity blocked_activity ON blocked_activity.pid = blocked_locks.pid JOIN pg_catalog.pg_locks blocking_locks ON blocking_locks.locktype = blocked_locks.locktype AND blocking_locks.database IS NOT DISTINCT FROM blocked_locks.database AND blocking_locks.relation IS NOT DISTINCT FROM blocked_locks.relation AND blocking_locks.page IS NOT DISTINCT FROM blocked_locks.page AND blocking_locks.tuple IS NOT DISTINCT FROM blocked_locks.tuple AND blocking_locks.virtualxid IS NOT DISTINCT FROM blocked_locks.virtualxid AND blocking_locks.transactionid IS NOT DISTINCT FROM blocked_locks.transactionid AND blocking_locks.classid IS NOT DISTINCT FROM blocked_locks.classid AND blocking_locks.objid IS NOT DISTINCT FROM blocked_locks.objid AND blocking_locks.objsubid IS NOT DISTINCT FROM blocked_locks.objsubid AND blocking_locks.pid != blocked_locks.pid JOIN pg_catalog.pg_stat_activity blocking_activity ON blocking_activity.pid = blocking_locks.pid WHERE NOT blocked_locks.granted;"));
 
-        pgFolder.addChild(new QueryNode(UUID.randomUUID().toString(), "Long Running Queries (>1s)", "QUERY", 
-            "SELECT pid, now() - pg_stat_activity.query_start AS duration, query FROM pg_stat_activity WHERE (now() - pg_stat_activity.query_start) > interval '1 second';"));
+        pgFolder.addChild(new QueryNode(UUID.randomUUID().toString(), "Long Running Queries", "QUERY", 
+            "SELECT pid, now() - pg_stat_activity.query_start AS duration, query FROM pg_stat_activity WHERE (now() - pg_stat_activity.query_start) > make_interval(secs => :min_duration);")
+            .withParameter("min_duration", "DECIMAL", "1", "Minimum running time in seconds"));
+
+        pgFolder.addChild(new QueryNode(UUID.randomUUID().toString(), "Session Details", "QUERY", 
+            "SELECT * FROM pg_stat_activity WHERE pid = :pid")
+            .withParameter("pid", "INTEGER", null, "Backend process id"));
 
         // H2 Diagnostics (Keeping for reference or fallback)
         QueryNode h2Folder = new QueryNode(UUID.randomUUID().toString(), "H2 Diagnostics", "FOLDER", null);
         h2Folder.addChild(new QueryNode(UUID.randomUUID().toString(), "Sessions", "QUERY", 
             "SELECT * FROM information_schema.sessions"));
 
-        rootNodes.add(pgFolder);
-        rootNodes.add(h2Folder);
+        addNode(null, pgFolder);
+        addNode(null, h2Folder);
     }
 
     public List<QueryNode> getQueryTree() {
         return rootNodes;
     }
     
+    /**
+     * Headers of the direct children of a folder, or of the top-level nodes
+     * when folderId is null.
+     *
+     * @throws NoSuchElementException   if the folder does not exist
+     * @throws IllegalArgumentException if the node is not a folder
+     */
+    public synchronized QueryFolderListing getFolderListing(String folderId) {
+        List<QueryNode> children = childrenOf(folderId);
+        List<QueryNodeHeader> headers = new ArrayList<>(children.size());
+        for (QueryNode child : children) {
+            headers.add(header(child));
+        }
+        return new QueryFolderListing(folderId, getVersion(folderId), headers);
+    }
+
+    /**
+     * A single node with its SQL, parameters, chart settings and execution
+     * hints but without its children.
+     *
+     * @throws NoSuchElementException if the node does not exist
+     */
+    public synchronized QueryNodeHeader getNodeDetail(String id) {
+        QueryNode node = requireNode(id);
+        QueryNodeHeader detail = header(node);
+        detail.setQuery(node.getQuery());
+        detail.setParameters(node.getParameters());
+        detail.setChartConfig(node.getChartConfig());
+        detail.setHints(node.getHints());
+        return detail;
+    }
+
+    /**
+     * Version of a node's subtree, or of the whole tree when id is null.
+     *
+     * @throws NoSuchElementException if the node does not exist
+     */
+    public synchronized String getVersion(String id) {
+        long version = id == null ? rootVersion() : subtreeVersion(requireNode(id));
+        return Long.toHexString(version);
+    }
+
+    private QueryNodeHeader header(QueryNode node) {
+        QueryNodeHeader header = new QueryNodeHeader();
+        header.setId(node.getId());
+        header.setName(node.getName());
+        header.setType(node.getType());
+        if ("FOLDER".equals(node.getType())) {
+            header.setChildCount(node.getChildren().size());
+        }
+        header.setVersion(Long.toHexString(subtreeVersion(node)));
+        return header;
+    }
+
+    private long rootVersion() {
+        Long cached = versions.get(ROOT_VERSION_KEY);
+        if (cached != null) {
+            return cached;
+        }
+        long hash = FNV_OFFSET;
+        for (QueryNode node : rootNodes) {
+            hash = mix(hash, subtreeVersion(node));
+        }
+        versions.put(ROOT_VERSION_KEY, hash);
+        return hash;
+    }
+
+    /**
+     * 64-bit FNV-1a over the node's own fields, followed by the versions of
+     * its children in order.
+     */
+    private long subtreeVersion(QueryNode node) {
+        Long cached = versions.get(node.getId());
+        if (cached != null) {
+            return cached;
+        }
+        long hash = FNV_OFFSET;
+        hash = mix(hash, node.getId());
+        hash = mix(hash, node.getName());
+        hash = mix(hash, node.getType());
+        hash = mix(hash, node.getQuery());
+        hash = mix(hash, Objects.toString(node.getParameters(), null));
+        hash = mix(hash, Objects.toString(node.getChartConfig(), null));
+        hash = mix(hash, Objects.toString(node.getHints(), null));
+        for (QueryNode child : node.getChildren()) {
+            hash = mix(hash, subtreeVersion(child));
+        }
+        versions.put(node.getId(), hash);
+        return hash;
+    }
+
+    private static long mix(long hash, String value) {
+        if (value == null) {
+            return mix(hash, 0L);
+        }
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        // Separator, so adjacent fields cannot run into each other
+        hash ^= 0x1f;
+        return hash * FNV_PRIME;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
     public String getQuerySql(String queryId) {
-        return findQueryById(rootNodes, queryId);
+        QueryNode node = nodesById.get(queryId);
+        return node != null && "QUERY".equals(node.getType()) ? node.getQuery() : null;
     }
 
-    private String findQueryById(List<QueryNode> nodes, String id) {
+    public QueryNode getQueryNode(String queryId) {
+        return nodesById.get(queryId);
+    }
+
+    /**
+     * Ranked full-text search over node names, SQL comments and SQL text.
+     */
+    public List<QuerySearchResult> search(String text, int limit) {
+        List<QuerySearchResult> results = new ArrayList<>();
+        for (Map.Entry<String, Double> hit : searchIndex.search(text, limit)) {
+            QueryNode node = nodesById.get(hit.getKey());
+            if (node != null) {
+                results.add(new QuerySearchResult(node.getId(), node.getName(), node.getType(), getPath(node.getId()),
+                        hit.getValue()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Adds a node (with its subtree) under the given folder, or at the top level
+     * when parentId is null. Missing ids are generated.
+     */
+    public synchronized QueryNode addNode(String parentId, QueryNode node) {
+        List<QueryNode> siblings = childrenOf(parentId);
+        prepareSubtree(node, new HashSet<>());
+        siblings.add(node);
+        registerSubtree(parentId, node);
+        LibraryEdit edit = new LibraryEdit("ADD");
+        edit.setParentId(parentId);
+        edit.setNode(node);
+        journal(edit);
+        return node;
+    }
+
+    /**
+     * Adds several nodes, e.g. a library imported from JSON, under one folder.
+     */
+    public synchronized List<QueryNode> importNodes(String parentId, List<QueryNode> nodes) {
+        List<QueryNode> siblings = childrenOf(parentId);
+        // Nodes are registered only once all are prepared, so ids repeated
+        // within the import must be caught here
+        Set<String> batchIds = new HashSet<>();
+        for (QueryNode node : nodes) {
+            prepareSubtree(node, batchIds);
+        }
+        siblings.addAll(nodes);
         for (QueryNode node : nodes) {
-            if (node.getId().equals(id) && "QUERY".equals(node.getType())) {
-                return node.getQuery();
+            registerSubtree(parentId, node);
+        }
+        LibraryEdit edit = new LibraryEdit("IMPORT");
+        edit.setParentId(parentId);
+        edit.setNodes(nodes);
+        journal(edit);
+        return nodes;
+    }
+
+    /**
+     * Updates the name, SQL, parameters, execution hints and chart settings of
+     * a node. Children are left untouched.
+     */
+    public synchronized QueryNode updateNode(String id, QueryNode changes) {
+        QueryNode node = requireNode(id);
+        checkHints(changes.getHints());
+        node.setName(changes.getName());
+        if ("QUERY".equals(node.getType())) {
+            node.setQuery(changes.getQuery());
+            node.setParameters(changes.getParameters());
+            node.setHints(changes.getHints());
+        }
+        node.setChartConfig(changes.getChartConfig());
+        searchIndex.index(node);
+        LibraryEdit edit = new LibraryEdit("UPDATE");
+        edit.setId(id);
+        edit.setNode(changes);
+        journal(edit);
+        return node;
+    }
+
+    /**
+     * Moves a node to another folder (or the top level when parentId is null),
+     * optionally at a given position.
+     */
+    public synchronized QueryNode moveNode(String id, String parentId, Integer position) {
+        QueryNode node = requireNode(id);
+        for (String ancestor = parentId; ancestor != null; ancestor = parentIds.get(ancestor)) {
+            if (ancestor.equals(id)) {
+                throw new IllegalArgumentException("Cannot move a folder into itself");
             }
-            if (node.getChildren() != null) {
-                String result = findQueryById(node.getChildren(), id);
-                if (result != null) return result;
+        }
+        List<QueryNode> target = childrenOf(parentId);
+        childrenOf(parentIds.get(id)).remove(node);
+        int index = position == null ? target.size() : Math.max(0, Math.min(position, target.size()));
+        target.add(index, node);
+        if (parentId == null) {
+            parentIds.remove(id);
+        } else {
+            parentIds.put(id, parentId);
+        }
+        LibraryEdit edit = new LibraryEdit("MOVE");
+        edit.setId(id);
+        edit.setParentId(parentId);
+        edit.setPosition(position);
+        journal(edit);
+        return node;
+    }
+
+    /**
+     * Deletes a node and its whole subtree.
+     */
+    public synchronized void deleteNode(String id) {
+        QueryNode node = requireNode(id);
+        childrenOf(parentIds.get(id)).remove(node);
+        unregisterSubtree(node);
+        LibraryEdit edit = new LibraryEdit("DELETE");
+        edit.setId(id);
+        journal(edit);
+    }
+
+    /**
+     * Persists an applied edit and compacts the journal once enough edits have
+     * accumulated. Called with the service lock held, so the compaction
+     * snapshot is consistent with the journal. Also drops the cached subtree
+     * versions, which the edit may have changed.
+     */
+    private void journal(LibraryEdit edit) {
+        versions.clear();
+        if (replaying) {
+            return;
+        }
+        store.append(edit);
+        if (store.needsCompaction()) {
+            store.compact(rootNodes);
+        }
+    }
+
+    /**
+     * Folder names from the top level down to the node's parent, separated by
+     * " / ".
+     */
+    private String getPath(String id) {
+        List<String> names = new ArrayList<>();
+        for (String parent = parentIds.get(id); parent != null; parent = parentIds.get(parent)) {
+            QueryNode folder = nodesById.get(parent);
+            if (folder == null) {
+                break;
             }
+            names.add(folder.getName());
+        }
+        Collections.reverse(names);
+        return String.join(" / ", names);
+    }
+
+    private QueryNode requireNode(String id) {
+        QueryNode node = nodesById.get(id);
+        if (node == null) {
+            throw new NoSuchElementException("Node not found: " + id);
+        }
+        return node;
+    }
+
+    private List<QueryNode> childrenOf(String parentId) {
+        if (parentId == null) {
+            return rootNodes;
+        }
+        QueryNode parent = requireNode(parentId);
+        if (!"FOLDER".equals(parent.getType())) {
+            throw new IllegalArgumentException("Parent is not a folder: " + parentId);
+        }
+        return parent.getChildren();
+    }
+
+    /**
+     * Assigns missing ids, and new ones to ids already in use by the library
+     * or earlier in the same batch, and replaces deserialized child lists with
+     * copy-on-write ones.
+     */
+    private void prepareSubtree(QueryNode node, Set<String> batchIds) {
+        checkHints(node.getHints());
+        if (node.getId() == null || node.getId().isEmpty() || nodesById.containsKey(node.getId())
+                || batchIds.contains(node.getId())) {
+            node.setId(UUID.randomUUID().toString());
+        }
+        batchIds.add(node.getId());
+        List<QueryNode> children = node.getChildren() != null ? node.getChildren() : List.of();
+        node.setChildren(new CopyOnWriteArrayList<>(children));
+        for (QueryNode child : node.getChildren()) {
+            prepareSubtree(child, batchIds);
+        }
+    }
+
+    private static void checkHints(ExecutionHints hints) {
+        if (hints == null) {
+            return;
+        }
+        for (Integer value : new Integer[] { hints.getMaxRows(), hints.getFetchSize(),
+                hints.getQueryTimeoutSeconds(), hints.getCacheTtlSeconds() }) {
+            if (value != null && value < 0) {
+                throw new IllegalArgumentException("Execution hints must not be negative");
+            }
+        }
+        String mode = hints.getResultMode();
+        if (mode != null && !mode.equalsIgnoreCase(ExecutionHints.STREAMING)
+                && !mode.equalsIgnoreCase(ExecutionHints.BUFFERED)) {
+            throw new IllegalArgumentException("Result mode must be STREAMING or BUFFERED: " + mode);
+        }
+    }
+
+    private void registerSubtree(String parentId, QueryNode node) {
+        nodesById.put(node.getId(), node);
+        if (parentId != null) {
+            parentIds.put(node.getId(), parentId);
+        }
+        searchIndex.index(node);
+        for (QueryNode child : node.getChildren()) {
+            registerSubtree(node.getId(), child);
+        }
+    }
+
+    private void unregisterSubtree(QueryNode node) {
+        nodesById.remove(node.getId());
+        parentIds.remove(node.getId());
+        searchIndex.remove(node.getId());
+        for (QueryNode child : node.getChildren()) {
+            unregisterSubtree(child);
         }
-        return null;
     }
 }
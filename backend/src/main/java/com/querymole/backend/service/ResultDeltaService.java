@@ -0,0 +1,251 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.LobValue;
+import com.querymole.backend.dto.ResultDelta;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Turns repeated executions of the same query into deltas. For each tracked
+ * result only a row key -> 64-bit row hash map is retained (never the rows
+ * themselves), and snapshots are evicted least-recently-used once the number of
+ * snapshots, the total number of tracked rows or their age exceeds the
+ * configured bounds. An evicted or unknown token simply yields a full result.
+ * Tokens are bound to the query that produced them: a token presented with a
+ * different target, SQL or parameter values is rejected.
+ */
+@Service
+public class ResultDeltaService {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final char KEY_SEPARATOR = '\u001f';
+
+    private final int maxSnapshots;
+    private final long maxTrackedRows;
+    private final long ttlMillis;
+
+    /**
+     * token -> snapshot, in access order for LRU eviction
+     */
+    private final LinkedHashMap<String, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    private long trackedRows;
+
+    public ResultDeltaService(@Value("${querymole.delta.max-snapshots:256}") int maxSnapshots,
+            @Value("${querymole.delta.max-tracked-rows:2000000}") long maxTrackedRows,
+            @Value("${querymole.delta.ttl-seconds:600}") long ttlSeconds) {
+        this.maxSnapshots = maxSnapshots;
+        this.maxTrackedRows = maxTrackedRows;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * @param fingerprint identifies the target, SQL and parameter values
+     * @param truncated   whether the rows were only a prefix of the result
+     */
+    private record Snapshot(RowIndex index, String fingerprint, boolean truncated, long createdAt) {
+    }
+
+    /**
+     * Identity of an execution for matching result tokens: target, SQL and
+     * parameter values.
+     */
+    public static String fingerprint(String target, String sql, Map<String, Object> values) {
+        String parameters = values != null ? new TreeMap<>(values).toString() : "";
+        return target + '\n' + parameters + '\n' + sql;
+    }
+
+    /**
+     * Row identity of one result: the key of each row (in row order) and the
+     * hash of each keyed row.
+     */
+    public record RowIndex(List<String> columns, List<String> keyColumns, List<String> rowKeys,
+            Map<String, Long> rowHashes) {
+
+        /**
+         * Whether a delta against the other index is meaningful (same columns and
+         * key columns)
+         */
+        public boolean isComparableTo(RowIndex other) {
+            return other != null && columns.equals(other.columns()) && keyColumns.equals(other.keyColumns());
+        }
+    }
+
+    /**
+     * Adds change tracking to a successful result. If the previous token is
+     * known and the result shape is unchanged, the rows are replaced by the
+     * changes; otherwise the full rows are returned together with their keys.
+     * Either way the response carries a new token for the next execution.
+     * Truncated results are never diffed, as the rows past the truncation
+     * would show up as deletes.
+     *
+     * @param fingerprint see {@link #fingerprint}; a previous token issued for
+     *                    another fingerprint fails the response
+     */
+    public ExecutionResponse track(ExecutionResponse response, String previousToken, List<String> keyColumns,
+            String fingerprint) {
+        if (!response.isSuccess() || response.getRows() == null) {
+            return response;
+        }
+        boolean truncated = Boolean.TRUE.equals(response.getTruncated());
+        RowIndex current;
+        try {
+            current = index(response.getColumns(), response.getRows(), keyColumns);
+        } catch (IllegalArgumentException e) {
+            return ExecutionResponse.failure(e.getMessage());
+        }
+
+        String token = UUID.randomUUID().toString();
+        Snapshot previous;
+        synchronized (this) {
+            previous = previousToken != null ? snapshots.get(previousToken) : null;
+            if (previous != null && !previous.fingerprint().equals(fingerprint)) {
+                return ExecutionResponse.failure("The previous result token belongs to a different query, "
+                        + "connection or parameter values");
+            }
+            if (previous != null) {
+                remove(previousToken);
+            }
+            snapshots.put(token, new Snapshot(current, fingerprint, truncated, System.currentTimeMillis()));
+            trackedRows += current.rowHashes().size();
+            evict();
+        }
+
+        response.setResultToken(token);
+        if (previous == null || previous.truncated() || truncated || !current.isComparableTo(previous.index())) {
+            response.setRowKeys(current.rowKeys());
+            return response;
+        }
+        response.setChanges(diff(previous.index(), current, response.getRows()));
+        response.setRows(null);
+        return response;
+    }
+
+    /**
+     * Computes the key and hash of every row.
+     *
+     * @throws IllegalArgumentException if a key column is not in the result
+     */
+    public RowIndex index(List<String> columns, List<Map<String, Object>> rows, List<String> keyColumns) {
+        List<String> keys = keyColumns != null ? keyColumns : List.of();
+        for (String key : keys) {
+            if (!columns.contains(key)) {
+                throw new IllegalArgumentException("Key column not found in result: " + key);
+            }
+        }
+
+        List<String> rowKeys = new ArrayList<>(rows.size());
+        Map<String, Long> rowHashes = new HashMap<>(Math.max(16, rows.size() * 4 / 3 + 1));
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            long hash = hashRow(row, columns);
+            String key = keys.isEmpty() ? Long.toHexString(hash) : rowKey(row, keys);
+            // Disambiguate duplicate keys (or identical rows when keyless)
+            int occurrence = occurrences.merge(key, 1, Integer::sum);
+            if (occurrence > 1) {
+                key = key + "#" + occurrence;
+            }
+            rowKeys.add(key);
+            rowHashes.put(key, hash);
+        }
+        return new RowIndex(columns, keys, rowKeys, rowHashes);
+    }
+
+    /**
+     * Computes the changes from the previous result to the current rows, which
+     * must be the rows the current index was built from.
+     */
+    public ResultDelta diff(RowIndex previous, RowIndex current, List<Map<String, Object>> rows) {
+        ResultDelta delta = new ResultDelta();
+        for (int i = 0; i < rows.size(); i++) {
+            String key = current.rowKeys().get(i);
+            Long previousHash = previous.rowHashes().get(key);
+            if (previousHash == null) {
+                delta.getInserted().add(rows.get(i));
+                delta.getInsertedKeys().add(key);
+            } else if (previousHash.longValue() != current.rowHashes().get(key)) {
+                delta.getUpdated().add(rows.get(i));
+                delta.getUpdatedKeys().add(key);
+            } else {
+                delta.setUnchangedCount(delta.getUnchangedCount() + 1);
+            }
+        }
+        for (String key : previous.rowHashes().keySet()) {
+            if (!current.rowHashes().containsKey(key)) {
+                delta.getDeletedKeys().add(key);
+            }
+        }
+        return delta;
+    }
+
+    private Snapshot remove(String token) {
+        Snapshot snapshot = snapshots.remove(token);
+        if (snapshot != null) {
+            trackedRows -= snapshot.index().rowHashes().size();
+        }
+        return snapshot;
+    }
+
+    private void evict() {
+        long expiredBefore = System.currentTimeMillis() - ttlMillis;
+        Iterator<Map.Entry<String, Snapshot>> eldest = snapshots.entrySet().iterator();
+        while (eldest.hasNext() && snapshots.size() > 1) {
+            Snapshot snapshot = eldest.next().getValue();
+            if (snapshots.size() <= maxSnapshots && trackedRows <= maxTrackedRows
+                    && snapshot.createdAt() >= expiredBefore) {
+                break;
+            }
+            eldest.remove();
+            trackedRows -= snapshot.index().rowHashes().size();
+        }
+    }
+
+    private static String rowKey(Map<String, Object> row, List<String> keyColumns) {
+        if (keyColumns.size() == 1) {
+            return String.valueOf(row.get(keyColumns.get(0)));
+        }
+        StringBuilder key = new StringBuilder();
+        for (String column : keyColumns) {
+            if (key.length() > 0) {
+                key.append(KEY_SEPARATOR);
+            }
+            key.append(row.get(column));
+        }
+        return key.toString();
+    }
+
+    /**
+     * 64-bit FNV-1a over the string form of every value, in column order.
+     * Large values count by preview and length: their handle is new on every
+     * execution.
+     */
+    private static long hashRow(Map<String, Object> row, List<String> columns) {
+        long hash = FNV_OFFSET;
+        for (String column : columns) {
+            Object value = row.get(column);
+            String text = value instanceof LobValue lob
+                    ? lob.getKind() + ":" + lob.getLength() + ":" + lob.getPreview()
+                    : Objects.toString(value, "\u0000null");
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            for (byte b : bytes) {
+                hash ^= b & 0xff;
+                hash *= FNV_PRIME;
+            }
+            hash ^= KEY_SEPARATOR;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
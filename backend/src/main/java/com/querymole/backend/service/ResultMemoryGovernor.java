@@ -0,0 +1,206 @@
+package com.querymole.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounds the heap held by query results. Each execution takes a reservation
+ * that grows as rows are fetched and is released when the execution returns.
+ * A reservation may not grow beyond the per-query budget, and all reservations
+ * together may not grow beyond the global budget; a refused reservation makes
+ * the caller stop fetching and return a truncated result.
+ * <p>
+ * Results kept after their execution (cached and pinned results) hold a
+ * retained reservation until they are dropped. Retained memory may not take
+ * more than half the global budget, and not so much that in-flight memory
+ * reaches the admission threshold, so it never holds new executions back by
+ * itself.
+ * <p>
+ * New executions are only admitted while in-flight result memory is below the
+ * admission threshold. Otherwise they wait for memory to be released, and are
+ * rejected when that takes longer than the admission timeout.
+ */
+@Service
+public class ResultMemoryGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultMemoryGovernor.class);
+
+    private static final long MB = 1024L * 1024L;
+
+    private final long queryBudget;
+    private final long globalBudget;
+    private final long retainedBudget;
+    private final long admissionLimit;
+    private final long admissionTimeoutMs;
+
+    // Guarded by this
+    private long inFlightBytes;
+    private long retainedBytes;
+    private int activeReservations;
+    private int waiting;
+    private long rejected;
+    private long truncated;
+
+    public ResultMemoryGovernor(@Value("${querymole.memory.query-budget-mb:64}") long queryBudgetMb,
+            @Value("${querymole.memory.global-budget-mb:0}") long globalBudgetMb,
+            @Value("${querymole.memory.admission-threshold:0.9}") double admissionThreshold,
+            @Value("${querymole.memory.admission-timeout-ms:10000}") long admissionTimeoutMs) {
+        // Without an explicit global budget, results may use half the heap
+        this.globalBudget = globalBudgetMb > 0 ? globalBudgetMb * MB : Runtime.getRuntime().maxMemory() / 2;
+        this.queryBudget = Math.min(queryBudgetMb * MB, globalBudget);
+        this.retainedBudget = globalBudget / 2;
+        this.admissionLimit = (long) (globalBudget * admissionThreshold);
+        this.admissionTimeoutMs = admissionTimeoutMs;
+        logger.info("Result memory budget: {} MB per query, {} MB in total", queryBudget / MB, globalBudget / MB);
+    }
+
+    /**
+     * Memory held by one execution's results.
+     */
+    public final class Reservation implements AutoCloseable {
+        private final boolean retained;
+        private long bytes;
+        private boolean closed;
+        private String refusal;
+
+        private Reservation(boolean retained) {
+            this.retained = retained;
+        }
+
+        /**
+         * Accounts for more fetched data.
+         *
+         * @return false if either budget would be exceeded; the bytes are then
+         *         not reserved and the caller should stop fetching
+         */
+        public boolean tryGrow(long additional) {
+            synchronized (ResultMemoryGovernor.this) {
+                if (closed) {
+                    throw new IllegalStateException("Reservation already released");
+                }
+                if (retained) {
+                    if (retainedBytes + additional > retainedBudget) {
+                        refuse("budget of " + retainedBudget / MB + " MB for kept results");
+                        return false;
+                    }
+                    if (inFlightBytes + additional >= admissionLimit) {
+                        refuse("admission threshold of " + admissionLimit / MB + " MB");
+                        return false;
+                    }
+                    retainedBytes += additional;
+                } else {
+                    if (bytes + additional > queryBudget) {
+                        refuse("per-query result budget of " + queryBudget / MB + " MB");
+                        return false;
+                    }
+                    if (inFlightBytes + additional > globalBudget) {
+                        refuse("global result budget of " + globalBudget / MB + " MB");
+                        return false;
+                    }
+                }
+                bytes += additional;
+                inFlightBytes += additional;
+                return true;
+            }
+        }
+
+        public long getBytes() {
+            synchronized (ResultMemoryGovernor.this) {
+                return bytes;
+            }
+        }
+
+        /**
+         * Which budget refused the last growth, or null
+         */
+        public String getRefusal() {
+            synchronized (ResultMemoryGovernor.this) {
+                return refusal;
+            }
+        }
+
+        private void refuse(String reason) {
+            if (refusal == null && !retained) {
+                truncated++;
+            }
+            refusal = reason;
+        }
+
+        @Override
+        public void close() {
+            synchronized (ResultMemoryGovernor.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                inFlightBytes -= bytes;
+                if (retained) {
+                    retainedBytes -= bytes;
+                } else {
+                    activeReservations--;
+                }
+                ResultMemoryGovernor.this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Admits a new execution, waiting while in-flight result memory is at or
+     * above the admission threshold.
+     *
+     * @throws IllegalStateException if memory was not released within the
+     *                               admission timeout
+     */
+    public synchronized Reservation admit() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + admissionTimeoutMs;
+        waiting++;
+        try {
+            while (inFlightBytes >= admissionLimit) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    rejected++;
+                    throw new IllegalStateException("Too much result data in flight ("
+                            + inFlightBytes / MB + " MB of " + globalBudget / MB
+                            + " MB); try again when running queries have finished");
+                }
+                wait(remaining);
+            }
+        } finally {
+            waiting--;
+        }
+        activeReservations++;
+        return new Reservation(false);
+    }
+
+    /**
+     * Takes a reservation for results kept after their execution returned. It
+     * does not wait for admission and is not an execution; a refused growth
+     * means the result should not be kept.
+     */
+    public synchronized Reservation retain() {
+        return new Reservation(true);
+    }
+
+    /**
+     * Budgets and current usage, for monitoring.
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queryBudgetBytes", queryBudget);
+        stats.put("globalBudgetBytes", globalBudget);
+        stats.put("retainedBudgetBytes", retainedBudget);
+        stats.put("admissionLimitBytes", admissionLimit);
+        stats.put("inFlightBytes", inFlightBytes);
+        stats.put("retainedBytes", retainedBytes);
+        stats.put("activeExecutions", activeReservations);
+        stats.put("waitingExecutions", waiting);
+        stats.put("rejectedExecutions", rejected);
+        stats.put("truncatedResults", truncated);
+        return stats;
+    }
+}
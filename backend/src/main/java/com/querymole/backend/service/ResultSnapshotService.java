@@ -0,0 +1,653 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.ResultDelta;
+import com.querymole.backend.dto.SnapshotInfo;
+import com.querymole.backend.dto.SnapshotPage;
+import com.querymole.backend.dto.SnapshotRequest;
+import com.querymole.backend.model.QueryNode;
+import com.querymole.backend.model.QueryParameter;
+import com.querymole.backend.util.ColumnarSnapshotFile;
+import com.querymole.backend.util.CsvFormat;
+import com.querymole.backend.util.TypeConverterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Durable result snapshots: a query runs once and its result is streamed into
+ * a compressed, columnar file ({@link ColumnarSnapshotFile}), which can later
+ * be paged, sorted, exported and compared without touching the database.
+ * <p>
+ * Recently used snapshots stay open (memory-mapped) with an LRU cache of
+ * inflated column chunks and of sort orders; the least recently used one is
+ * closed when too many are open. What the listing shows is kept next to each
+ * snapshot in a small JSON file, so listing does not open the snapshots.
+ */
+@Service
+public class ResultSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResultSnapshotService.class);
+
+    private static final String SUFFIX = ".qms";
+    private static final String INFO_SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Pattern ID = Pattern.compile("[0-9a-f-]{36}");
+    private static final int CHUNK_CACHE_SIZE = 256;
+    private static final int SORT_CACHE_SIZE = 4;
+    private static final int EXPORT_BATCH_ROWS = 1024;
+
+    private final JdbcExecutorService jdbcExecutorService;
+    private final QueryService queryService;
+    private final TypeConverterRegistry typeConverterRegistry;
+    private final ResultDeltaService resultDeltaService;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int blockRows;
+    private final int maxOpenSnapshots;
+    private final int maxPageSize;
+    private final long maxCompareRows;
+
+    /**
+     * id -> open snapshot, in access order; guarded by itself
+     */
+    private final LinkedHashMap<String, OpenSnapshot> open = new LinkedHashMap<>(16, 0.75f, true);
+
+    public ResultSnapshotService(JdbcExecutorService jdbcExecutorService, QueryService queryService,
+            TypeConverterRegistry typeConverterRegistry, ResultDeltaService resultDeltaService,
+            ObjectMapper objectMapper,
+            @Value("${querymole.snapshots.dir:data/snapshots}") String directory,
+            @Value("${querymole.snapshots.block-rows:4096}") int blockRows,
+            @Value("${querymole.snapshots.open-snapshots:8}") int maxOpenSnapshots,
+            @Value("${querymole.snapshots.max-page-size:10000}") int maxPageSize,
+            @Value("${querymole.snapshots.max-compare-rows:500000}") long maxCompareRows) {
+        this.jdbcExecutorService = jdbcExecutorService;
+        this.queryService = queryService;
+        this.typeConverterRegistry = typeConverterRegistry;
+        this.resultDeltaService = resultDeltaService;
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+        this.blockRows = blockRows;
+        this.maxOpenSnapshots = maxOpenSnapshots;
+        this.maxPageSize = maxPageSize;
+        this.maxCompareRows = maxCompareRows;
+    }
+
+    /**
+     * A snapshot opened for reading, with its caches. Guarded by itself.
+     */
+    private static final class OpenSnapshot {
+        final String id;
+        final ColumnarSnapshotFile.Reader reader;
+
+        /**
+         * block * columnCount + column -> decoded values
+         */
+        final Map<Long, Object[]> chunks = new LinkedHashMap<Long, Object[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Object[]> eldest) {
+                return size() > CHUNK_CACHE_SIZE;
+            }
+        };
+
+        /**
+         * "column:asc" or "column:desc" -> row numbers in sorted order
+         */
+        final Map<String, int[]> sortOrders = new LinkedHashMap<String, int[]>(4, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+                return size() > SORT_CACHE_SIZE;
+            }
+        };
+
+        OpenSnapshot(String id, ColumnarSnapshotFile.Reader reader) {
+            this.id = id;
+            this.reader = reader;
+        }
+
+        List<String> columns() {
+            return reader.getSchema().columns();
+        }
+
+        long rowCount() {
+            return reader.getIndex().rowCount();
+        }
+
+        Object[] chunk(int block, int column) throws IOException {
+            long key = (long) block * columns().size() + column;
+            Object[] values = chunks.get(key);
+            if (values == null) {
+                values = reader.readChunk(block, column);
+                chunks.put(key, values);
+            }
+            return values;
+        }
+
+        Map<String, Object> row(long row) throws IOException {
+            int block = reader.blockOf(row);
+            int position = (int) (row - reader.getIndex().blocks().get(block).firstRow());
+            List<String> columns = columns();
+            Map<String, Object> values = new HashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                values.put(columns.get(i), chunk(block, i)[position]);
+            }
+            return values;
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        // Snapshots being written when the server stopped are incomplete
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (open) {
+            for (OpenSnapshot snapshot : open.values()) {
+                closeQuietly(snapshot);
+            }
+            open.clear();
+        }
+    }
+
+    /**
+     * Runs the query and streams its result into a new snapshot; the rows are
+     * never held in memory.
+     *
+     * @throws NoSuchElementException   if the library query does not exist
+     * @throws IllegalArgumentException if neither a query id nor SQL is given
+     */
+    public SnapshotInfo create(SnapshotRequest request) throws InterruptedException {
+        String sql;
+        String name;
+        List<QueryParameter> declared = null;
+        JdbcExecutorService.ExecutionLimits limits = jdbcExecutorService.getDefaultLimits();
+        if (request.getQueryId() != null) {
+            QueryNode node = queryService.getQueryNode(request.getQueryId());
+            if (node == null || !"QUERY".equals(node.getType())) {
+                throw new NoSuchElementException("Query not found: " + request.getQueryId());
+            }
+            sql = node.getQuery();
+            declared = node.getParameters();
+            limits = jdbcExecutorService.limitsFor(node.getHints());
+            name = node.getName();
+        } else if (request.getSql() != null && !request.getSql().isBlank()) {
+            sql = request.getSql();
+            name = sql.length() > 80 ? sql.substring(0, 80) + "..." : sql;
+        } else {
+            throw new IllegalArgumentException("Either a query id or SQL is required");
+        }
+        if (request.getName() != null && !request.getName().isBlank()) {
+            name = request.getName();
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path temp = directory.resolve(id + TEMP_SUFFIX);
+        long createdAt = System.currentTimeMillis();
+        String snapshotName = name;
+        SnapshotInfo info;
+        try {
+            jdbcExecutorService.streamQuery(sql, request.getParameters(), declared, limits, rs -> {
+                List<String> columns = columnNames(rs.getMetaData());
+                ColumnarSnapshotFile.Schema schema = new ColumnarSnapshotFile.Schema(snapshotName, sql,
+                        createdAt, columns);
+                try (ColumnarSnapshotFile.Writer writer = new ColumnarSnapshotFile.Writer(objectMapper,
+                        temp, schema, blockRows)) {
+                    List<Object> values = new ArrayList<>(columns.size());
+                    while (rs.next()) {
+                        values.clear();
+                        for (int i = 1; i <= columns.size(); i++) {
+                            values.add(typeConverterRegistry.convertToSerializable(rs.getObject(i)));
+                        }
+                        writer.append(values);
+                    }
+                    writer.finish(System.currentTimeMillis() - createdAt);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to write snapshot " + id, e);
+                }
+                return null;
+            });
+            info = readInfo(id, temp);
+            writeInfo(info);
+            Files.move(temp, directory.resolve(id + SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            deleteQuietly(infoFile(id));
+            throw new UncheckedIOException("Failed to store snapshot " + id, e);
+        } catch (RuntimeException | InterruptedException e) {
+            deleteQuietly(temp);
+            deleteQuietly(infoFile(id));
+            throw e;
+        }
+        logger.info("Stored snapshot {} ({} rows, {} bytes): {}", id, info.getRowCount(), info.getFileBytes(),
+                snapshotName);
+        return info;
+    }
+
+    /**
+     * All snapshots, newest first. Unreadable files are skipped.
+     */
+    public List<SnapshotInfo> list() throws IOException {
+        List<SnapshotInfo> infos = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String id = fileName.substring(0, fileName.length() - SUFFIX.length());
+                try {
+                    infos.add(getInfo(id));
+                } catch (UncheckedIOException | NoSuchElementException e) {
+                    logger.warn("Skipping unreadable snapshot {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        infos.sort(Comparator.comparingLong(SnapshotInfo::getCreatedAt).reversed());
+        return infos;
+    }
+
+    /**
+     * Reads the info file kept next to the snapshot; the snapshot itself is
+     * neither opened nor moved up in the cache of open snapshots. Snapshots
+     * stored before info files existed get one on first use.
+     *
+     * @throws NoSuchElementException if the snapshot does not exist
+     */
+    public SnapshotInfo getInfo(String id) {
+        Path file = file(id);
+        if (!Files.exists(file)) {
+            throw new NoSuchElementException("Snapshot not found: " + id);
+        }
+        Path infoFile = infoFile(id);
+        try {
+            if (Files.exists(infoFile)) {
+                try {
+                    return objectMapper.readValue(Files.readAllBytes(infoFile), SnapshotInfo.class);
+                } catch (JacksonException e) {
+                    logger.warn("Rewriting unreadable info of snapshot {}: {}", id, e.getMessage());
+                }
+            }
+            SnapshotInfo info = readInfo(id, file);
+            writeInfo(info);
+            return info;
+        } catch (NoSuchFileException e) {
+            throw new NoSuchElementException("Snapshot not found: " + id);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read snapshot " + id, e);
+        }
+    }
+
+    /**
+     * Reads a page of rows, optionally sorted by one column (nulls last).
+     *
+     * @throws NoSuchElementException   if the snapshot does not exist
+     * @throws IllegalArgumentException if the sort column is unknown
+     */
+    public SnapshotPage page(String id, long offset, int limit, String sortColumn, boolean descending) {
+        if (offset < 0 || limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("Offset must not be negative and limit must be between 1 and "
+                    + maxPageSize);
+        }
+        OpenSnapshot snapshot = openSnapshot(id);
+        SnapshotPage page = new SnapshotPage();
+        page.setId(id);
+        page.setColumns(snapshot.columns());
+        page.setOffset(offset);
+        page.setTotalRows(snapshot.rowCount());
+        page.setSortColumn(sortColumn);
+        page.setDescending(descending);
+        List<Map<String, Object>> rows = new ArrayList<>();
+        synchronized (snapshot) {
+            try {
+                int[] order = sortColumn != null ? sortOrder(snapshot, sortColumn, descending) : null;
+                long end = Math.min(snapshot.rowCount(), offset + limit);
+                for (long i = offset; i < end; i++) {
+                    rows.add(snapshot.row(order != null ? order[(int) i] : i));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read snapshot " + id, e);
+            }
+        }
+        page.setRows(rows);
+        return page;
+    }
+
+    /**
+     * Writes the snapshot as CSV with a header row, in stored or sorted order.
+     */
+    public void export(String id, String sortColumn, boolean descending, OutputStream out) throws IOException {
+        OpenSnapshot snapshot = openSnapshot(id);
+        List<String> columns = snapshot.columns();
+        StringBuilder text = new StringBuilder();
+        CsvFormat.appendRow(text, columns);
+        if (sortColumn != null) {
+            int[] order;
+            synchronized (snapshot) {
+                order = sortOrder(snapshot, sortColumn, descending);
+            }
+            // Rows are read with the lock held and written to the client without it,
+            // so a slow client does not hold up other readers of the snapshot
+            List<Object> values = new ArrayList<>(columns.size());
+            for (int start = 0; start < order.length; start += EXPORT_BATCH_ROWS) {
+                int end = Math.min(order.length, start + EXPORT_BATCH_ROWS);
+                synchronized (snapshot) {
+                    for (int i = start; i < end; i++) {
+                        Map<String, Object> record = snapshot.row(order[i]);
+                        values.clear();
+                        for (String column : columns) {
+                            values.add(record.get(column));
+                        }
+                        CsvFormat.appendRow(text, values);
+                    }
+                }
+                flush(text, out);
+            }
+        } else {
+            // Block by block, bypassing the chunk cache
+            ColumnarSnapshotFile.Reader reader = snapshot.reader;
+            for (int block = 0; block < reader.getBlockCount(); block++) {
+                Object[][] chunks = new Object[columns.size()][];
+                for (int column = 0; column < columns.size(); column++) {
+                    chunks[column] = reader.readChunk(block, column);
+                }
+                int rowCount = reader.getIndex().blocks().get(block).rowCount();
+                List<Object> values = new ArrayList<>(columns.size());
+                for (int row = 0; row < rowCount; row++) {
+                    values.clear();
+                    for (Object[] chunk : chunks) {
+                        values.add(chunk[row]);
+                    }
+                    CsvFormat.appendRow(text, values);
+                }
+                flush(text, out);
+            }
+        }
+        flush(text, out);
+    }
+
+    /**
+     * Changes from one snapshot to another, rows matched by the key columns
+     * (or by content when none are given).
+     *
+     * @throws IllegalArgumentException if the snapshots have different columns
+     *                                  or exceed the comparison limit
+     */
+    public ResultDelta compare(String beforeId, String afterId, List<String> keyColumns) {
+        OpenSnapshot before = openSnapshot(beforeId);
+        OpenSnapshot after = openSnapshot(afterId);
+        if (!before.columns().equals(after.columns())) {
+            throw new IllegalArgumentException("Snapshots have different columns");
+        }
+        List<Map<String, Object>> beforeRows = allRows(before);
+        List<Map<String, Object>> afterRows = allRows(after);
+        ResultDeltaService.RowIndex beforeIndex = resultDeltaService.index(before.columns(), beforeRows, keyColumns);
+        // Only the row hashes of the earlier snapshot are needed from here on
+        beforeRows = null;
+        ResultDeltaService.RowIndex afterIndex = resultDeltaService.index(after.columns(), afterRows, keyColumns);
+        return resultDeltaService.diff(beforeIndex, afterIndex, afterRows);
+    }
+
+    /**
+     * @throws NoSuchElementException if the snapshot does not exist
+     */
+    public void delete(String id) throws IOException {
+        Path file = file(id);
+        synchronized (open) {
+            OpenSnapshot snapshot = open.remove(id);
+            if (snapshot != null) {
+                closeQuietly(snapshot);
+            }
+        }
+        boolean deleted = Files.deleteIfExists(file);
+        Files.deleteIfExists(infoFile(id));
+        if (!deleted) {
+            throw new NoSuchElementException("Snapshot not found: " + id);
+        }
+    }
+
+    private List<Map<String, Object>> allRows(OpenSnapshot snapshot) {
+        if (snapshot.rowCount() > maxCompareRows) {
+            throw new IllegalArgumentException("Snapshot " + snapshot.id + " has more than " + maxCompareRows
+                    + " rows to compare");
+        }
+        List<Map<String, Object>> rows = new ArrayList<>((int) snapshot.rowCount());
+        synchronized (snapshot) {
+            try {
+                for (long row = 0; row < snapshot.rowCount(); row++) {
+                    rows.add(snapshot.row(row));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read snapshot " + snapshot.id, e);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Row numbers ordered by the column, computed from its chunks once and
+     * cached. Called with the snapshot lock held.
+     */
+    private int[] sortOrder(OpenSnapshot snapshot, String column, boolean descending) throws IOException {
+        int columnIndex = snapshot.columns().indexOf(column);
+        if (columnIndex < 0) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        String key = column + (descending ? ":desc" : ":asc");
+        int[] cached = snapshot.sortOrders.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (snapshot.rowCount() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Snapshot is too large to sort");
+        }
+        Object[] keys = new Object[(int) snapshot.rowCount()];
+        ColumnarSnapshotFile.Reader reader = snapshot.reader;
+        for (int block = 0; block < reader.getBlockCount(); block++) {
+            Object[] chunk = reader.readChunk(block, columnIndex);
+            System.arraycopy(chunk, 0, keys, (int) reader.getIndex().blocks().get(block).firstRow(), chunk.length);
+        }
+        Integer[] rows = new Integer[keys.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        Comparator<Object> order = descending
+                ? (a, b) -> a == null || b == null ? compareValues(a, b) : compareValues(b, a)
+                : ResultSnapshotService::compareValues;
+        // Stable, so equal keys keep their stored order
+        Arrays.sort(rows, (a, b) -> order.compare(keys[a], keys[b]));
+        int[] sorted = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            sorted[i] = rows[i];
+        }
+        snapshot.sortOrders.put(key, sorted);
+        return sorted;
+    }
+
+    /**
+     * Orders numbers numerically, strings and booleans naturally and anything
+     * else by its text; nulls last. Values of different kinds are ordered by
+     * kind first (numbers, booleans, strings, others), so the order stays
+     * transitive in a column of mixed types.
+     */
+    private static int compareValues(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null) {
+            return 1;
+        }
+        if (b == null) {
+            return -1;
+        }
+        int kinds = Integer.compare(kind(a), kind(b));
+        if (kinds != 0) {
+            return kinds;
+        }
+        if (a instanceof Long x && b instanceof Long y) {
+            return Long.compare(x, y);
+        }
+        if (a instanceof Number x && b instanceof Number y) {
+            if ((x instanceof BigDecimal || y instanceof BigDecimal) && Double.isFinite(x.doubleValue())
+                    && Double.isFinite(y.doubleValue())) {
+                return new BigDecimal(x.toString()).compareTo(new BigDecimal(y.toString()));
+            }
+            return Double.compare(x.doubleValue(), y.doubleValue());
+        }
+        if (a instanceof String x && b instanceof String y) {
+            return x.compareTo(y);
+        }
+        if (a instanceof Boolean x && b instanceof Boolean y) {
+            return x.compareTo(y);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static int kind(Object value) {
+        if (value instanceof Number) {
+            return 0;
+        }
+        if (value instanceof Boolean) {
+            return 1;
+        }
+        return value instanceof String ? 2 : 3;
+    }
+
+    private OpenSnapshot openSnapshot(String id) {
+        Path file = file(id);
+        synchronized (open) {
+            OpenSnapshot snapshot = open.get(id);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            if (!Files.exists(file)) {
+                throw new NoSuchElementException("Snapshot not found: " + id);
+            }
+            try {
+                snapshot = new OpenSnapshot(id, ColumnarSnapshotFile.Reader.open(objectMapper, file));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open snapshot " + id, e);
+            }
+            open.put(id, snapshot);
+            if (open.size() > maxOpenSnapshots) {
+                // A closed reader still serves requests that hold it: a file mapped
+                // as a whole stays readable until the mapping is garbage collected
+                OpenSnapshot eldest = open.values().iterator().next();
+                open.remove(eldest.id);
+                closeQuietly(eldest);
+            }
+            return snapshot;
+        }
+    }
+
+    private Path file(String id) {
+        // The id comes from the request path, so it must not escape the directory
+        if (id == null || !ID.matcher(id).matches()) {
+            throw new NoSuchElementException("Snapshot not found: " + id);
+        }
+        return directory.resolve(id + SUFFIX);
+    }
+
+    private Path infoFile(String id) {
+        return directory.resolve(id + INFO_SUFFIX);
+    }
+
+    /**
+     * Builds the info from the schema and index of a snapshot file, opened on
+     * its own rather than through the cache of open snapshots
+     */
+    private SnapshotInfo readInfo(String id, Path file) throws IOException {
+        ColumnarSnapshotFile.Reader reader = ColumnarSnapshotFile.Reader.open(objectMapper, file);
+        try {
+            ColumnarSnapshotFile.Schema schema = reader.getSchema();
+            ColumnarSnapshotFile.Index index = reader.getIndex();
+            SnapshotInfo info = new SnapshotInfo();
+            info.setId(id);
+            info.setName(schema.name());
+            info.setSql(schema.sql());
+            info.setCreatedAt(schema.createdAt());
+            info.setColumns(schema.columns());
+            info.setRowCount(index.rowCount());
+            info.setExecutionTimeMs(index.executionTimeMs());
+            info.setFileBytes(Files.size(file));
+            long rawBytes = 0;
+            for (ColumnarSnapshotFile.Block block : index.blocks()) {
+                for (int length : block.rawLengths()) {
+                    rawBytes += length;
+                }
+            }
+            info.setRawBytes(rawBytes);
+            return info;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void writeInfo(SnapshotInfo info) throws IOException {
+        Path temp = directory.resolve(info.getId() + INFO_SUFFIX + TEMP_SUFFIX);
+        Files.write(temp, objectMapper.writeValueAsBytes(info));
+        Files.move(temp, infoFile(info.getId()), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static List<String> columnNames(ResultSetMetaData metaData) throws SQLException {
+        List<String> names = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            names.add(metaData.getColumnLabel(i));
+        }
+        return names;
+    }
+
+    private static void flush(StringBuilder text, OutputStream out) throws IOException {
+        out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        text.setLength(0);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(OpenSnapshot snapshot) {
+        try {
+            snapshot.reader.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close snapshot {}: {}", snapshot.id, e.getMessage());
+        }
+    }
+}
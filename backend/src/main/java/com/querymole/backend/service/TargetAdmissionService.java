@@ -0,0 +1,296 @@
+package com.querymole.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control per target database (connection profile). Each target
+ * admits a bounded number of concurrent statements; further statements queue
+ * in arrival order and are rejected once they have waited longer than the
+ * queue timeout.
+ * <p>
+ * A circuit breaker per target opens after a run of consecutive failures that
+ * indicate the database is struggling (timeouts, cancellations, connection
+ * errors; not SQL errors in the query itself, nor a statement reaching the
+ * timeout its limits set). While open, statements are
+ * rejected immediately. After the back-off a single trial statement is let
+ * through: success closes the breaker, failure reopens it with twice the
+ * back-off, up to the maximum.
+ */
+@Service
+public class TargetAdmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TargetAdmissionService.class);
+
+    private final int maxConcurrent;
+    private final long queueTimeoutMs;
+    private final int failureThreshold;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    public TargetAdmissionService(@Value("${querymole.admission.max-concurrent:4}") int maxConcurrent,
+            @Value("${querymole.admission.queue-timeout-ms:30000}") long queueTimeoutMs,
+            @Value("${querymole.admission.failure-threshold:5}") int failureThreshold,
+            @Value("${querymole.admission.backoff-ms:5000}") long initialBackoffMs,
+            @Value("${querymole.admission.max-backoff-ms:300000}") long maxBackoffMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.queueTimeoutMs = queueTimeoutMs;
+        this.failureThreshold = failureThreshold;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    public enum BreakerState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final class Target {
+        final String key;
+        // Fair, so queued statements are admitted in arrival order
+        final Semaphore permits = new Semaphore(maxConcurrent, true);
+        final AtomicLong admitted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong totalWaitMs = new AtomicLong();
+        final AtomicLong maxWaitMs = new AtomicLong();
+
+        // Guarded by this
+        BreakerState state = BreakerState.CLOSED;
+        int consecutiveFailures;
+        long backoffMs = initialBackoffMs;
+        long openUntil;
+        boolean trialRunning;
+
+        Target(String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return true if the statement may run as the half-open trial
+         */
+        synchronized boolean checkBreaker() {
+            if (state == BreakerState.CLOSED) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            if (state == BreakerState.OPEN && now >= openUntil) {
+                state = BreakerState.HALF_OPEN;
+            }
+            if (state == BreakerState.HALF_OPEN && !trialRunning) {
+                trialRunning = true;
+                return true;
+            }
+            rejected.incrementAndGet();
+            long retryIn = Math.max(0, openUntil - now);
+            throw new IllegalStateException("Database " + key + " is failing; not sending statements for "
+                    + (retryIn > 0 ? retryIn / 1000 + " more seconds" : "until the trial statement completes"));
+        }
+
+        synchronized void onSuccess(boolean trial) {
+            consecutiveFailures = 0;
+            if (trial) {
+                trialRunning = false;
+                state = BreakerState.CLOSED;
+                backoffMs = initialBackoffMs;
+                logger.info("Circuit closed for {}", key);
+            }
+        }
+
+        synchronized void onFailure(boolean trial) {
+            consecutiveFailures++;
+            if (trial) {
+                trialRunning = false;
+                backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+                open();
+            } else if (state == BreakerState.CLOSED && consecutiveFailures >= failureThreshold) {
+                open();
+            }
+        }
+
+        /**
+         * A trial statement that ended without a verdict (e.g. a SQL error)
+         * lets the next statement try again
+         */
+        synchronized void onNeutral(boolean trial) {
+            if (trial) {
+                trialRunning = false;
+            }
+        }
+
+        private void open() {
+            state = BreakerState.OPEN;
+            openUntil = System.currentTimeMillis() + backoffMs;
+            logger.warn("Circuit opened for {} after {} consecutive failures, backing off {} ms", key,
+                    consecutiveFailures, backoffMs);
+        }
+    }
+
+    /**
+     * A running statement's slot; report its outcome, then close it.
+     */
+    public final class Permit implements AutoCloseable {
+        private final Target target;
+        private final boolean trial;
+        private boolean reported;
+        private boolean timeoutLimited;
+
+        private Permit(Target target, boolean trial) {
+            this.target = target;
+            this.trial = trial;
+        }
+
+        /**
+         * Marks the statement as running under a timeout of its own (a query
+         * hint or configured limit), so reaching that timeout says nothing
+         * about the target
+         */
+        public void limitTimeout() {
+            timeoutLimited = true;
+        }
+
+        public void recordSuccess() {
+            reported = true;
+            target.onSuccess(trial);
+        }
+
+        public void recordFailure(Throwable error) {
+            reported = true;
+            if (timeoutLimited && isStatementTimeout(error)) {
+                target.onNeutral(trial);
+            } else if (isTargetFailure(error)) {
+                target.onFailure(trial);
+            } else {
+                // The database answered, so it is reachable
+                target.onSuccess(trial);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!reported) {
+                target.onNeutral(trial);
+            }
+            target.permits.release();
+        }
+    }
+
+    /**
+     * Waits for a statement slot on the target.
+     *
+     * @param targetKey identifies the connection profile
+     * @throws IllegalStateException if the circuit is open or the queue timeout
+     *                               elapsed
+     */
+    public Permit acquire(String targetKey) throws InterruptedException {
+        Target target = targets.computeIfAbsent(targetKey, Target::new);
+        boolean trial = target.checkBreaker();
+        long start = System.currentTimeMillis();
+        boolean acquired;
+        try {
+            acquired = target.permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            target.onNeutral(trial);
+            throw e;
+        }
+        long waited = System.currentTimeMillis() - start;
+        if (!acquired) {
+            target.onNeutral(trial);
+            target.rejected.incrementAndGet();
+            throw new IllegalStateException("Timed out after " + waited + " ms waiting for one of "
+                    + maxConcurrent + " statement slots on " + targetKey);
+        }
+        target.admitted.incrementAndGet();
+        target.totalWaitMs.addAndGet(waited);
+        target.maxWaitMs.accumulateAndGet(waited, Math::max);
+        return new Permit(target, trial);
+    }
+
+    /**
+     * Queue depth, wait times and breaker state of every target seen so far.
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Target target : targets.values()) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            long admitted = target.admitted.get();
+            info.put("target", target.key);
+            info.put("maxConcurrent", maxConcurrent);
+            info.put("running", maxConcurrent - target.permits.availablePermits());
+            info.put("queued", target.permits.getQueueLength());
+            info.put("admitted", admitted);
+            info.put("rejected", target.rejected.get());
+            info.put("averageWaitMs", admitted > 0 ? target.totalWaitMs.get() / admitted : 0);
+            info.put("maxWaitMs", target.maxWaitMs.get());
+            synchronized (target) {
+                info.put("breakerState", target.state);
+                info.put("consecutiveFailures", target.consecutiveFailures);
+                info.put("retryAt", target.state == BreakerState.CLOSED ? null : target.openUntil);
+            }
+            stats.add(info);
+        }
+        return stats;
+    }
+
+    /**
+     * Whether an error says a statement ran into its timeout (as opposed to
+     * waiting for a connection)
+     */
+    static boolean isStatementTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueryTimeoutException || cause instanceof SQLTimeoutException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                String state = sqlException.getSQLState();
+                // 57014: query canceled (PostgreSQL statement_timeout), HYT00: timeout expired
+                if (state.equals("57014") || state.equals("HYT00")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an error says the database is overloaded or unreachable rather
+     * than that the statement itself is wrong.
+     */
+    static boolean isTargetFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueryTimeoutException || cause instanceof CannotGetJdbcConnectionException
+                    || cause instanceof TransientDataAccessResourceException
+                    || cause instanceof SQLTimeoutException || cause instanceof SQLTransientConnectionException
+                    || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null) {
+                String state = sqlException.getSQLState();
+                // 08: connection exception, 57: operator intervention (PostgreSQL
+                // statement_timeout, admin shutdown), HYT00/HYT01: timeouts
+                if (state.startsWith("08") || state.startsWith("57") || state.startsWith("HYT")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
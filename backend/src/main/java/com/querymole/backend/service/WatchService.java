@@ -0,0 +1,366 @@
+package com.querymole.backend.service;
+
+import com.querymole.backend.dto.ExecutionResponse;
+import com.querymole.backend.dto.ResultDelta;
+import com.querymole.backend.model.ExecutionHints;
+import com.querymole.backend.model.QueryParameter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live "watch" queries pushed over Server-Sent Events. Subscriptions to the
+ * same target, SQL, parameter values, interval and key columns share one
+ * watch, so the query runs once per interval no matter how many clients are
+ * watching; each result is fanned out to all subscribers.
+ * <p>
+ * Events are queued per subscriber while the watch monitor is held and sent
+ * after it is released, so a slow client does not hold up publishing or new
+ * subscriptions, and each client still receives its events in publishing
+ * order.
+ * <p>
+ * Subscribers choose between full results (sent only when something changed)
+ * and deltas against the previous run. Either kind first receives the latest
+ * full result. Events: "result" (full result, with row keys in delta mode),
+ * "delta" (changes only) and "error" (failed run, after which the watch keeps
+ * running, or a switched connection, which ends it).
+ */
+@Service
+public class WatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WatchService.class);
+
+    private final JdbcExecutorService jdbcExecutorService;
+    private final ResultDeltaService resultDeltaService;
+    private final long minIntervalMs;
+    private final long emitterTimeoutMs;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+
+    public WatchService(JdbcExecutorService jdbcExecutorService, ResultDeltaService resultDeltaService,
+            @Value("${querymole.watch.threads:4}") int threads,
+            @Value("${querymole.watch.min-interval-ms:1000}") long minIntervalMs,
+            @Value("${querymole.watch.timeout-ms:1800000}") long emitterTimeoutMs) {
+        this.jdbcExecutorService = jdbcExecutorService;
+        this.resultDeltaService = resultDeltaService;
+        this.minIntervalMs = minIntervalMs;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "watch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final boolean delta;
+
+        /**
+         * Events not sent yet, in publishing order; sent while holding the
+         * subscriber's monitor
+         */
+        final Queue<SseEmitter.SseEventBuilder> pending = new ConcurrentLinkedQueue<>();
+
+        // Set once the initial result was queued; guarded by the watch monitor
+        boolean initialized;
+
+        Subscriber(SseEmitter emitter, boolean delta) {
+            this.emitter = emitter;
+            this.delta = delta;
+        }
+    }
+
+    private final class Watch {
+        final String key;
+        final String target;
+        final String sql;
+        final Map<String, Object> parameters;
+        final List<QueryParameter> declared;
+        final JdbcExecutorService.ExecutionLimits limits;
+        final List<String> keyColumns;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        ScheduledFuture<?> future;
+
+        // Guarded by the watch monitor
+        ExecutionResponse lastResult;
+        ResultDeltaService.RowIndex lastIndex;
+        boolean lastTruncated;
+
+        Watch(String key, String target, String sql, Map<String, Object> parameters, List<QueryParameter> declared,
+                JdbcExecutorService.ExecutionLimits limits, List<String> keyColumns) {
+            this.key = key;
+            this.target = target;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.declared = declared;
+            this.limits = limits;
+            this.keyColumns = keyColumns;
+        }
+
+        void run() {
+            if (!target.equals(jdbcExecutorService.getTargetKey())) {
+                stop(this);
+                return;
+            }
+            ExecutionResponse result = execute();
+            if (!target.equals(jdbcExecutorService.getTargetKey())) {
+                // Ran against the new target; its rows must not be diffed against the old ones
+                stop(this);
+                return;
+            }
+            // Publishing is atomic with respect to subscribe(), so a new subscriber
+            // never receives a delta relative to a result it has not seen
+            List<Subscriber> recipients;
+            synchronized (this) {
+                publish(result);
+                recipients = List.copyOf(subscribers);
+            }
+            for (Subscriber subscriber : recipients) {
+                flush(this, subscriber);
+            }
+        }
+
+        private void publish(ExecutionResponse result) {
+            if (!result.isSuccess()) {
+                broadcast("error", result, "error", result);
+                return;
+            }
+
+            ResultDeltaService.RowIndex index;
+            try {
+                index = resultDeltaService.index(result.getColumns(), result.getRows(), keyColumns);
+            } catch (IllegalArgumentException e) {
+                ExecutionResponse failure = ExecutionResponse.failure(e.getMessage());
+                broadcast("error", failure, "error", failure);
+                return;
+            }
+            ResultDeltaService.RowIndex previous = lastIndex;
+            // Rows past a truncation would show up as deletes, so truncated
+            // results are always sent in full
+            boolean truncated = Boolean.TRUE.equals(result.getTruncated());
+            ResultDelta delta = index.isComparableTo(previous) && !truncated && !lastTruncated
+                    ? resultDeltaService.diff(previous, index, result.getRows())
+                    : null;
+            lastResult = result;
+            lastIndex = index;
+            lastTruncated = truncated;
+
+            if (delta == null) {
+                broadcast("result", result, "result", withRowKeys(result, index));
+            } else if (delta.isEmpty()) {
+                heartbeat();
+            } else {
+                ExecutionResponse changes = new ExecutionResponse(result.getColumns(), null, null, true,
+                        result.getExecutionTimeMs());
+                changes.setChanges(delta);
+                broadcast("result", result, "delta", changes);
+            }
+        }
+
+        private ExecutionResponse execute() {
+            try {
+                return jdbcExecutorService.executeQuery(sql, parameters, declared, limits);
+            } catch (RuntimeException e) {
+                return ExecutionResponse.failure(e.getMessage());
+            }
+        }
+
+        private void broadcast(String fullEvent, ExecutionResponse full, String deltaEvent,
+                ExecutionResponse delta) {
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.initialized) {
+                    // Receives the latest result from subscribe() instead
+                    continue;
+                }
+                if (subscriber.delta) {
+                    subscriber.pending.add(event(deltaEvent, delta));
+                } else {
+                    subscriber.pending.add(event(fullEvent, full));
+                }
+            }
+        }
+
+        private void heartbeat() {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.initialized) {
+                    subscriber.pending.add(SseEmitter.event().comment("unchanged"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscribes to a watch, starting it if no identical watch is running.
+     *
+     * @param declared declared parameters of a library query, or null for ad-hoc
+     *                 SQL
+     * @param hints    execution hints of a library query, or null
+     */
+    public SseEmitter subscribe(String sql, Map<String, Object> parameters, List<QueryParameter> declared,
+            ExecutionHints hints, long intervalMs, boolean delta, List<String> keyColumns) {
+        long interval = Math.max(intervalMs, minIntervalMs);
+        Map<String, Object> values = parameters != null ? parameters : Map.of();
+        List<String> keys = keyColumns != null ? keyColumns : List.of();
+        JdbcExecutorService.ExecutionLimits limits = jdbcExecutorService.limitsFor(hints);
+        String target = jdbcExecutorService.getTargetKey();
+        String key = target + '\u0000' + sql + '\u0000' + new TreeMap<>(values) + '\u0000' + interval + '\u0000'
+                + keys + '\u0000' + limits;
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, delta);
+        Watch watch;
+        synchronized (watches) {
+            watch = watches.get(key);
+            if (watch == null) {
+                watch = new Watch(key, target, sql, values, declared, limits, keys);
+                watches.put(key, watch);
+                Watch started = watch;
+                watch.future = scheduler.scheduleWithFixedDelay(() -> runSafely(started), 0, interval,
+                        TimeUnit.MILLISECONDS);
+                logger.info("Started watch every {} ms: {}", interval, abbreviate(sql));
+            }
+            watch.subscribers.add(subscriber);
+        }
+
+        // The watch monitor is taken outside the registry lock: publishing holds
+        // the watch monitor and may unsubscribe, which takes the registry lock
+        synchronized (watch) {
+            subscriber.initialized = true;
+            // Late subscribers start from the latest result instead of waiting a full
+            // interval
+            if (watch.lastResult != null) {
+                subscriber.pending.add(event("result",
+                        delta ? withRowKeys(watch.lastResult, watch.lastIndex) : watch.lastResult));
+            }
+        }
+        flush(watch, subscriber);
+
+        Watch joined = watch;
+        emitter.onCompletion(() -> unsubscribe(joined, subscriber));
+        emitter.onTimeout(() -> unsubscribe(joined, subscriber));
+        emitter.onError(e -> unsubscribe(joined, subscriber));
+        return emitter;
+    }
+
+    /**
+     * Active watches with their subscriber counts, keyed by SQL.
+     */
+    public List<Map<String, Object>> getActiveWatches() {
+        List<Map<String, Object>> active = new ArrayList<>();
+        for (Watch watch : watches.values()) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("sql", watch.sql);
+            info.put("parameters", watch.parameters);
+            info.put("keyColumns", watch.keyColumns);
+            info.put("subscribers", watch.subscribers.size());
+            active.add(info);
+        }
+        return active;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Watch watch : watches.values()) {
+            for (Subscriber subscriber : watch.subscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    private void runSafely(Watch watch) {
+        try {
+            watch.run();
+        } catch (RuntimeException e) {
+            logger.error("Watch run failed: {}", abbreviate(watch.sql), e);
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder event(String name, ExecutionResponse data) {
+        return SseEmitter.event().name(name).data(data);
+    }
+
+    /**
+     * Sends a subscriber's pending events. Must not be called while holding the
+     * watch monitor.
+     */
+    private void flush(Watch watch, Subscriber subscriber) {
+        synchronized (subscriber) {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.pending.poll()) != null) {
+                try {
+                    subscriber.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away
+                    subscriber.pending.clear();
+                    unsubscribe(watch, subscriber);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ends a watch whose target is no longer the active connection: its
+     * subscribers get an error event and their streams are completed.
+     */
+    private void stop(Watch watch) {
+        synchronized (watches) {
+            watches.remove(watch.key, watch);
+            watch.future.cancel(false);
+        }
+        ExecutionResponse failure = ExecutionResponse.failure(
+                "The connection was switched to another database; start the watch again to follow it");
+        for (Subscriber subscriber : watch.subscribers) {
+            subscriber.pending.add(event("error", failure));
+            flush(watch, subscriber);
+            subscriber.emitter.complete();
+        }
+        logger.info("Stopped watch, connection switched away from {}: {}", watch.target, abbreviate(watch.sql));
+    }
+
+    private void unsubscribe(Watch watch, Subscriber subscriber) {
+        synchronized (watches) {
+            if (!watch.subscribers.remove(subscriber)) {
+                return;
+            }
+            if (watch.subscribers.isEmpty() && watches.remove(watch.key, watch)) {
+                watch.future.cancel(false);
+                logger.info("Stopped watch, no subscribers left: {}", abbreviate(watch.sql));
+            }
+        }
+    }
+
+    private static ExecutionResponse withRowKeys(ExecutionResponse result, ResultDeltaService.RowIndex index) {
+        ExecutionResponse keyed = new ExecutionResponse(result.getColumns(), result.getRows(), null, true,
+                result.getExecutionTimeMs());
+        keyed.setRowKeys(index.rowKeys());
+        return keyed;
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() > 80 ? sql.substring(0, 80) + "..." : sql;
+    }
+}
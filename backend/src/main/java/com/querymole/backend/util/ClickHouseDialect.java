@@ -0,0 +1,119 @@
+package com.querymole.backend.util;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ClickHouse execution defaults. The driver streams results over HTTP by
+ * default, so no fetch size is needed. Limits are passed as query-level
+ * settings, which the server enforces without keeping session state:
+ * max_result_rows with result_overflow_mode 'break' stops reading once the
+ * limit is reached instead of failing, and max_execution_time bounds run time.
+ */
+@Component
+public class ClickHouseDialect implements DatabaseDialect {
+
+    private static final Pattern FORMAT_CLAUSE = Pattern.compile("\\bFORMAT\\s+\\w+", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public boolean supports(String databaseType) {
+        return "clickhouse".equals(databaseType);
+    }
+
+    @Override
+    public boolean isBackslashEscaping() {
+        return true;
+    }
+
+    @Override
+    public String applyLimits(String sql, int maxRows, int timeoutSeconds) {
+        String keyword = SqlScriptSplitter.leadingKeyword(sql);
+        if (!keyword.equals("SELECT") && !keyword.equals("WITH")) {
+            return sql;
+        }
+        // A query with its own SETTINGS clause keeps it
+        if (hasSettingsClause(sql)) {
+            return sql;
+        }
+
+        List<String> settings = new ArrayList<>();
+        if (maxRows > 0) {
+            settings.add("max_result_rows = " + maxRows);
+            settings.add("result_overflow_mode = 'break'");
+        }
+        if (timeoutSeconds > 0) {
+            settings.add("max_execution_time = " + timeoutSeconds);
+        }
+        if (settings.isEmpty()) {
+            return sql;
+        }
+
+        String body = sql.strip();
+        while (body.endsWith(";")) {
+            body = body.substring(0, body.length() - 1).stripTrailing();
+        }
+        // The newline keeps a trailing line comment from swallowing the clause
+        String clause = "\nSETTINGS " + String.join(", ", settings);
+        int format = formatClauseStart(body);
+        if (format < 0) {
+            return body + clause;
+        }
+        // SETTINGS must come before FORMAT
+        return body.substring(0, format).stripTrailing() + clause + "\n" + body.substring(format);
+    }
+
+    /**
+     * Offset of the FORMAT clause that ends the query, or -1 if it has none
+     */
+    static int formatClauseStart(String sql) {
+        List<String> tokens = SqlScriptSplitter.topLevelTokens(sql, true);
+        int count = tokens.size();
+        if (count < 2 || !tokens.get(count - 2).equals("FORMAT") || !isWord(tokens.get(count - 1))) {
+            return -1;
+        }
+        int start = -1;
+        Matcher matcher = FORMAT_CLAUSE.matcher(sql);
+        while (matcher.find()) {
+            start = matcher.start();
+        }
+        return start;
+    }
+
+    /**
+     * Whether the query ends in a SETTINGS clause of its own: the keyword
+     * followed by "name =" outside parentheses, strings and comments (so a
+     * settings_id column or a 'SETTINGS' literal does not count)
+     */
+    static boolean hasSettingsClause(String sql) {
+        List<String> tokens = SqlScriptSplitter.topLevelTokens(sql, true);
+        for (int i = tokens.size() - 3; i >= 0; i--) {
+            if (tokens.get(i).equals("SETTINGS") && isWord(tokens.get(i + 1)) && tokens.get(i + 2).equals("=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWord(String token) {
+        char first = token.charAt(0);
+        return Character.isLetter(first) || first == '_';
+    }
+
+    @Override
+    public String getRowEstimateSql() {
+        return "SELECT total_rows FROM system.tables WHERE concat(database, '.', name) = :table"
+                + " OR (database = currentDatabase() AND name = :table)";
+    }
+
+    @Override
+    public String sampleTable(String table, double fraction) {
+        // Only tables with a SAMPLE BY key can be sampled; others fail and the
+        // caller falls back to sampling the full result
+        return table + " SAMPLE " + String.format(Locale.ROOT, "%.6f", fraction);
+    }
+}
@@ -0,0 +1,318 @@
+package com.querymole.backend.util;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * File format of result snapshots: rows are stored column by column in blocks
+ * of a fixed number of rows, each column chunk compressed separately, so a
+ * page or a sort key only inflates the chunks it needs.
+ * <p>
+ * Layout: magic, format version, schema length and the schema as JSON; then
+ * the column chunks block by block; then the block index as JSON; finally a
+ * trailer holding the index offset and length and the magic again. A file
+ * without a valid trailer was not written completely.
+ * <p>
+ * Chunks hold the values of one column encoded with {@link ValueCodec}
+ * before deflate.
+ */
+public final class ColumnarSnapshotFile {
+
+    private static final int MAGIC = 0x514D5253; // "QMRS"
+    private static final int VERSION = 1;
+    private static final int TRAILER_BYTES = 16;
+
+    private ColumnarSnapshotFile() {
+    }
+
+    /**
+     * Written at the start of the file
+     */
+    public record Schema(String name, String sql, long createdAt, List<String> columns) {
+    }
+
+    /**
+     * Position of one block's column chunks: absolute offsets, compressed and
+     * uncompressed lengths
+     */
+    public record Block(long firstRow, int rowCount, long[] offsets, int[] lengths, int[] rawLengths) {
+    }
+
+    /**
+     * Written at the end of the file, once all blocks are known
+     */
+    public record Index(long rowCount, long executionTimeMs, List<Block> blocks) {
+    }
+
+    /**
+     * Appends rows and buffers one block per column in memory.
+     */
+    public static final class Writer implements Closeable {
+        private final ObjectMapper objectMapper;
+        private final ValueCodec codec;
+        private final OutputStream out;
+        private final int blockRows;
+        private final ByteArrayOutputStream[] buffers;
+        private final DataOutputStream[] columns;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final List<Block> blocks = new ArrayList<>();
+        private final byte[] deflateBuffer = new byte[64 * 1024];
+
+        private long position;
+        private long rowCount;
+        private int blockRowCount;
+
+        public Writer(ObjectMapper objectMapper, Path file, Schema schema, int blockRows) throws IOException {
+            this.objectMapper = objectMapper;
+            this.codec = new ValueCodec(objectMapper);
+            this.blockRows = blockRows;
+            this.out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+            int columnCount = schema.columns().size();
+            this.buffers = new ByteArrayOutputStream[columnCount];
+            this.columns = new DataOutputStream[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                buffers[i] = new ByteArrayOutputStream();
+                columns[i] = new DataOutputStream(buffers[i]);
+            }
+
+            byte[] schemaJson = objectMapper.writeValueAsBytes(schema);
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(MAGIC).putInt(VERSION).putInt(schemaJson.length);
+            write(header.array());
+            write(schemaJson);
+        }
+
+        /**
+         * @param values one value per column, already converted to
+         *               JSON-serializable form
+         */
+        public void append(List<?> values) throws IOException {
+            for (int i = 0; i < columns.length; i++) {
+                codec.write(columns[i], values.get(i));
+            }
+            rowCount++;
+            if (++blockRowCount == blockRows) {
+                flushBlock();
+            }
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Writes the last block, the index and the trailer.
+         */
+        public void finish(long executionTimeMs) throws IOException {
+            if (blockRowCount > 0) {
+                flushBlock();
+            }
+            byte[] indexJson = objectMapper.writeValueAsBytes(new Index(rowCount, executionTimeMs, blocks));
+            long indexOffset = position;
+            write(indexJson);
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+            trailer.putLong(indexOffset).putInt(indexJson.length).putInt(MAGIC);
+            write(trailer.array());
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            out.close();
+        }
+
+        private void flushBlock() throws IOException {
+            long[] offsets = new long[columns.length];
+            int[] lengths = new int[columns.length];
+            int[] rawLengths = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                byte[] raw = buffers[i].toByteArray();
+                buffers[i].reset();
+                offsets[i] = position;
+                rawLengths[i] = raw.length;
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                long start = position;
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(deflateBuffer);
+                    out.write(deflateBuffer, 0, count);
+                    position += count;
+                }
+                lengths[i] = (int) (position - start);
+            }
+            blocks.add(new Block(rowCount - blockRowCount, blockRowCount, offsets, lengths, rawLengths));
+            blockRowCount = 0;
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+    }
+
+    /**
+     * Reads a snapshot through a memory-mapped view of the file. Opening reads
+     * only the schema and the index; chunks are inflated when requested.
+     */
+    public static final class Reader {
+        private final ValueCodec codec;
+        private final FileChannel channel;
+        private final MappedByteBuffer mapped;
+        private final Schema schema;
+        private final Index index;
+        private final long[] firstRows;
+
+        private Reader(ObjectMapper objectMapper, FileChannel channel, MappedByteBuffer mapped, Schema schema,
+                Index index) {
+            this.codec = new ValueCodec(objectMapper);
+            this.channel = channel;
+            this.mapped = mapped;
+            this.schema = schema;
+            this.index = index;
+            this.firstRows = new long[index.blocks().size()];
+            for (int i = 0; i < firstRows.length; i++) {
+                firstRows[i] = index.blocks().get(i).firstRow();
+            }
+        }
+
+        /**
+         * @throws IOException if the file is not a complete snapshot
+         */
+        public static Reader open(ObjectMapper objectMapper, Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                // Files over 2 GB are mapped chunk by chunk instead
+                MappedByteBuffer mapped = size <= Integer.MAX_VALUE
+                        ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                        : null;
+                if (size < 12 + TRAILER_BYTES) {
+                    throw new IOException("Not a result snapshot: " + file);
+                }
+                ByteBuffer head = region(channel, mapped, 0, 12);
+                if (head.getInt() != MAGIC || head.getInt() != VERSION) {
+                    throw new IOException("Not a result snapshot: " + file);
+                }
+                Schema schema = objectMapper.readValue(bytes(region(channel, mapped, 12, head.getInt())), Schema.class);
+                ByteBuffer trailer = region(channel, mapped, size - TRAILER_BYTES, TRAILER_BYTES);
+                long indexOffset = trailer.getLong();
+                int indexLength = trailer.getInt();
+                if (trailer.getInt() != MAGIC) {
+                    throw new IOException("Incomplete result snapshot: " + file);
+                }
+                Index index = objectMapper.readValue(bytes(region(channel, mapped, indexOffset, indexLength)),
+                        Index.class);
+                return new Reader(objectMapper, channel, mapped, schema, index);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        public Schema getSchema() {
+            return schema;
+        }
+
+        public Index getIndex() {
+            return index;
+        }
+
+        public int getBlockCount() {
+            return firstRows.length;
+        }
+
+        /**
+         * Block holding the given row
+         */
+        public int blockOf(long row) {
+            int low = 0;
+            int high = firstRows.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (firstRows[mid] <= row) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Inflates and decodes one column chunk.
+         */
+        public Object[] readChunk(int block, int column) throws IOException {
+            Block entry = index.blocks().get(block);
+            ByteBuffer compressed = region(channel, mapped, entry.offsets()[column], entry.lengths()[column]);
+            byte[] raw = new byte[entry.rawLengths()[column]];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                int inflated = 0;
+                while (inflated < raw.length && !inflater.finished()) {
+                    int count = inflater.inflate(raw, inflated, raw.length - inflated);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                if (inflated != raw.length) {
+                    throw new IOException("Truncated chunk in block " + block + ", column " + column);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt chunk in block " + block + ", column " + column, e);
+            } finally {
+                inflater.end();
+            }
+            return decode(raw, entry.rowCount());
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private Object[] decode(byte[] raw, int rowCount) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+            Object[] values = new Object[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                values[i] = codec.read(in);
+            }
+            return values;
+        }
+    }
+
+    private static ByteBuffer region(FileChannel channel, MappedByteBuffer mapped, long offset, int length)
+            throws IOException {
+        if (mapped != null) {
+            return mapped.slice((int) offset, length);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
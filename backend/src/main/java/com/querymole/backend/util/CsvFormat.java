@@ -0,0 +1,36 @@
+package com.querymole.backend.util;
+
+import java.util.List;
+
+/**
+ * CSV formatting shared by the exports.
+ */
+public final class CsvFormat {
+
+    private CsvFormat() {
+    }
+
+    /**
+     * RFC 4180 row: fields containing a separator, quote or line break are
+     * quoted, with quotes doubled; null is an empty field.
+     */
+    public static void appendRow(StringBuilder line, List<?> values) {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            Object value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0
+                    || text.indexOf('\r') >= 0) {
+                line.append('"').append(text.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(text);
+            }
+        }
+        line.append("\r\n");
+    }
+}
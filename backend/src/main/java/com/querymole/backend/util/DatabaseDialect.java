@@ -0,0 +1,117 @@
+package com.querymole.backend.util;
+
+import java.util.Properties;
+
+/**
+ * Per-engine execution defaults. Each database (PostgreSQL, MySQL, ClickHouse,
+ * etc.) can implement this interface to tune how queries are run against it:
+ * how results are streamed, how a read-only transaction and a statement
+ * timeout are requested, and how a row limit is pushed into the SQL.
+ * <p>
+ * Every method has a neutral default, so an implementation only overrides what
+ * its engine does differently.
+ */
+public interface DatabaseDialect {
+
+    /**
+     * Checks if this dialect applies to the given database type.
+     *
+     * @param databaseType The type detected by DriverLoaderService, e.g.
+     *                     "postgresql"
+     * @return true if this dialect handles the database type
+     */
+    boolean supports(String databaseType);
+
+    /**
+     * Driver properties applied to every connection. Settings given explicitly
+     * in the JDBC URL take precedence.
+     */
+    default Properties getConnectionProperties() {
+        return new Properties();
+    }
+
+    /**
+     * Fetch size that makes the driver stream rows instead of buffering the
+     * whole result, or 0 to keep the driver default.
+     */
+    default int getFetchSize() {
+        return 0;
+    }
+
+    /**
+     * Whether closing a partly read result makes the driver read the rest, so
+     * the statement should be cancelled first when reading stops early.
+     */
+    default boolean isEarlyCloseDraining() {
+        return false;
+    }
+
+    /**
+     * Whether the fetch size is only honoured inside a transaction (a
+     * server-side cursor), so autocommit must be turned off while reading.
+     */
+    default boolean isCursorTransactional() {
+        return false;
+    }
+
+    /**
+     * Whether a backslash escapes the next character in string literals, so a
+     * script splitter must not end a literal at an escaped quote.
+     */
+    default boolean isBackslashEscaping() {
+        return false;
+    }
+
+    /**
+     * SQL issued at the start of a transaction to make it read-only, or null to
+     * rely on Connection.setReadOnly.
+     */
+    default String getReadOnlyTransactionSql() {
+        return null;
+    }
+
+    /**
+     * SQL issued inside the transaction to limit statement run time, or null to
+     * rely on Statement.setQueryTimeout. The setting must be scoped to the
+     * transaction, since pooled connections are reused.
+     */
+    default String getStatementTimeoutSql(int timeoutSeconds) {
+        return null;
+    }
+
+    /**
+     * Pushes a row limit and a run time limit into the query text, for engines
+     * that take them as per-query settings. Either limit may be 0 (none). The
+     * executor always caps the result with Statement.setMaxRows as well, so the
+     * SQL is returned unchanged by default.
+     */
+    default String applyLimits(String sql, int maxRows, int timeoutSeconds) {
+        return sql;
+    }
+
+    /**
+     * Query returning the catalog's row count estimate for the table given as
+     * the named parameter :table, or null if the engine keeps none.
+     */
+    default String getRowEstimateSql() {
+        return null;
+    }
+
+    /**
+     * Statement that plans the given query without running it, with the
+     * planner's estimate of the rows the query returns in the first column of
+     * its first row as "rows=N", or null if the engine gives no such estimate.
+     */
+    default String getExplainSql(String sql) {
+        return null;
+    }
+
+    /**
+     * Table reference that reads a server-side sample of about the given
+     * fraction (0 < fraction <= 1) of the table's rows, or null if the engine
+     * cannot sample natively.
+     */
+    default String sampleTable(String table, double fraction) {
+        return null;
+    }
+}
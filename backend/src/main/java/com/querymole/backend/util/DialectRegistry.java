@@ -0,0 +1,37 @@
+package com.querymole.backend.util;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Registry for database dialects.
+ * Automatically discovers all registered DatabaseDialect beans and resolves the
+ * one matching a detected database type, falling back to GenericDialect.
+ */
+@Component
+public class DialectRegistry {
+
+    private static final DatabaseDialect GENERIC = new GenericDialect();
+
+    private final List<DatabaseDialect> dialects;
+
+    public DialectRegistry(List<DatabaseDialect> dialects) {
+        this.dialects = dialects;
+    }
+
+    /**
+     * Returns the dialect for a database type as reported by
+     * DriverLoaderService.detectDatabaseType.
+     */
+    public DatabaseDialect forType(String databaseType) {
+        if (databaseType != null) {
+            for (DatabaseDialect dialect : dialects) {
+                if (dialect.supports(databaseType)) {
+                    return dialect;
+                }
+            }
+        }
+        return GENERIC;
+    }
+}
@@ -0,0 +1,14 @@
+package com.querymole.backend.util;
+
+/**
+ * Fallback for databases without a dedicated dialect: driver defaults, with
+ * limits applied through the standard JDBC Statement and Connection settings.
+ * Not a bean, so it is never picked ahead of a dedicated dialect.
+ */
+public class GenericDialect implements DatabaseDialect {
+
+    @Override
+    public boolean supports(String databaseType) {
+        return true;
+    }
+}
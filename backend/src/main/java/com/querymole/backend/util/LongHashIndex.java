@@ -0,0 +1,109 @@
+package com.querymole.backend.util;
+
+import java.util.Arrays;
+
+/**
+ * Multimap from 64-bit keys to row numbers, for hash joins. Keys live in an
+ * open-addressing table of primitive longs holding the last row added per key;
+ * rows with the same key are chained through a parallel int array, so no
+ * boxing or per-entry objects are allocated however many rows are indexed.
+ * <p>
+ * Rows must be added in increasing order starting at 0. Not thread-safe.
+ */
+public final class LongHashIndex {
+
+    private static final int NONE = -1;
+
+    private long[] keys;
+    private int[] heads;
+    private int[] next;
+    private int mask;
+    private int size;
+
+    public LongHashIndex(int expectedRows) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedRows * 2 - 1)) << 1;
+        allocate(capacity);
+        next = new int[Math.max(16, expectedRows)];
+    }
+
+    /**
+     * Indexes the given row under the given key.
+     */
+    public void add(long key, int row) {
+        if (row >= next.length) {
+            next = Arrays.copyOf(next, Math.max(row + 1, next.length * 2));
+        }
+        int slot = slot(key);
+        if (heads[slot] == NONE) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash();
+                slot = slot(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        next[row] = heads[slot];
+        heads[slot] = row;
+    }
+
+    /**
+     * Most recently added row with the given key, or -1
+     */
+    public int first(long key) {
+        return heads[slot(key)];
+    }
+
+    /**
+     * Previously added row with the same key as the given one, or -1
+     */
+    public int next(int row) {
+        return next[row];
+    }
+
+    /**
+     * Number of distinct keys
+     */
+    public int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        int slot = mix(key) & mask;
+        while (heads[slot] != NONE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] != NONE) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                heads[slot] = oldHeads[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        heads = new int[capacity];
+        Arrays.fill(heads, NONE);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Spreads sequential ids over the table (murmur3 finalizer)
+     */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,29 @@
+package com.querymole.backend.util;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * MariaDB execution defaults. Same as MySQL, except that MariaDB Connector/J
+ * streams with a regular positive fetch size and rejects Integer.MIN_VALUE.
+ */
+@Component
+public class MariaDbDialect extends MySqlDialect {
+
+    private static final int FETCH_SIZE = 1000;
+
+    @Override
+    public boolean supports(String databaseType) {
+        return "mariadb".equals(databaseType);
+    }
+
+    @Override
+    public int getFetchSize() {
+        return FETCH_SIZE;
+    }
+
+    @Override
+    public String getExplainSql(String sql) {
+        // MariaDB has no tree format, and its tabular plan gives rows per table
+        return null;
+    }
+}
@@ -0,0 +1,55 @@
+package com.querymole.backend.util;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Properties;
+
+/**
+ * MySQL execution defaults. Connector/J streams a result row by row only when
+ * the fetch size is Integer.MIN_VALUE on a forward-only, read-only statement.
+ * Read-only mode, query timeouts and row limits are already sent to the server
+ * by the driver (SET SESSION TRANSACTION READ ONLY, KILL QUERY and
+ * SQL_SELECT_LIMIT).
+ */
+@Component
+public class MySqlDialect implements DatabaseDialect {
+
+    @Override
+    public boolean supports(String databaseType) {
+        return "mysql".equals(databaseType);
+    }
+
+    @Override
+    public Properties getConnectionProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("cachePrepStmts", "true");
+        properties.setProperty("useServerPrepStmts", "true");
+        properties.setProperty("prepStmtCacheSize", "256");
+        properties.setProperty("prepStmtCacheSqlLimit", "4096");
+        return properties;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public boolean isEarlyCloseDraining() {
+        // A streaming result set drains the connection when closed
+        return true;
+    }
+
+    @Override
+    public boolean isBackslashEscaping() {
+        // Unless the server runs with NO_BACKSLASH_ESCAPES
+        return true;
+    }
+
+    @Override
+    public String getExplainSql(String sql) {
+        // The tree format (8.0.16 and later) starts with the top iterator, e.g.
+        // "-> Filter: (t.a > 1)  (cost=10.25 rows=33)"
+        return "EXPLAIN FORMAT=TREE " + sql;
+    }
+}
@@ -0,0 +1,83 @@
+package com.querymole.backend.util;
+
+import com.querymole.backend.model.QueryParameter;
+import org.springframework.jdbc.core.SqlParameterValue;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.Locale;
+
+/**
+ * Converts raw parameter values (as received in JSON or stored as defaults) to
+ * typed JDBC values according to the declared {@link QueryParameter} type.
+ */
+public final class ParameterValueConverter {
+
+    private ParameterValueConverter() {
+    }
+
+    /**
+     * Converts a raw value to a typed SQL parameter value. A null value is bound
+     * as a typed SQL NULL.
+     *
+     * @throws IllegalArgumentException if the value cannot be converted
+     */
+    public static SqlParameterValue toSqlValue(QueryParameter parameter, Object raw) {
+        String type = parameter.getType() != null ? parameter.getType().toUpperCase(Locale.ROOT) : "STRING";
+        try {
+            switch (type) {
+                case "INTEGER":
+                    return new SqlParameterValue(Types.BIGINT, raw == null ? null : toLong(raw));
+                case "DECIMAL":
+                    return new SqlParameterValue(Types.NUMERIC, raw == null ? null : new BigDecimal(raw.toString().trim()));
+                case "BOOLEAN":
+                    return new SqlParameterValue(Types.BOOLEAN, raw == null ? null : toBoolean(raw));
+                case "DATE":
+                    return new SqlParameterValue(Types.DATE,
+                            raw == null ? null : Date.valueOf(LocalDate.parse(raw.toString().trim())));
+                case "TIMESTAMP":
+                    return new SqlParameterValue(Types.TIMESTAMP, raw == null ? null : toTimestamp(raw.toString().trim()));
+                default:
+                    return new SqlParameterValue(Types.VARCHAR, raw == null ? null : raw.toString());
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(
+                    "Invalid value for parameter :" + parameter.getName() + " (" + type + "): " + raw, e);
+        }
+    }
+
+    private static Long toLong(Object raw) {
+        if (raw instanceof Number) {
+            return ((Number) raw).longValue();
+        }
+        return Long.parseLong(raw.toString().trim());
+    }
+
+    private static Boolean toBoolean(Object raw) {
+        if (raw instanceof Boolean) {
+            return (Boolean) raw;
+        }
+        String text = raw.toString().trim().toLowerCase(Locale.ROOT);
+        if (text.equals("true") || text.equals("t") || text.equals("1") || text.equals("yes")) {
+            return true;
+        }
+        if (text.equals("false") || text.equals("f") || text.equals("0") || text.equals("no")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Not a boolean: " + raw);
+    }
+
+    private static Timestamp toTimestamp(String text) {
+        // Accept both local ("2024-01-31T10:00:00") and offset ("...Z", "...+02:00") forms
+        try {
+            return Timestamp.valueOf(LocalDateTime.parse(text));
+        } catch (RuntimeException e) {
+            return Timestamp.from(OffsetDateTime.parse(text).toInstant());
+        }
+    }
+}
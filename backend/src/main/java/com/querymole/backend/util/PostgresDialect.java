@@ -0,0 +1,75 @@
+package com.querymole.backend.util;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * PostgreSQL execution defaults. The driver only fetches rows in batches
+ * through a portal when autocommit is off and a fetch size is set; otherwise
+ * the whole result is buffered on the client. Row limits need no rewriting
+ * since the driver passes Statement.setMaxRows to the server.
+ */
+@Component
+public class PostgresDialect implements DatabaseDialect {
+
+    private static final int FETCH_SIZE = 1000;
+
+    @Override
+    public boolean supports(String databaseType) {
+        return "postgresql".equals(databaseType);
+    }
+
+    @Override
+    public Properties getConnectionProperties() {
+        Properties properties = new Properties();
+        // Switch to a named server-side statement on the second execution
+        properties.setProperty("prepareThreshold", "2");
+        properties.setProperty("preparedStatementCacheQueries", "256");
+        return properties;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return FETCH_SIZE;
+    }
+
+    @Override
+    public boolean isCursorTransactional() {
+        return true;
+    }
+
+    @Override
+    public String getReadOnlyTransactionSql() {
+        return "SET TRANSACTION READ ONLY";
+    }
+
+    @Override
+    public String getStatementTimeoutSql(int timeoutSeconds) {
+        // SET LOCAL is reset when the transaction ends
+        return "SET LOCAL statement_timeout = " + (timeoutSeconds * 1000L);
+    }
+
+    @Override
+    public String getRowEstimateSql() {
+        // reltuples is -1 for tables never vacuumed or analyzed. to_regclass takes
+        // cstring before PostgreSQL 14, which a varchar bind does not resolve to;
+        // the cast from text resolves on every version (and fails for a missing
+        // table, which leaves the estimate unknown)
+        return "SELECT reltuples::bigint FROM pg_class WHERE oid = CAST(CAST(:table AS text) AS regclass)";
+    }
+
+    @Override
+    public String getExplainSql(String sql) {
+        // The first line describes the top plan node, e.g.
+        // "Seq Scan on t  (cost=0.00..35.50 rows=2550 width=4)"
+        return "EXPLAIN " + sql;
+    }
+
+    @Override
+    public String sampleTable(String table, double fraction) {
+        // SYSTEM picks whole pages, which is fast but clusters rows by page
+        return table + " TABLESAMPLE SYSTEM (" + String.format(Locale.ROOT, "%.6f", fraction * 100) + ")";
+    }
+}
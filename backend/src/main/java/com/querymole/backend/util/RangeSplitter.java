@@ -0,0 +1,102 @@
+package com.querymole.backend.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Divides the value range of a numeric or timestamp column into contiguous
+ * chunks of equal width. Boundaries have the same Java type as the column's
+ * minimum, so they bind to the column without casts (and indexes stay usable).
+ */
+public final class RangeSplitter {
+
+    private RangeSplitter() {
+    }
+
+    /**
+     * Returns ascending, distinct boundaries b0..bk (k <= partitions) with b0 =
+     * min and bk = max. Chunk i covers [b(i), b(i+1)), the last one also
+     * includes max.
+     *
+     * @throws IllegalArgumentException if the values are neither numbers nor
+     *                                  timestamps or dates
+     */
+    public static List<Object> boundaries(Object min, Object max, int partitions) {
+        Function<Object, BigDecimal> toNumber;
+        Function<BigDecimal, Object> fromNumber;
+        if (min instanceof Long || min instanceof Integer || min instanceof Short || min instanceof Byte
+                || min instanceof BigInteger) {
+            toNumber = value -> new BigDecimal(value.toString());
+            fromNumber = number -> convertIntegral(min, number.setScale(0, RoundingMode.FLOOR));
+        } else if (min instanceof BigDecimal) {
+            toNumber = value -> (BigDecimal) value;
+            fromNumber = number -> number;
+        } else if (min instanceof Double || min instanceof Float) {
+            toNumber = value -> BigDecimal.valueOf(((Number) value).doubleValue());
+            fromNumber = BigDecimal::doubleValue;
+        } else if (min instanceof Timestamp) {
+            toNumber = value -> BigDecimal.valueOf(((Timestamp) value).getTime());
+            fromNumber = number -> new Timestamp(number.longValue());
+        } else if (min instanceof java.sql.Date) {
+            toNumber = value -> BigDecimal.valueOf(((java.sql.Date) value).toLocalDate().toEpochDay());
+            fromNumber = number -> java.sql.Date.valueOf(LocalDate.ofEpochDay(number.longValue()));
+        } else if (min instanceof LocalDate) {
+            toNumber = value -> BigDecimal.valueOf(((LocalDate) value).toEpochDay());
+            fromNumber = number -> LocalDate.ofEpochDay(number.longValue());
+        } else if (min instanceof LocalDateTime) {
+            toNumber = value -> BigDecimal.valueOf(((LocalDateTime) value).toInstant(ZoneOffset.UTC).toEpochMilli());
+            fromNumber = number -> LocalDateTime.ofInstant(Instant.ofEpochMilli(number.longValue()), ZoneOffset.UTC);
+        } else if (min instanceof OffsetDateTime) {
+            toNumber = value -> BigDecimal.valueOf(((OffsetDateTime) value).toInstant().toEpochMilli());
+            fromNumber = number -> OffsetDateTime.ofInstant(Instant.ofEpochMilli(number.longValue()),
+                    ((OffsetDateTime) min).getOffset());
+        } else if (min instanceof Instant) {
+            toNumber = value -> BigDecimal.valueOf(((Instant) value).toEpochMilli());
+            fromNumber = number -> Instant.ofEpochMilli(number.longValue());
+        } else {
+            throw new IllegalArgumentException("Split column must be numeric or a timestamp, found "
+                    + (min == null ? "null" : min.getClass().getSimpleName()));
+        }
+
+        BigDecimal low = toNumber.apply(min);
+        BigDecimal high = toNumber.apply(max);
+        BigDecimal width = high.subtract(low);
+        List<Object> boundaries = new ArrayList<>(partitions + 1);
+        boundaries.add(min);
+        BigDecimal previous = low;
+        for (int i = 1; i < partitions; i++) {
+            BigDecimal step = width.multiply(BigDecimal.valueOf(i))
+                    .divide(BigDecimal.valueOf(partitions), MathContext.DECIMAL128);
+            Object boundary = fromNumber.apply(low.add(step));
+            BigDecimal position = toNumber.apply(boundary);
+            // Narrow integral or date ranges yield fewer, non-empty chunks
+            if (position.compareTo(previous) > 0 && position.compareTo(high) < 0) {
+                boundaries.add(boundary);
+                previous = position;
+            }
+        }
+        if (high.compareTo(low) > 0) {
+            boundaries.add(max);
+        }
+        return boundaries;
+    }
+
+    private static Object convertIntegral(Object type, BigDecimal number) {
+        if (type instanceof BigInteger) {
+            return number.toBigIntegerExact();
+        }
+        // Long also binds to int and smallint columns through cross-type operators
+        return number.longValueExact();
+    }
+}
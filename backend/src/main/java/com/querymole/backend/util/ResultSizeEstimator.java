@@ -0,0 +1,133 @@
+package com.querymole.backend.util;
+
+import java.math.BigDecimal;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the heap footprint of result rows as they are fetched. Columns of
+ * fixed-width SQL types get a constant per-value size taken from the result
+ * set metadata; only variable-width values (text, binary, converted driver
+ * objects) are measured. The figures are approximations for budgeting, not
+ * exact object sizes.
+ */
+public final class ResultSizeEstimator {
+
+    /**
+     * HashMap object and table plus the row's slot in the result list
+     */
+    private static final long ROW_OVERHEAD = 80;
+
+    /**
+     * HashMap.Node per column
+     */
+    private static final long ENTRY_OVERHEAD = 32;
+
+    private static final long OBJECT_HEADER = 16;
+    private static final long STRING_OVERHEAD = 40;
+    private static final long VARIABLE_WIDTH = -1;
+
+    private final long[] fixedSizes;
+
+    public ResultSizeEstimator(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        this.fixedSizes = new long[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            fixedSizes[i] = fixedSize(metaData.getColumnType(i + 1));
+        }
+    }
+
+    /**
+     * Estimated size of one row; values must be in column order.
+     */
+    public long estimateRow(List<String> columns, Map<String, Object> row) {
+        long size = ROW_OVERHEAD + ENTRY_OVERHEAD * columns.size();
+        for (int i = 0; i < columns.size(); i++) {
+            Object value = row.get(columns.get(i));
+            if (value == null) {
+                continue;
+            }
+            long fixed = i < fixedSizes.length ? fixedSizes[i] : VARIABLE_WIDTH;
+            size += fixed != VARIABLE_WIDTH ? fixed : estimateValue(value);
+        }
+        return size;
+    }
+
+    /**
+     * Estimated size of a single value, following nested collections produced
+     * by the type converters.
+     */
+    public static long estimateValue(Object value) {
+        if (value == null || value instanceof Boolean) {
+            return 0;
+        }
+        if (value instanceof CharSequence text) {
+            // Two bytes per char covers non-Latin-1 strings
+            return STRING_OVERHEAD + 2L * text.length();
+        }
+        if (value instanceof byte[] bytes) {
+            return OBJECT_HEADER + bytes.length;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte || value instanceof Float) {
+            return OBJECT_HEADER;
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return OBJECT_HEADER + 8;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return 40 + decimal.unscaledValue().bitLength() / 8;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 48 + ENTRY_OVERHEAD * map.size();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += estimateValue(entry.getKey()) + estimateValue(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = 40 + 8L * collection.size();
+            for (Object element : collection) {
+                size += estimateValue(element);
+            }
+            return size;
+        }
+        if (value instanceof Object[] array) {
+            long size = OBJECT_HEADER + 8L * array.length;
+            for (Object element : array) {
+                size += estimateValue(element);
+            }
+            return size;
+        }
+        // Dates, times, UUIDs and other small value objects
+        return 48;
+    }
+
+    private static long fixedSize(int sqlType) {
+        switch (sqlType) {
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return 0;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.REAL:
+                return OBJECT_HEADER;
+            case Types.BIGINT:
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                return OBJECT_HEADER + 8;
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+            case Types.TIME_WITH_TIMEZONE:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return 48;
+            default:
+                return VARIABLE_WIDTH;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.querymole.backend.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * Validation of identifiers that are spliced into generated SQL.
+ */
+public final class SqlIdentifiers {
+
+    /**
+     * Plain or double-quoted names, optionally qualified (schema.table)
+     */
+    private static final Pattern QUALIFIED_NAME = Pattern
+            .compile("(\"[^\"]+\"|[A-Za-z_][A-Za-z0-9_$]*)(\\.(\"[^\"]+\"|[A-Za-z_][A-Za-z0-9_$]*))*");
+
+    private SqlIdentifiers() {
+    }
+
+    public static boolean isQualifiedName(String name) {
+        return name != null && QUALIFIED_NAME.matcher(name).matches();
+    }
+
+    /**
+     * A query with trailing semicolons removed, so it can be nested
+     */
+    public static String stripTrailingSemicolons(String sql) {
+        String body = sql.strip();
+        while (body.endsWith(";")) {
+            body = body.substring(0, body.length() - 1).stripTrailing();
+        }
+        return body;
+    }
+}
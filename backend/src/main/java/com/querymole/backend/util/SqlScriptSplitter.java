@@ -0,0 +1,284 @@
+package com.querymole.backend.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a SQL script into individual statements on top-level semicolons.
+ * Semicolons inside string literals, quoted identifiers, dollar-quoted bodies
+ * (PostgreSQL functions and DO blocks) and comments are ignored.
+ * Statements that consist only of comments and whitespace are dropped.
+ */
+public final class SqlScriptSplitter {
+
+    private static final Set<String> BATCHABLE_KEYWORDS = Set.of("INSERT", "UPDATE", "DELETE", "MERGE", "REPLACE",
+            "UPSERT");
+
+    private static final Set<String> QUERY_KEYWORDS = Set.of("SELECT", "WITH", "VALUES", "TABLE", "SHOW",
+            "EXPLAIN");
+
+    private static final Pattern RETURNING = Pattern.compile("\\bRETURNING\\b", Pattern.CASE_INSENSITIVE);
+
+    private SqlScriptSplitter() {
+    }
+
+    /**
+     * Splits the script into statements, trimmed and without the terminating
+     * semicolon. Backslash escapes are honoured only in E'...' strings, as in
+     * PostgreSQL and standard SQL.
+     *
+     * @param script The SQL script
+     * @return The statements in script order
+     */
+    public static List<String> split(String script) {
+        return split(script, false);
+    }
+
+    /**
+     * Like {@link #split(String)}.
+     *
+     * @param backslashEscapes whether a backslash escapes the next character
+     *                         in every quoted string, as in MySQL and
+     *                         ClickHouse
+     */
+    public static List<String> split(String script, boolean backslashEscapes) {
+        List<String> statements = new ArrayList<>();
+        if (script == null || script.isEmpty()) {
+            return statements;
+        }
+
+        int length = script.length();
+        int start = 0;
+        boolean hasCode = false;
+        int i = 0;
+        while (i < length) {
+            char c = script.charAt(i);
+            char next = i + 1 < length ? script.charAt(i + 1) : '\0';
+
+            if (c == '-' && next == '-') {
+                i = skipLineComment(script, i);
+                continue;
+            }
+            if (c == '/' && next == '*') {
+                i = skipBlockComment(script, i);
+                continue;
+            }
+
+            if (c == ';') {
+                if (hasCode) {
+                    statements.add(script.substring(start, i).trim());
+                }
+                start = i + 1;
+                hasCode = false;
+                i++;
+                continue;
+            }
+
+            hasCode |= !Character.isWhitespace(c);
+
+            if (c == '\'') {
+                // E'...' strings (PostgreSQL) allow backslash escapes
+                boolean escapeString = backslashEscapes
+                        || i > 0 && (script.charAt(i - 1) == 'E' || script.charAt(i - 1) == 'e')
+                                && (i < 2 || !isIdentifierPart(script.charAt(i - 2)));
+                i = skipQuoted(script, i, '\'', escapeString);
+            } else if (c == '"' || c == '`') {
+                i = skipQuoted(script, i, c, backslashEscapes && c == '"');
+            } else if (c == '$' && (i == 0 || !isIdentifierPart(script.charAt(i - 1)))) {
+                i = skipDollarQuoted(script, i);
+            } else {
+                i++;
+            }
+        }
+
+        if (hasCode) {
+            statements.add(script.substring(start).trim());
+        }
+        return statements;
+    }
+
+    /**
+     * Returns the first keyword of the statement in upper case, skipping leading
+     * whitespace and comments. Returns an empty string if there is none.
+     */
+    public static String leadingKeyword(String statement) {
+        int length = statement.length();
+        int i = 0;
+        while (i < length) {
+            char c = statement.charAt(i);
+            char next = i + 1 < length ? statement.charAt(i + 1) : '\0';
+            if (Character.isWhitespace(c) || c == '(') {
+                i++;
+            } else if (c == '-' && next == '-') {
+                i = skipLineComment(statement, i);
+            } else if (c == '/' && next == '*') {
+                i = skipBlockComment(statement, i);
+            } else {
+                break;
+            }
+        }
+        int end = i;
+        while (end < length && Character.isLetter(statement.charAt(end))) {
+            end++;
+        }
+        return statement.substring(i, end).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the tokens of the statement outside parentheses, skipping
+     * comments: words in upper case, other characters one by one, and each
+     * string literal or quoted identifier as a single "'" token.
+     */
+    public static List<String> topLevelTokens(String statement) {
+        return topLevelTokens(statement, false);
+    }
+
+    /**
+     * Like {@link #topLevelTokens(String)}.
+     *
+     * @param backslashEscapes whether a backslash escapes the next character
+     *                         in string literals
+     */
+    public static List<String> topLevelTokens(String statement, boolean backslashEscapes) {
+        List<String> tokens = new ArrayList<>();
+        int length = statement.length();
+        int depth = 0;
+        int i = 0;
+        while (i < length) {
+            char c = statement.charAt(i);
+            char next = i + 1 < length ? statement.charAt(i + 1) : '\0';
+            if (c == '-' && next == '-') {
+                i = skipLineComment(statement, i);
+            } else if (c == '/' && next == '*') {
+                i = skipBlockComment(statement, i);
+            } else if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(statement, i, c, backslashEscapes && c != '`');
+                if (depth == 0) {
+                    tokens.add("'");
+                }
+            } else if (c == '$' && (i == 0 || !isIdentifierPart(statement.charAt(i - 1)))) {
+                int end = skipDollarQuoted(statement, i);
+                if (depth == 0) {
+                    tokens.add(end > i + 1 ? "'" : "$");
+                }
+                i = end;
+            } else if (isIdentifierPart(c)) {
+                int end = i;
+                while (end < length && isIdentifierPart(statement.charAt(end))) {
+                    end++;
+                }
+                if (depth == 0) {
+                    tokens.add(statement.substring(i, end).toUpperCase(Locale.ROOT));
+                }
+                i = end;
+            } else {
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth = Math.max(0, depth - 1);
+                } else if (depth == 0 && !Character.isWhitespace(c)) {
+                    tokens.add(String.valueOf(c));
+                }
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Checks whether a statement can be sent as part of a JDBC batch: plain DML
+     * that produces only an update count.
+     */
+    public static boolean isBatchable(String statement) {
+        return BATCHABLE_KEYWORDS.contains(leadingKeyword(statement)) && !RETURNING.matcher(statement).find();
+    }
+
+    /**
+     * Checks whether a statement is a query that returns rows, such as SELECT or
+     * WITH, as opposed to DML, DDL or maintenance commands.
+     */
+    public static boolean isQuery(String statement) {
+        return QUERY_KEYWORDS.contains(leadingKeyword(statement));
+    }
+
+    private static int skipLineComment(String sql, int i) {
+        int end = sql.indexOf('\n', i);
+        return end < 0 ? sql.length() : end + 1;
+    }
+
+    /**
+     * Skips a block comment. PostgreSQL allows block comments to nest, so the
+     * nesting depth is tracked.
+     */
+    private static int skipBlockComment(String sql, int i) {
+        int depth = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            char next = i + 1 < length ? sql.charAt(i + 1) : '\0';
+            if (c == '/' && next == '*') {
+                depth++;
+                i += 2;
+            } else if (c == '*' && next == '/') {
+                depth--;
+                i += 2;
+                if (depth == 0) {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    private static int skipQuoted(String sql, int i, char quote, boolean backslashEscapes) {
+        int length = sql.length();
+        i++;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (backslashEscapes && c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                // A doubled quote is an escaped quote
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Skips a dollar-quoted string such as $$ ... $$ or $body$ ... $body$.
+     * A '$' that does not open a valid tag (e.g. the $1 positional parameter) is
+     * skipped as a single character.
+     */
+    private static int skipDollarQuoted(String sql, int i) {
+        int length = sql.length();
+        int tagEnd = i + 1;
+        if (tagEnd < length && Character.isDigit(sql.charAt(tagEnd))) {
+            return i + 1;
+        }
+        while (tagEnd < length && isIdentifierPart(sql.charAt(tagEnd))) {
+            tagEnd++;
+        }
+        if (tagEnd >= length || sql.charAt(tagEnd) != '$') {
+            return i + 1;
+        }
+        String tag = sql.substring(i, tagEnd + 1);
+        int close = sql.indexOf(tag, tagEnd + 1);
+        return close < 0 ? length : close + tag.length();
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,82 @@
+package com.querymole.backend.util;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of converted result values, used by snapshot files and
+ * spill files: a tag byte followed by the payload. Longs and doubles are
+ * stored as 8 bytes, strings and decimals as length-prefixed UTF-8, and any
+ * other value (dates, maps, arrays) as JSON, so it reads back the way the live
+ * result serialized it. Integral values read back as Long.
+ */
+public final class ValueCodec {
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_LONG = 1;
+    private static final byte TAG_DOUBLE = 2;
+    private static final byte TAG_TRUE = 3;
+    private static final byte TAG_FALSE = 4;
+    private static final byte TAG_STRING = 5;
+    private static final byte TAG_DECIMAL = 6;
+    private static final byte TAG_JSON = 7;
+
+    private final ObjectMapper objectMapper;
+
+    public ValueCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public void write(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                || value instanceof Byte) {
+            out.writeByte(TAG_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean flag) {
+            out.writeByte(flag ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof String text) {
+            writeBytes(out, TAG_STRING, text.getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof BigDecimal decimal) {
+            writeBytes(out, TAG_DECIMAL, decimal.toString().getBytes(StandardCharsets.US_ASCII));
+        } else {
+            writeBytes(out, TAG_JSON, objectMapper.writeValueAsBytes(value));
+        }
+    }
+
+    public Object read(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_LONG -> in.readLong();
+            case TAG_DOUBLE -> in.readDouble();
+            case TAG_TRUE -> Boolean.TRUE;
+            case TAG_FALSE -> Boolean.FALSE;
+            case TAG_STRING -> new String(readBytes(in), StandardCharsets.UTF_8);
+            case TAG_DECIMAL -> new BigDecimal(new String(readBytes(in), StandardCharsets.US_ASCII));
+            case TAG_JSON -> objectMapper.readValue(readBytes(in), Object.class);
+            default -> throw new IOException("Unknown value tag " + tag);
+        };
+    }
+
+    private static void writeBytes(DataOutput out, byte tag, byte[] bytes) throws IOException {
+        out.writeByte(tag);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
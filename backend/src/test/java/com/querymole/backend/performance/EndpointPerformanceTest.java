@@ -0,0 +1,313 @@
+package com.querymole.backend.performance;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.abort;
+
+/**
+ * Performance regression suite: seeds in-memory H2 tables of mixed column
+ * types and drives the HTTP endpoints end to end, measuring per scenario and
+ * table size the latency, time to first byte, peak heap and bytes allocated
+ * by the JVM (all threads, so server threads are included). Medians of the
+ * measured iterations are compared with the baselines in
+ * {@code src/test/resources/performance/baselines.properties}; a metric above
+ * its baseline plus tolerance fails the scenario. A scenario with metrics
+ * that have no baseline yet (e.g. a table size never recorded) is skipped
+ * with a message naming them, after its other metrics are checked.
+ * <p>
+ * Excluded from {@code test}; run with {@code ./gradlew perfTest}. System
+ * properties: {@code perf.rows} (comma-separated table sizes, default
+ * 100000), {@code perf.iterations}, {@code perf.warmup}, and
+ * {@code perf.updateBaselines} to write the measurements as new baselines
+ * to {@code perf.outputDir}.
+ */
+@Tag("performance")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:perf;DB_CLOSE_DELAY=-1",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"querymole.snapshots.dir=${java.io.tmpdir}/querymole-perf-snapshots" })
+class EndpointPerformanceTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(EndpointPerformanceTest.class);
+
+	private static final String BASELINES = "/performance/baselines.properties";
+	private static final List<String> METRICS = List.of("latencyMs", "ttfbMs", "peakHeapMb", "allocatedMb");
+
+	private final ObjectMapper objectMapper = JsonMapper.builder().build();
+	private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+	private final List<Integer> sizes = Arrays.stream(System.getProperty("perf.rows", "100000").split(","))
+			.map(String::strip).map(Integer::parseInt).toList();
+	private final int iterations = Integer.getInteger("perf.iterations", 5);
+	private final int warmup = Integer.getInteger("perf.warmup", 2);
+	private final Path outputDir = Paths.get(System.getProperty("perf.outputDir", "build/performance"));
+	private final Map<String, Double> results = new TreeMap<>();
+	private final Map<Integer, String> snapshotIds = new HashMap<>();
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Value("${local.server.port}")
+	private int port;
+
+	private Properties baselines;
+
+	@BeforeAll
+	void seed() throws Exception {
+		baselines = new Properties();
+		try (InputStream in = getClass().getResourceAsStream(BASELINES)) {
+			if (in != null) {
+				baselines.load(in);
+			}
+		}
+		for (int rows : sizes) {
+			String table = table(rows);
+			long start = System.nanoTime();
+			jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+			jdbcTemplate.execute("CREATE TABLE " + table + " (id BIGINT PRIMARY KEY, category INTEGER, "
+					+ "name VARCHAR(64), amount DECIMAL(12, 2), ratio DOUBLE PRECISION, created_at TIMESTAMP, "
+					+ "active BOOLEAN, note VARCHAR(255))");
+			// Deterministic values, so every run reads the same bytes
+			jdbcTemplate.execute("INSERT INTO " + table + " SELECT X, MOD(X, 100), CONCAT('name-', X), "
+					+ "CAST(MOD(X * 7919, 1000000) AS DECIMAL(12, 2)) / 100, MOD(X * 31, 997) / 997.0, "
+					+ "DATEADD('SECOND', X, TIMESTAMP '2024-01-01 00:00:00'), MOD(X, 2) = 0, "
+					+ "CASE WHEN MOD(X, 10) = 0 THEN NULL ELSE REPEAT('x', MOD(X, 50)) END "
+					+ "FROM SYSTEM_RANGE(1, " + rows + ")");
+			logger.info("Seeded {} ({} rows) in {} ms", table, rows, (System.nanoTime() - start) / 1_000_000);
+
+			HttpResponse<String> created = post("/api/snapshots",
+					Map.of("name", table, "sql", "SELECT * FROM " + table));
+			assertEquals(200, created.statusCode(), created.body());
+			snapshotIds.put(rows, (String) objectMapper.readValue(created.body(), Map.class).get("id"));
+		}
+	}
+
+	@TestFactory
+	Stream<DynamicTest> endpoints() {
+		List<DynamicTest> tests = new ArrayList<>();
+		for (int rows : sizes) {
+			String table = table(rows);
+			tests.add(scenario("execute-full", rows, () -> postStream("/api/execute",
+					Map.of("sql", "SELECT * FROM " + table)), true));
+			tests.add(scenario("execute-aggregate", rows, () -> postStream("/api/execute",
+					Map.of("sql", "SELECT category, COUNT(*) AS n, SUM(amount) AS total, AVG(ratio) AS ratio FROM "
+							+ table + " GROUP BY category ORDER BY category")), true));
+			tests.add(scenario("extract-csv", rows, () -> postStream("/api/extract",
+					Map.of("table", table, "splitColumn", "id")), false));
+			tests.add(scenario("snapshot-export", rows, () -> get("/api/snapshots/" + snapshotIds.get(rows)
+					+ "/export"), false));
+		}
+		return tests.stream();
+	}
+
+	@AfterAll
+	void report() throws IOException, InterruptedException {
+		for (String id : snapshotIds.values()) {
+			httpClient.send(request("/api/snapshots/" + id).DELETE().build(), HttpResponse.BodyHandlers.discarding());
+		}
+		Files.createDirectories(outputDir);
+		Properties measured = new Properties();
+		results.forEach((key, value) -> measured.setProperty(key, format(value)));
+		Path file = outputDir.resolve(Boolean.getBoolean("perf.updateBaselines") ? "baselines.properties"
+				: "results.properties");
+		try (Writer out = Files.newBufferedWriter(file)) {
+			measured.store(out, "Performance suite measurements (medians; peak heap is the maximum)");
+		}
+		logger.info("Performance results written to {}", file.toAbsolutePath());
+	}
+
+	@FunctionalInterface
+	private interface Call {
+		HttpResponse<InputStream> send() throws Exception;
+	}
+
+	private DynamicTest scenario(String name, int rows, Call call, boolean json) {
+		String key = name + "." + rows;
+		return DynamicTest.dynamicTest(key, () -> {
+			for (int i = 0; i < warmup; i++) {
+				Sample sample = run(call, json && i == 0);
+				assertTrue(sample.bytes() > 0, key + " returned no content");
+			}
+			List<Sample> samples = new ArrayList<>();
+			for (int i = 0; i < iterations; i++) {
+				samples.add(run(call, false));
+			}
+			Map<String, Double> metrics = Map.of(
+					"latencyMs", median(samples.stream().mapToDouble(Sample::latencyMs).toArray()),
+					"ttfbMs", median(samples.stream().mapToDouble(Sample::ttfbMs).toArray()),
+					"peakHeapMb", samples.stream().mapToDouble(Sample::peakHeapMb).max().orElse(0),
+					"allocatedMb", median(samples.stream().mapToDouble(Sample::allocatedMb).toArray()));
+			logger.info(String.format(Locale.ROOT,
+					"%-30s latency %8.1f ms  ttfb %8.1f ms  peak heap %7.1f MB  allocated %8.1f MB  (%d bytes)",
+					key, metrics.get("latencyMs"), metrics.get("ttfbMs"), metrics.get("peakHeapMb"),
+					metrics.get("allocatedMb"), samples.get(0).bytes()));
+
+			List<String> regressions = new ArrayList<>();
+			List<String> missing = new ArrayList<>();
+			for (String metric : METRICS) {
+				double value = metrics.get(metric);
+				results.put(key + "." + metric, value);
+				if (Boolean.getBoolean("perf.updateBaselines")) {
+					continue;
+				}
+				String baseline = baselines.getProperty(key + "." + metric);
+				if (baseline == null) {
+					missing.add(metric);
+					continue;
+				}
+				double tolerance = Double.parseDouble(baselines.getProperty("tolerance." + metric, "0.5"));
+				double slack = Double.parseDouble(baselines.getProperty("slack." + metric, "0"));
+				double allowed = Double.parseDouble(baseline) * (1 + tolerance) + slack;
+				if (value > allowed) {
+					regressions.add(String.format("%s %.1f > %.1f (baseline %s)", metric, value, allowed, baseline));
+				}
+			}
+			if (!regressions.isEmpty()) {
+				fail(key + " regressed: " + String.join(", ", regressions));
+			}
+			if (!missing.isEmpty()) {
+				abort(key + " skipped: no baseline for " + String.join(", ", missing) + " in " + BASELINES
+						+ "; record them with ./gradlew perfTest -Pperf.updateBaselines=true");
+			}
+		});
+	}
+
+	/**
+	 * One request: time to first byte when the first body byte arrives,
+	 * latency when the body is fully read. Heap peaks are reset after a GC
+	 * before the request; allocations are summed over all live threads.
+	 */
+	private Sample run(Call call, boolean checkSuccess) throws Exception {
+		List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+		System.gc();
+		heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+		Map<Long, Long> allocatedBefore = threadAllocations();
+
+		long start = System.nanoTime();
+		HttpResponse<InputStream> response = call.send();
+		long firstByte;
+		long bytes;
+		try (InputStream body = response.body()) {
+			int first = body.read();
+			firstByte = System.nanoTime();
+			if (checkSuccess) {
+				byte[] rest = body.readAllBytes();
+				String text = (char) first + new String(rest, StandardCharsets.UTF_8);
+				Map<?, ?> result = objectMapper.readValue(text, Map.class);
+				assertEquals(Boolean.TRUE, result.get("success"), text.substring(0, Math.min(text.length(), 500)));
+				bytes = 1 + rest.length;
+			} else {
+				bytes = first < 0 ? 0 : 1 + body.transferTo(OutputStream.nullOutputStream());
+			}
+		}
+		long end = System.nanoTime();
+		assertEquals(200, response.statusCode());
+
+		long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+		long allocated = 0;
+		for (Map.Entry<Long, Long> entry : threadAllocations().entrySet()) {
+			allocated += entry.getValue() - allocatedBefore.getOrDefault(entry.getKey(), 0L);
+		}
+		return new Sample((end - start) / 1e6, (firstByte - start) / 1e6, peakHeap / 1048576.0,
+				allocated / 1048576.0, bytes);
+	}
+
+	private record Sample(double latencyMs, double ttfbMs, double peakHeapMb, double allocatedMb, long bytes) {
+	}
+
+	private static Map<Long, Long> threadAllocations() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long[] ids = threads.getAllThreadIds();
+		long[] allocated = threads.getThreadAllocatedBytes(ids);
+		Map<Long, Long> byThread = new HashMap<>();
+		for (int i = 0; i < ids.length; i++) {
+			if (allocated[i] >= 0) {
+				byThread.put(ids[i], allocated[i]);
+			}
+		}
+		return byThread;
+	}
+
+	private HttpResponse<String> post(String path, Object body) throws Exception {
+		return httpClient.send(request(path).POST(json(body)).build(), HttpResponse.BodyHandlers.ofString());
+	}
+
+	private HttpResponse<InputStream> postStream(String path, Object body) throws Exception {
+		return httpClient.send(request(path).POST(json(body)).build(), HttpResponse.BodyHandlers.ofInputStream());
+	}
+
+	private HttpResponse<InputStream> get(String path) throws Exception {
+		return httpClient.send(request(path).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+	}
+
+	private HttpRequest.Builder request(String path) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+				.header("Content-Type", "application/json")
+				.timeout(Duration.ofMinutes(10));
+	}
+
+	private HttpRequest.BodyPublisher json(Object body) {
+		return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+	}
+
+	private static String table(int rows) {
+		return "perf_rows_" + rows;
+	}
+
+	private static double median(double[] values) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		int middle = sorted.length / 2;
+		return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+}
@@ -0,0 +1,30 @@
+package com.querymole.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClickHouseDialectTest {
+
+	@Test
+	void detectsOnlyARealSettingsClause() {
+		assertTrue(ClickHouseDialect.hasSettingsClause("SELECT 1 SETTINGS max_threads = 2"));
+		assertTrue(ClickHouseDialect.hasSettingsClause("SELECT 1 SETTINGS max_threads = 2 FORMAT JSON"));
+		assertFalse(ClickHouseDialect.hasSettingsClause("SELECT settings_id, 'SETTINGS' FROM t"));
+		assertFalse(ClickHouseDialect.hasSettingsClause("SELECT settings FROM t"));
+		assertFalse(ClickHouseDialect.hasSettingsClause("SELECT * FROM (SELECT 1 SETTINGS max_threads = 2)"));
+	}
+
+	@Test
+	void putsSettingsBeforeATrailingFormatClause() {
+		ClickHouseDialect dialect = new ClickHouseDialect();
+		assertEquals("SELECT 1\nSETTINGS max_execution_time = 5\nFORMAT JSONEachRow",
+				dialect.applyLimits("SELECT 1 FORMAT JSONEachRow;", 0, 5));
+		assertEquals("SELECT format FROM t\nSETTINGS max_execution_time = 5",
+				dialect.applyLimits("SELECT format FROM t", 0, 5));
+		assertEquals(-1, ClickHouseDialect.formatClauseStart("SELECT * FROM (SELECT 1 FORMAT JSON) AS t"));
+	}
+
+}
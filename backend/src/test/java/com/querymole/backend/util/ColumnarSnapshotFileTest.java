@@ -0,0 +1,50 @@
+package com.querymole.backend.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnarSnapshotFileTest {
+
+	private final ObjectMapper objectMapper = JsonMapper.builder().build();
+
+	@Test
+	void readsBackValuesAcrossBlocks(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("result.qms");
+		ColumnarSnapshotFile.Schema schema = new ColumnarSnapshotFile.Schema("test", "SELECT 1", 42L,
+				List.of("id", "name", "amount", "flag", "extra"));
+		try (ColumnarSnapshotFile.Writer writer = new ColumnarSnapshotFile.Writer(objectMapper, file, schema, 3)) {
+			for (int i = 0; i < 7; i++) {
+				writer.append(Arrays.asList((long) i, i % 2 == 0 ? "row " + i : null, new BigDecimal(i + ".50"),
+						i % 3 == 0, Map.of("n", i)));
+			}
+			writer.finish(5);
+		}
+
+		ColumnarSnapshotFile.Reader reader = ColumnarSnapshotFile.Reader.open(objectMapper, file);
+		try {
+			assertEquals(schema, reader.getSchema());
+			assertEquals(7, reader.getIndex().rowCount());
+			assertEquals(3, reader.getBlockCount());
+			assertEquals(2, reader.blockOf(6));
+			assertArrayEquals(new Object[] { 3L, 4L, 5L }, reader.readChunk(1, 0));
+			assertArrayEquals(new Object[] { "row 6" }, reader.readChunk(2, 1));
+			assertArrayEquals(new Object[] { null, "row 4", null }, reader.readChunk(1, 1));
+			assertEquals(new BigDecimal("4.50"), reader.readChunk(1, 2)[1]);
+			assertEquals(Boolean.TRUE, reader.readChunk(1, 3)[0]);
+			assertEquals(Map.of("n", 5), reader.readChunk(1, 4)[2]);
+		} finally {
+			reader.close();
+		}
+	}
+}
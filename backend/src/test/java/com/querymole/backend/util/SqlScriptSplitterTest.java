@@ -0,0 +1,80 @@
+package com.querymole.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlScriptSplitterTest {
+
+	@Test
+	void splitsOnTopLevelSemicolons() {
+		List<String> statements = SqlScriptSplitter.split("SELECT 1; SELECT 2;\n\nSELECT 3");
+		assertEquals(List.of("SELECT 1", "SELECT 2", "SELECT 3"), statements);
+	}
+
+	@Test
+	void ignoresSemicolonsInQuotesAndComments() {
+		String script = "INSERT INTO t VALUES ('a;b', 'it''s; ok');\n"
+				+ "-- comment; with semicolon\n"
+				+ "SELECT \"odd;name\" FROM t /* block; /* nested; */ still comment; */;\n"
+				+ "SELECT E'back\\'slash;'";
+		List<String> statements = SqlScriptSplitter.split(script);
+		assertEquals(3, statements.size());
+		assertEquals("INSERT INTO t VALUES ('a;b', 'it''s; ok')", statements.get(0));
+		assertTrue(statements.get(1).endsWith("still comment; */"));
+		assertEquals("SELECT E'back\\'slash;'", statements.get(2));
+	}
+
+	@Test
+	void honoursBackslashEscapesWhenTheDialectDoes() {
+		String script = "INSERT INTO t VALUES ('it\\'s; x', \"a\\\";b\");\nSELECT 2";
+		assertEquals(List.of("INSERT INTO t VALUES ('it\\'s; x', \"a\\\";b\")", "SELECT 2"),
+				SqlScriptSplitter.split(script, true));
+		assertEquals(List.of("SELECT 'C:\\'", "SELECT 2"), SqlScriptSplitter.split("SELECT 'C:\\'; SELECT 2"));
+	}
+
+	@Test
+	void keepsDollarQuotedBodiesIntact() {
+		String script = "CREATE FUNCTION f() RETURNS int AS $body$ BEGIN RETURN 1; END; $body$ LANGUAGE plpgsql;"
+				+ "DO $$ BEGIN PERFORM 1; END $$;"
+				+ "SELECT $1::int";
+		List<String> statements = SqlScriptSplitter.split(script);
+		assertEquals(3, statements.size());
+		assertTrue(statements.get(0).endsWith("LANGUAGE plpgsql"));
+		assertEquals("DO $$ BEGIN PERFORM 1; END $$", statements.get(1));
+	}
+
+	@Test
+	void dropsCommentOnlyStatements() {
+		assertEquals(List.of("SELECT 1"), SqlScriptSplitter.split("-- header\n;\n/* nothing */;\nSELECT 1;\n-- trailer"));
+	}
+
+	@Test
+	void detectsBatchableStatements() {
+		assertTrue(SqlScriptSplitter.isBatchable("-- fix\nUPDATE t SET a = 1"));
+		assertTrue(SqlScriptSplitter.isBatchable("delete from t"));
+		assertFalse(SqlScriptSplitter.isBatchable("INSERT INTO t VALUES (1) RETURNING id"));
+		assertFalse(SqlScriptSplitter.isBatchable("SELECT 1"));
+	}
+
+	@Test
+	void detectsQueries() {
+		assertTrue(SqlScriptSplitter.isQuery("/* report */ with t as (select 1) select * from t"));
+		assertTrue(SqlScriptSplitter.isQuery("(SELECT 1) UNION (SELECT 2)"));
+		assertFalse(SqlScriptSplitter.isQuery("VACUUM t"));
+		assertFalse(SqlScriptSplitter.isQuery("CREATE INDEX CONCURRENTLY i ON t (a)"));
+		assertFalse(SqlScriptSplitter.isQuery("UPDATE t SET a = 1"));
+	}
+
+	@Test
+	void tokenizesOnlyTheTopLevel() {
+		assertEquals(List.of("SELECT", "'", ",", "SETTINGS_ID", "FROM", "T", "SETTINGS", "MAX_THREADS", "=", "2"),
+				SqlScriptSplitter.topLevelTokens(
+						"select 'a;b', settings_id from t /* x */ -- y\n (select 1 settings a = 1) SETTINGS max_threads = 2"));
+	}
+
+}
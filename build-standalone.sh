@@ -2,9 +2,19 @@
 
 # Query Mole - Standalone Build Script
 # This script builds the frontend and backend into a single executable JAR
+#
+# Usage: ./build-standalone.sh [--faststart]
+#   --faststart  also build a fast-start distribution: Spring AOT processing,
+#                a class data archive from a training run (AppCDS, or the
+#                Leyden AOT cache on Java 24+) and a launcher using both
 
 set -e  # Exit on error
 
+FASTSTART=false
+if [ "$1" = "--faststart" ]; then
+    FASTSTART=true
+fi
+
 echo "🏗️  Building Query Mole Standalone JAR..."
 echo ""
 
@@ -28,13 +38,63 @@ echo ""
 # Step 3: Build backend JAR
 echo "🔨 Step 3/3: Building backend JAR..."
 cd backend
-./gradlew clean bootJar
+if [ "$FASTSTART" = true ]; then
+    ./gradlew clean bootJar -Pfaststart
+else
+    ./gradlew clean bootJar
+fi
 cd ..
 echo "✅ Backend JAR built"
 echo ""
 
 # Show result
 JAR_PATH="backend/build/libs/backend-0.0.1-SNAPSHOT.jar"
+
+# Optional step: fast-start distribution
+if [ "$FASTSTART" = true ] && [ -f "$JAR_PATH" ]; then
+    echo "⚡ Building fast-start distribution..."
+    # Absolute paths: the archive is only used with the class path it was
+    # created from, so the distribution is not relocatable
+    FASTSTART_DIR="$(pwd)/backend/build/faststart"
+    APP_JAR="$FASTSTART_DIR/app/backend-0.0.1-SNAPSHOT.jar"
+    rm -rf "$FASTSTART_DIR"
+    # Class data archives need plain JARs on the class path, not nested ones
+    java -Djarmode=tools -jar "$JAR_PATH" extract --destination "$FASTSTART_DIR/app"
+
+    JAVA_MAJOR=$(java -version 2>&1 | head -n 1 | cut -d'"' -f2 | cut -d'.' -f1)
+    RUN_FLAGS="-Dspring.aot.enabled=true -Dspring.profiles.active=faststart"
+    # The training run starts the application context and exits. It must use
+    # the same flags as the real run, and runs in a scratch directory so it
+    # does not touch the real query library.
+    TRAINING_FLAGS="$RUN_FLAGS -Dspring.context.exit=onRefresh"
+    TRAINING_DIR=$(mktemp -d)
+    if [ "$JAVA_MAJOR" -ge 25 ]; then
+        CACHE_FLAG="-XX:AOTCache=$FASTSTART_DIR/app.aot"
+        (cd "$TRAINING_DIR" && java -XX:AOTCacheOutput="$FASTSTART_DIR/app.aot" $TRAINING_FLAGS -jar "$APP_JAR")
+    elif [ "$JAVA_MAJOR" -ge 24 ]; then
+        CACHE_FLAG="-XX:AOTCache=$FASTSTART_DIR/app.aot"
+        (cd "$TRAINING_DIR" \
+            && java -XX:AOTMode=record -XX:AOTConfiguration=app.aotconf $TRAINING_FLAGS -jar "$APP_JAR" \
+            && java -XX:AOTMode=create -XX:AOTConfiguration=app.aotconf \
+                -XX:AOTCache="$FASTSTART_DIR/app.aot" -cp "$APP_JAR")
+    else
+        CACHE_FLAG="-XX:SharedArchiveFile=$FASTSTART_DIR/app.jsa"
+        (cd "$TRAINING_DIR" && java -XX:ArchiveClassesAtExit="$FASTSTART_DIR/app.jsa" $TRAINING_FLAGS -jar "$APP_JAR")
+    fi
+    rm -rf "$TRAINING_DIR"
+
+    cat > "$FASTSTART_DIR/run-faststart.sh" <<LAUNCHER
+#!/bin/bash
+# Starts Query Mole with the AOT-processed context and the class data archive.
+# Run from the directory holding drivers/; rebuild with
+# ./build-standalone.sh --faststart after changing the Java version.
+exec java $CACHE_FLAG $RUN_FLAGS -jar "$APP_JAR" "\$@"
+LAUNCHER
+    chmod +x "$FASTSTART_DIR/run-faststart.sh"
+    echo "✅ Fast-start launcher: $FASTSTART_DIR/run-faststart.sh"
+    echo ""
+fi
+
 if [ -f "$JAR_PATH" ]; then
     JAR_SIZE=$(du -h "$JAR_PATH" | cut -f1)
     echo "🎉 Build complete!"
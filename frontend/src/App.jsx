@@ -10,7 +10,7 @@ import ConnectionModal from './components/ConnectionModal';
 import AboutModal from './components/AboutModal';
 import ChartConfigModal from './components/ChartConfigModal';
 import ChartView from './components/ChartView';
-import { Play, ChevronDown, ChevronRight, Save, Search, BarChart3, Table } from 'lucide-react';
+import { Play, ChevronDown, ChevronRight, Save, Search, BarChart3, Table, Eye, EyeOff } from 'lucide-react';
 import { DndContext, DragOverlay } from '@dnd-kit/core';
 import { useTheme } from './context/ThemeContext';
 import { useLayout } from './hooks/useLayout';
@@ -190,6 +190,15 @@ function App() {
                                             {queryExecution.viewMode === 'grid' ? <BarChart3 size={16} /> : <Table size={16} />}
                                         </button>
                                     )}
+                                    {/* Watch Toggle */}
+                                    <button
+                                        onClick={queryExecution.handleToggleWatch}
+                                        disabled={!queryExecution.sql}
+                                        className="text-editor-header-text hover:text-editor-text disabled:opacity-50 transition-colors p-1"
+                                        title={queryExecution.watching ? "Stop watching" : "Watch (re-run every 5s)"}
+                                    >
+                                        {queryExecution.watching ? <EyeOff size={16} /> : <Eye size={16} />}
+                                    </button>
                                     {/* Execute Button */}
                                     <button
                                         onClick={queryExecution.handleExecute}
@@ -0,0 +1,53 @@
+import React, { useState } from 'react';
+import axios from 'axios';
+import { cellText, lobUrl } from '../utils/cellValue';
+
+/**
+ * Grid cell for a large value: shows the preview and loads the full text, or
+ * downloads the binary value, on request.
+ */
+const LobCell = ({ value }) => {
+    const [fullText, setFullText] = useState(null);
+    const [loading, setLoading] = useState(false);
+    const [error, setError] = useState(null);
+    const url = lobUrl(value);
+
+    const loadText = async () => {
+        setLoading(true);
+        setError(null);
+        try {
+            const response = await axios.get(url, { responseType: 'text', transformResponse: (data) => data });
+            setFullText(response.data);
+        } catch (err) {
+            setError(err.response?.status === 404 ? 'expired' : 'failed');
+        } finally {
+            setLoading(false);
+        }
+    };
+
+    if (fullText !== null) {
+        return <span className="whitespace-pre-wrap">{fullText}</span>;
+    }
+
+    const sizeLabel = value.kind === 'binary' ? `${value.length} bytes` : `${value.length} chars`;
+    return (
+        <span title={sizeLabel}>
+            {cellText(value)}
+            {url && value.kind === 'text' && (
+                <button
+                    onClick={loadText}
+                    disabled={loading}
+                    className="ml-2 text-xs text-modal-link hover:text-modal-link-hover hover:underline disabled:opacity-50"
+                >
+                    {loading ? 'loading…' : error ? `load (${error})` : 'load'}
+                </button>
+            )}
+            {url && value.kind === 'binary' && (
+                <a href={url} className="ml-2 text-xs text-modal-link hover:text-modal-link-hover hover:underline">download</a>
+            )}
+            {!url && <span className="ml-2 text-xs text-ui-text-muted italic">({sizeLabel})</span>}
+        </span>
+    );
+};
+
+export default LobCell;
@@ -3,6 +3,8 @@ import { ChevronUp, ChevronDown, ChevronLeft, ChevronRight } from 'lucide-react'
 import * as XLSX from 'xlsx';
 import { jsPDF } from 'jspdf';
 import autoTable from 'jspdf-autotable';
+import LobCell from './LobCell';
+import { cellText, isLobValue } from '../utils/cellValue';
 
 const ResultsTable = forwardRef(({ results, loading, filterText = '' }, ref) => {
     const [sortConfig, setSortConfig] = useState({ key: null, direction: 'asc' });
@@ -28,7 +30,7 @@ const ResultsTable = forwardRef(({ results, loading, filterText = '' }, ref) =>
                 return results.columns.some(col => {
                     const value = row[col];
                     if (value === null || value === undefined) return false;
-                    return String(value).toLowerCase().includes(lowerFilter);
+                    return cellText(value).toLowerCase().includes(lowerFilter);
                 });
             });
         }
@@ -80,7 +82,7 @@ const ResultsTable = forwardRef(({ results, loading, filterText = '' }, ref) =>
                 const value = row[col];
                 if (value === null || value === undefined) return '';
                 // Escape quotes and wrap in quotes if contains comma, quote, or newline
-                const stringValue = String(value);
+                const stringValue = cellText(value);
                 if (stringValue.includes(',') || stringValue.includes('"') || stringValue.includes('\n')) {
                     return `"${stringValue.replace(/"/g, '""')}"`;
                 }
@@ -128,7 +130,7 @@ const ResultsTable = forwardRef(({ results, loading, filterText = '' }, ref) =>
         // Create worksheet data
         const data = [
             results.columns, // Header row
-            ...sortedRows.map(row => results.columns.map(col => row[col] ?? ''))
+            ...sortedRows.map(row => results.columns.map(col => isLobValue(row[col]) ? cellText(row[col]) : row[col] ?? ''))
         ];
 
         // Create workbook
@@ -138,7 +140,7 @@ const ResultsTable = forwardRef(({ results, loading, filterText = '' }, ref) =>
         const colWidths = results.columns.map((col, i) => {
             const maxLength = Math.max(
                 col.length,
-                ...sortedRows.map(row => String(row[col] ?? '').length)
+                ...sortedRows.map(row => cellText(row[col]).length)
             );
             return { wch: Math.min(maxLength + 2, 50) };
         });
@@ -190,7 +192,7 @@ const ResultsTable = forwardRef(({ results, loading, filterText = '' }, ref) =>
 
             // Prepare table data
             const tableData = sortedRows.map(row =>
-                results.columns.map(col => row[col] ?? 'null')
+                results.columns.map(col => isLobValue(row[col]) ? cellText(row[col]) : row[col] ?? 'null')
             );
 
             // Add table using autoTable
@@ -304,7 +306,9 @@ const ResultsTable = forwardRef(({ results, loading, filterText = '' }, ref) =>
                                         key={`${idx}-${col}`}
                                         className="px-4 py-2 whitespace-nowrap text-sm text-grid-text font-mono border-r border-grid-row-border last:border-r-0"
                                     >
-                                        {row[col] !== null && row[col] !== undefined
+                                        {isLobValue(row[col])
+                                            ? <LobCell key={`${row[col].handle}-${row[col].row}`} value={row[col]} />
+                                            : row[col] !== null && row[col] !== undefined
                                             ? String(row[col])
                                             : <span className="text-grid-text-null italic">null</span>}
                                     </td>
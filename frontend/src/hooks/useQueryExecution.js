@@ -1,4 +1,4 @@
-import { useState, useRef } from 'react';
+import { useState, useRef, useEffect } from 'react';
 import axios from 'axios';
 import html2canvas from 'html2canvas';
 import jsPDF from 'jspdf';
@@ -16,13 +16,16 @@ export function useQueryExecution(selectedQuery) {
     const [error, setError] = useState(null);
     const [filterText, setFilterText] = useState('');
     const [viewMode, setViewMode] = useState('grid'); // 'grid' or 'chart'
+    const [watching, setWatching] = useState(false);
 
     const resultsTableRef = useRef(null);
     const chartViewRef = useRef(null);
+    const watchSourceRef = useRef(null);
 
     // Update SQL when selectedQuery changes
     const updateSqlFromQuery = (query) => {
         if (query && query.type === 'QUERY') {
+            stopWatch();
             const queryText = query.query || '';
             setSql(queryText);
             setQueryComments(extractSqlComments(queryText));
@@ -55,6 +58,39 @@ export function useQueryExecution(selectedQuery) {
         }
     };
 
+    // Live watch: the server re-runs the query and pushes a new result whenever it changes
+    const stopWatch = () => {
+        if (watchSourceRef.current) {
+            watchSourceRef.current.close();
+            watchSourceRef.current = null;
+        }
+        setWatching(false);
+    };
+
+    const startWatch = (intervalMs = 5000) => {
+        stopWatch();
+        setError(null);
+        const params = new URLSearchParams({ sql, intervalMs: String(intervalMs), mode: 'full' });
+        const source = new EventSource(`/api/watch?${params.toString()}`);
+        source.addEventListener('result', (event) => {
+            setResults(JSON.parse(event.data));
+            setError(null);
+        });
+        source.addEventListener('error', (event) => {
+            // Server-sent "error" events carry data; connection errors do not
+            if (event.data) {
+                setError(JSON.parse(event.data).error);
+            }
+        });
+        watchSourceRef.current = source;
+        setWatching(true);
+    };
+
+    const handleToggleWatch = () => (watching ? stopWatch() : startWatch());
+
+    // Close the stream when the component unmounts
+    useEffect(() => () => watchSourceRef.current?.close(), []);
+
     const handleExportCSV = () => resultsTableRef.current?.exportToCSV();
     const handleExportExcel = () => resultsTableRef.current?.exportToExcel();
     const handleExportPDF = () => resultsTableRef.current?.exportToPDF();
@@ -104,6 +140,8 @@ export function useQueryExecution(selectedQuery) {
         viewMode,
         setViewMode,
         handleExecute,
+        watching,
+        handleToggleWatch,
         resultsTableRef,
         chartViewRef,
         handleExportCSV,
@@ -0,0 +1,39 @@
+/**
+ * Helpers for result cells. Large text and binary values arrive as LobValue
+ * objects ({ kind, preview, length, handle, row, column }) instead of plain
+ * values; the full value is fetched on demand from the results endpoint.
+ */
+
+export function isLobValue(value) {
+    return value !== null && typeof value === 'object' && 'kind' in value && 'preview' in value && 'length' in value;
+}
+
+/**
+ * Display text of a cell: the preview of a large value, followed by an ellipsis
+ *
+ * @param {*} value - The cell value
+ * @returns {string} - The text to show or export
+ */
+export function cellText(value) {
+    if (value === null || value === undefined) {
+        return '';
+    }
+    if (isLobValue(value)) {
+        return `${value.preview}…`;
+    }
+    return String(value);
+}
+
+/**
+ * URL of the full value of a large cell, or null when it was not kept
+ *
+ * @param {object} value - A LobValue
+ * @returns {string|null}
+ */
+export function lobUrl(value) {
+    if (!value.handle) {
+        return null;
+    }
+    const params = new URLSearchParams({ row: String(value.row), column: value.column });
+    return `/api/results/${value.handle}/cell?${params}`;
+}